@@ -0,0 +1,328 @@
+/*******************************************************************************
+ * Name: Java class BinarySidecar.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package COSMOSformat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class writes and reads the binary sidecar files for the V1, V2 and V3
+ * products.  A sidecar holds the integer and real header arrays and the data
+ * arrays of a record at full precision, so other programs can load the
+ * values without parsing the COSMOS text.  All values are little-endian.
+ * The file starts with a header of 4-byte integers:
+ * <pre>
+ *   magic ("PRSB"), version, data value size (8 or 4), number of integer
+ *   header values, number of real header values, number of data arrays,
+ *   and then the length of each data array
+ * </pre>
+ * followed by the integer header values as 4-byte integers, the real header
+ * values as 8-byte doubles, and each data array as 8-byte doubles or 4-byte
+ * floats.  Each section after the file header starts on an 8-byte boundary,
+ * so the file can be memory-mapped and each array viewed in place.
+ * <p>
+ * The constructor reads a sidecar file by memory-mapping it, and the data
+ * arrays are available as read-only buffer views of the mapped file.
+ * @author jmjones
+ */
+public class BinarySidecar {
+    public static final int MAGIC = 0x42535250;  // "PRSB" in little-endian
+    public static final int VERSION = 1;
+    public static final int FLOAT64_SIZE = 8;
+    public static final int FLOAT32_SIZE = 4;
+    private static final int FIXED_HEADER_INTS = 6;
+    private static final int WRITE_BUFFER_SIZE = 65536;
+
+    private final MappedByteBuffer mapped;
+    private final int valueSize;
+    private final int[] intHeader;
+    private final double[] realHeader;
+    private final int[] arrayLengths;
+    private final int[] arrayOffsets;
+    /**
+     * Constructor memory-maps the sidecar file and reads in the header
+     * arrays.  The data arrays are left in the mapped file.  The counts and
+     * lengths in the file header are checked and the section offsets are
+     * computed as longs and checked against the file size before any array
+     * is allocated, so a corrupt header is reported as an IOException.
+     * @param infile the sidecar file to read
+     * @throws IOException if unable to read the file or the file is not a
+     * valid sidecar file
+     */
+    public BinarySidecar( Path infile ) throws IOException {
+        try (FileChannel channel = FileChannel.open(infile, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Binary sidecar file is too large: " + infile);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if ((mapped.getInt(0) != MAGIC) || (mapped.getInt(4) != VERSION)) {
+                throw new IOException("Not a binary sidecar file: " + infile);
+            }
+            valueSize = mapped.getInt(8);
+            if ((valueSize != FLOAT64_SIZE) && (valueSize != FLOAT32_SIZE)) {
+                throw new IOException("Invalid data value size in " + infile);
+            }
+            int numInts = mapped.getInt(12);
+            int numReals = mapped.getInt(16);
+            int numArrays = mapped.getInt(20);
+            if ((numInts < 0) || (numReals < 0) || (numArrays < 0)) {
+                throw new IOException("Invalid header counts in binary sidecar file: "
+                                                                        + infile);
+            }
+            long capacity = mapped.capacity();
+            long offset = 4L * (FIXED_HEADER_INTS + (long)numArrays);
+            if (offset > capacity) {
+                throw new IOException("Binary sidecar file is truncated: " + infile);
+            }
+            arrayLengths = new int[numArrays];
+            for (int i = 0; i < numArrays; i++) {
+                arrayLengths[i] = mapped.getInt(4 * (FIXED_HEADER_INTS + i));
+                if (arrayLengths[i] < 0) {
+                    throw new IOException("Invalid data array length in binary sidecar file: "
+                                                                        + infile);
+                }
+            }
+            //the data array offsets all fall within the file once the end of
+            //the last array does, so they fit in an int
+            long intOffset = align(offset);
+            long realOffset = align(intOffset + 4L * numInts);
+            offset = align(realOffset + 8L * numReals);
+            if (offset > capacity) {
+                throw new IOException("Binary sidecar file is truncated: " + infile);
+            }
+            arrayOffsets = new int[numArrays];
+            for (int i = 0; i < numArrays; i++) {
+                arrayOffsets[i] = (int)offset;
+                offset = align(offset + (long)valueSize * arrayLengths[i]);
+                if (offset > capacity) {
+                    throw new IOException("Binary sidecar file is truncated: " + infile);
+                }
+            }
+            intHeader = new int[numInts];
+            for (int i = 0; i < numInts; i++) {
+                intHeader[i] = mapped.getInt((int)intOffset + 4 * i);
+            }
+            realHeader = new double[numReals];
+            for (int i = 0; i < numReals; i++) {
+                realHeader[i] = mapped.getDouble((int)realOffset + 8 * i);
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException err) {
+            throw new IOException("Invalid binary sidecar file: " + infile);
+        }
+    }
+    /**
+     * Writes out a sidecar file with the given header and data arrays
+     * @param outfile the sidecar file to write
+     * @param intHeader the integer header values
+     * @param realHeader the real header values
+     * @param data the data arrays
+     * @param valueSize the size of each data value, FLOAT64_SIZE or FLOAT32_SIZE
+     * @throws IOException if unable to write to the file
+     */
+    public static void write( Path outfile, int[] intHeader, double[] realHeader,
+                        double[][] data, int valueSize ) throws IOException {
+        if ((valueSize != FLOAT64_SIZE) && (valueSize != FLOAT32_SIZE)) {
+            throw new IllegalArgumentException("Invalid data value size: " + valueSize);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(outfile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            buf.putInt(MAGIC).putInt(VERSION).putInt(valueSize);
+            buf.putInt(intHeader.length).putInt(realHeader.length).putInt(data.length);
+            for (double[] each : data) {
+                putInt(channel, buf, each.length);
+            }
+            pad(channel, buf);
+            for (int each : intHeader) {
+                putInt(channel, buf, each);
+            }
+            pad(channel, buf);
+            for (double each : realHeader) {
+                putDouble(channel, buf, each);
+            }
+            for (double[] each : data) {
+                pad(channel, buf);
+                if (valueSize == FLOAT64_SIZE) {
+                    for (double val : each) {
+                        putDouble(channel, buf, val);
+                    }
+                } else {
+                    for (double val : each) {
+                        if (buf.remaining() < 4) {
+                            flush(channel, buf);
+                        }
+                        buf.putFloat((float)val);
+                    }
+                }
+            }
+            pad(channel, buf);
+            flush(channel, buf);
+        }
+    }
+    /**
+     * Adds an int to the write buffer, flushing the buffer first if it is full
+     */
+    private static void putInt( FileChannel channel, ByteBuffer buf, int val )
+                                                            throws IOException {
+        if (buf.remaining() < 4) {
+            flush(channel, buf);
+        }
+        buf.putInt(val);
+    }
+    /**
+     * Adds a double to the write buffer, flushing the buffer first if it is full
+     */
+    private static void putDouble( FileChannel channel, ByteBuffer buf, double val )
+                                                            throws IOException {
+        if (buf.remaining() < 8) {
+            flush(channel, buf);
+        }
+        buf.putDouble(val);
+    }
+    /**
+     * Adds zero bytes to bring the file position to an 8-byte boundary.  The
+     * buffer size is a multiple of 8, so the buffer position matches the file
+     * position.
+     */
+    private static void pad( FileChannel channel, ByteBuffer buf ) throws IOException {
+        while ((buf.position() % 8) != 0) {
+            buf.put((byte)0);
+        }
+        if (!buf.hasRemaining()) {
+            flush(channel, buf);
+        }
+    }
+    /**
+     * Writes the contents of the write buffer out to the channel
+     */
+    private static void flush( FileChannel channel, ByteBuffer buf ) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+    /**
+     * Rounds an offset up to the next 8-byte boundary
+     * @param offset the file offset
+     * @return the aligned offset
+     */
+    private static long align( long offset ) {
+        return (offset + 7) & ~7L;
+    }
+    /**
+     * Getter for the size of the data values
+     * @return FLOAT64_SIZE or FLOAT32_SIZE
+     */
+    public int getValueSize() {
+        return this.valueSize;
+    }
+    /**
+     * Getter for a copy of the integer header array
+     * @return the integer header values
+     */
+    public int[] getIntHeader() {
+        return intHeader.clone();
+    }
+    /**
+     * Getter for a copy of the real header array
+     * @return the real header values
+     */
+    public double[] getRealHeader() {
+        return realHeader.clone();
+    }
+    /**
+     * Getter for the number of data arrays, 1 for V1 and V2 files and the
+     * full set of V3 arrays for V3 files
+     * @return the number of data arrays
+     */
+    public int getNumArrays() {
+        return this.arrayLengths.length;
+    }
+    /**
+     * Getter for the length of a data array
+     * @param arrnum the index of the data array
+     * @return the number of values in the data array
+     */
+    public int getArrayLength( int arrnum ) {
+        return this.arrayLengths[arrnum];
+    }
+    /**
+     * Returns a read-only view of a float64 data array in the mapped file,
+     * without copying the values
+     * @param arrnum the index of the data array
+     * @return the data array view
+     * @throws IllegalStateException if the file holds float32 data
+     */
+    public DoubleBuffer getDoubleView( int arrnum ) {
+        if (valueSize != FLOAT64_SIZE) {
+            throw new IllegalStateException("Sidecar data values are float32");
+        }
+        return slice(arrnum).asDoubleBuffer();
+    }
+    /**
+     * Returns a read-only view of a float32 data array in the mapped file,
+     * without copying the values
+     * @param arrnum the index of the data array
+     * @return the data array view
+     * @throws IllegalStateException if the file holds float64 data
+     */
+    public FloatBuffer getFloatView( int arrnum ) {
+        if (valueSize != FLOAT32_SIZE) {
+            throw new IllegalStateException("Sidecar data values are float64");
+        }
+        return slice(arrnum).asFloatBuffer();
+    }
+    /**
+     * Copies a data array out of the mapped file into a new double array, for
+     * either data value size
+     * @param arrnum the index of the data array
+     * @return the data values
+     */
+    public double[] getDataArray( int arrnum ) {
+        double[] vals = new double[arrayLengths[arrnum]];
+        if (valueSize == FLOAT64_SIZE) {
+            getDoubleView(arrnum).get(vals);
+        } else {
+            FloatBuffer view = getFloatView(arrnum);
+            for (int i = 0; i < vals.length; i++) {
+                vals[i] = view.get(i);
+            }
+        }
+        return vals;
+    }
+    /**
+     * Returns a little-endian byte buffer over one data array in the mapped file
+     * @param arrnum the index of the data array
+     * @return the buffer for the data array
+     */
+    private ByteBuffer slice( int arrnum ) {
+        ByteBuffer view = mapped.duplicate();
+        view.position(arrayOffsets[arrnum]);
+        view.limit(arrayOffsets[arrnum] + valueSize * arrayLengths[arrnum]);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -19,6 +19,9 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import SmException.FormatException;
+import SmUtilities.ChannelTextWriter;
+import SmUtilities.TextFileCursor;
+import java.io.IOException;
 
 /**
  * This abstract class defines fields and methods to work with numeric arrays 
@@ -55,12 +58,24 @@ abstract class COSMOSarrayFormat {
      * This method is to be defined for each array type, to extract numeric
      * values and formatting information from the input text file.
      * @param startLine The line number in the text file to begin parsing array info.
-     * @param infile The input text file, one line per string
+     * @param infile The input text file contents held in a text cursor
      * @return The text file line number updated to the line after the array info.
      * @throws FormatException if unable to extract the formatting values
      */
-    public abstract int parseValues( int startLine, String[] infile) 
+    public abstract int parseValues( int startLine, TextFileCursor infile) 
                                 throws FormatException;
+    /**
+     * This method extracts the numeric values and formatting information from
+     * input text that has already been split into lines.
+     * @param startLine The line number in the text file to begin parsing array info.
+     * @param infile The input text file, one line per string
+     * @return The text file line number updated to the line after the array info.
+     * @throws FormatException if unable to extract the formatting values
+     */
+    public int parseValues( int startLine, String[] infile) 
+                                throws FormatException {
+        return parseValues( startLine, new TextFileCursor(infile));
+    }
     
     /**
      * This method takes the format line before either the header or the data
@@ -142,30 +157,56 @@ abstract class COSMOSarrayFormat {
      */
     public ArrayList<String> extractNumericVals(int startLine, String[] infile) 
                                                         throws FormatException {
+        return extractNumericVals(startLine, new TextFileCursor(infile));
+    }
+    /**
+     * This method pulls each string representation of a number out of the
+     * file contents held in the text cursor, in the same way as for the
+     * array of strings.  Each field is located by its offsets in the line
+     * and trimmed in place, so a string is only created for each value and
+     * not for each line or each blank field.
+     * @param startLine line number in input file contents where array begins
+     * @param infile text file contents held in a text cursor
+     * @return arrayList of numeric values in text form, one value per entry
+     * @throws FormatException if unpacked values from the format line are not 
+     * valid or if the end-of-file is reached before all values extracted
+     */
+    public ArrayList<String> extractNumericVals(int startLine, TextFileCursor infile) 
+                                                        throws FormatException {
         ArrayList<String> holdNumbers;
         int current = startLine;
-        String line;
+        char[] text = infile.getText();
+        int lineStart;
+        int lineLength;
+        int first;
+        int last;
         int total = 0;
         
         //do some initial error checking
-        if ((this.numVals <= 0) || (this.fieldWidth <= 0)) {
-            throw new FormatException("Invalid number of values: " + this.numVals 
-            + " or field width: " + this.fieldWidth);
-        }
+        checkFieldFormat();
         holdNumbers = new ArrayList<>();
         while (total < this.numVals){
             current++;
-            if (infile.length <= current) {
+            if (infile.getNumLines() <= current) {
                 throw new FormatException("Unexpected end-of-file at line " + current);
             }
-            line = infile[current];
-            if (line.length() < this.fieldWidth) {
+            lineStart = infile.getLineStart(current);
+            lineLength = infile.getLineLength(current);
+            if (lineLength < this.fieldWidth) {
                 throw new FormatException("Could not extract number from line " + current);
             }
-            for (int j = 0; j <= line.length()- this.fieldWidth; j = j + this.fieldWidth) {
-                String num = line.substring(j, j + this.fieldWidth).trim();
-                if ( !num.isEmpty()) {
-                    holdNumbers.add(num);
+            for (int j = 0; j <= lineLength - this.fieldWidth; j = j + this.fieldWidth) {
+                //trim the field in place, as String.trim would
+                first = lineStart + j;
+                last = first + this.fieldWidth;
+                while ((first < last) && (text[first] <= ' ')) {
+                    first++;
+                }
+                while ((last > first) && (text[last - 1] <= ' ')) {
+                    last--;
+                }
+                if (last > first) {
+                    holdNumbers.add(new String(text, first, last - first));
                 }
                 total++;
             }
@@ -176,6 +217,126 @@ abstract class COSMOSarrayFormat {
         }
         return holdNumbers;
     }
+    /**
+     * This method converts each integer field in the array section directly
+     * from the file contents into an integer array, using the field width
+     * from the format line.  It finds the same fields and makes the same
+     * checks as extractNumericVals, without creating a string for each value.
+     * @param startLine line number in input file contents where array begins
+     * @param infile text file contents held in a text cursor
+     * @return the integer values, one for each value in the format line count
+     * @throws FormatException if the array section is not valid, as for
+     * extractNumericVals, or if a value could not be converted to integer
+     */
+    public int[] decodeIntVals(int startLine, TextFileCursor infile) 
+                                                        throws FormatException {
+        checkFieldFormat();
+        int[] vals = new int[this.numVals];
+        decodeFields(startLine, infile, vals, null);
+        return vals;
+    }
+    /**
+     * This method converts each real field in the array section directly
+     * from the file contents into a real array, using the field width
+     * from the format line.  It finds the same fields and makes the same
+     * checks as extractNumericVals, without creating a string for each value.
+     * @param startLine line number in input file contents where array begins
+     * @param infile text file contents held in a text cursor
+     * @return the real values, one for each value in the format line count
+     * @throws FormatException if the array section is not valid, as for
+     * extractNumericVals, or if a value could not be converted to double
+     */
+    public double[] decodeRealVals(int startLine, TextFileCursor infile) 
+                                                        throws FormatException {
+        checkFieldFormat();
+        double[] vals = new double[this.numVals];
+        decodeFields(startLine, infile, null, vals);
+        return vals;
+    }
+    /**
+     * Checks that the number of values and the field width picked up from the
+     * format line can be used to extract the values
+     * @throws FormatException if either value is not valid
+     */
+    private void checkFieldFormat() throws FormatException {
+        if ((this.numVals <= 0) || (this.fieldWidth <= 0)) {
+            throw new FormatException("Invalid number of values: " + this.numVals 
+            + " or field width: " + this.fieldWidth);
+        }
+    }
+    /**
+     * This private method steps through each field of the array section and
+     * converts each non-blank field into the integer or the real array,
+     * whichever is not null.  The fields, and the end-of-file, line length and
+     * value count checks are the same as in extractNumericVals.  A field that is
+     * not a number is reported after those checks, as it would be if the values
+     * were extracted as text first and then converted.
+     * @param startLine line number in input file contents where array begins
+     * @param infile text file contents held in a text cursor
+     * @param intvals array for the integer values, or null
+     * @param realvals array for the real values, or null
+     * @throws FormatException if the array section is not valid or if a
+     * value could not be converted to numeric
+     */
+    private void decodeFields(int startLine, TextFileCursor infile, int[] intvals,
+                                    double[] realvals) throws FormatException {
+        int current = startLine;
+        char[] text = infile.getText();
+        int lineStart;
+        int lineLength;
+        int first;
+        int last;
+        int total = 0;
+        int count = 0;
+        boolean badValue = false;
+        
+        while (total < this.numVals){
+            current++;
+            if (infile.getNumLines() <= current) {
+                throw new FormatException("Unexpected end-of-file at line " + current);
+            }
+            lineStart = infile.getLineStart(current);
+            lineLength = infile.getLineLength(current);
+            if (lineLength < this.fieldWidth) {
+                throw new FormatException("Could not extract number from line " + current);
+            }
+            for (int j = 0; j <= lineLength - this.fieldWidth; j = j + this.fieldWidth) {
+                //trim the field in place, as String.trim would
+                first = lineStart + j;
+                last = first + this.fieldWidth;
+                while ((first < last) && (text[first] <= ' ')) {
+                    first++;
+                }
+                while ((last > first) && (text[last - 1] <= ' ')) {
+                    last--;
+                }
+                if (last > first) {
+                    //keep counting past the end of the array for the count check
+                    if ((count < this.numVals) && !badValue) {
+                        try {
+                            if (intvals != null) {
+                                intvals[count] = FixedWidthDecoder.parseInt(text, first, last);
+                            } else {
+                                realvals[count] = FixedWidthDecoder.parseDouble(text, first, last);
+                            }
+                        } catch (NumberFormatException err) {
+                            badValue = true;
+                        }
+                    }
+                    count++;
+                }
+                total++;
+            }
+        }
+        if (this.numVals != count) {
+            throw new FormatException("Expected " + this.numVals + 
+                            " values in array but found " + count);
+        }
+        if (badValue) {
+            throw new FormatException("Unable to convert text to numeric at line " 
+                                                                    + startLine);
+        }
+    }
     /**
      * This method uses the number of data values and the number of values per
      * line extracted from the format line to calculate the number of lines of
@@ -204,12 +365,20 @@ abstract class COSMOSarrayFormat {
      * number in the array
      */
     public abstract ArrayList<String> arrayToText();
+    /**
+     * This method is defined for each array type using this abstract class, to
+     * format a single numeric value according to the defined formatting and
+     * add it to the text in the formatter.
+     * @param index index of the value in the numeric array
+     * @param out the formatter holding the text being built
+     */
+    public abstract void formatValue(int index, FixedWidthFormatter out);
     /**
      * This method converts the array and its format line into text
-     * strings to be written to a file.  It calls arrayToText, which is defined
-     * in each individual array type's methods, to convert each numeric value 
-     * into a text string according to the output format.  This method then
-     * packs each text string into a line.  It puts the format line at the
+     * strings to be written to a file.  It calls formatValue, which is defined
+     * in each individual array type's methods, to format each numeric value 
+     * according to the output format, packing the values for each line
+     * directly into a reusable buffer.  It puts the format line at the
      * start and returns a string array ready to be appended to the text output.
      * 
      * @return array of strings ready for text file output
@@ -220,24 +389,50 @@ abstract class COSMOSarrayFormat {
         int totalLength = 1 + this.numLines;
         String[] newText = new String[totalLength];
         newText[0] = this.getFormatLine();
-        ArrayList<String> textVals = this.arrayToText();
+        FixedWidthFormatter line = 
+                    new FixedWidthFormatter(this.valsPerLine * this.fieldWidth);
         
         //pack each text value into a line according to the values per line
         for (int i=0; i<this.numLines; i++) {
-            StringBuilder line = new StringBuilder();
+            line.reset();
             //calculate the number of vals to pack into a single line
             //use valsPerLine unless the last line has fewer
             valsToPack = ((this.numVals-current) >= this.valsPerLine) ? 
                                 this.valsPerLine : (this.numVals - current);
             for (int next=0; next < valsToPack; next++){
-                line.append(textVals.get(current));
+                this.formatValue(current, line);
                 current++;
             }
             newText[i+1] = line.toString();
         }
-        textVals.clear();
         return newText;
     }
+    /**
+     * This method writes out the format line and the array as text lines
+     * directly to the output file, in the same layout as numberSectionToText.
+     * Each line is packed into a reusable buffer and written from there, so no
+     * text is held for the whole array.
+     * @param out the writer for the output file
+     * @throws IOException if unable to write to the file
+     */
+    public void writeNumberSection(ChannelTextWriter out) throws IOException {
+        int valsToPack = 0;
+        int current = 0;
+        out.writeLine(this.getFormatLine());
+        FixedWidthFormatter line = 
+                    new FixedWidthFormatter(this.valsPerLine * this.fieldWidth);
+        
+        for (int i=0; i<this.numLines; i++) {
+            line.reset();
+            valsToPack = ((this.numVals-current) >= this.valsPerLine) ? 
+                                this.valsPerLine : (this.numVals - current);
+            for (int next=0; next < valsToPack; next++){
+                this.formatValue(current, line);
+                current++;
+            }
+            out.writeLine(line.getText(), 0, line.length());
+        }
+    }
     /**
      * This getter returns the full format line for the array
      * @return string containing the array's format line
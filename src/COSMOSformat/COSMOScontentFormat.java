@@ -18,9 +18,12 @@ import static SmConstants.VFileConstants.*;
 
 import SmException.FormatException;
 import SmException.SmException;
+import SmUtilities.ChannelTextWriter;
+import SmUtilities.TextFileCursor;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 
-import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -78,6 +81,21 @@ public class COSMOScontentFormat {
      */
     public int loadComponent (int start, String[] infile) 
                                 throws FormatException, SmException {
+        return loadComponent(start, new TextFileCursor(infile));
+    }
+    /**
+     * This method extracts the current component/channel from the input file
+     * contents held in a text cursor.  The text header and comment lines are
+     * picked up as strings, and the numeric arrays are parsed directly from the
+     * file contents without creating a string for each line.
+     * @param start starting line in the file contents to parse the channel
+     * @param infile cursor holding the contents of the input file
+     * @return the line number after the end of the current component
+     * @throws FormatException if unable to extract expected values from text
+     * @throws SmException if unable to convert text to numeric
+     */
+    public int loadComponent (int start, TextFileCursor infile) 
+                                throws FormatException, SmException {
         int current = start;
         int channelNum;  //this is no longer used now that the SCNL code is in
                         //place in the comments, so channel will be set to the empty
@@ -121,11 +139,11 @@ public class COSMOScontentFormat {
      * this for a specific V type must define the process for extracting the
      * data from the data arrays.
      * @param startLine line number where data section starts
-     * @param infile array containing each line of the input file
+     * @param infile cursor holding the contents of the input file
      * @return the updated line number, after the data section
      * @throws FormatException if unable to extract parameters from format line
      */
-    public int parseDataSection (int startLine, String[] infile) throws 
+    public int parseDataSection (int startLine, TextFileCursor infile) throws 
                                                             FormatException {
         System.err.println("method parseDataSection must be overridden");
         return startLine;
@@ -134,12 +152,12 @@ public class COSMOScontentFormat {
      * This method extracts the text header to get the number of lines and the
      * NoData values.  It also saves the header for writing out other data products.
      * @param startLine line number where the text header starts
-     * @param infile array containing each line of the input file
+     * @param infile cursor holding the contents of the input file
      * @return the updated line number, after the text header section
      * @throws FormatException if unable to extract expected parameters
      * @throws NumberFormatException if unable to convert text to numeric
      */
-    private int parseTextHeader(int startLine, String[] infile) 
+    private int parseTextHeader(int startLine, TextFileCursor infile) 
                                                         throws FormatException {
         int current = startLine;
         String line;
@@ -150,7 +168,7 @@ public class COSMOScontentFormat {
         
         try {
             //get the first header line and extract the number of lines in the header
-            line = infile[current];
+            line = infile.getLine(current);
             Pattern regField = Pattern.compile(matchRegex);
             Matcher m = regField.matcher( line );
             if (m.find()) {
@@ -162,9 +180,8 @@ public class COSMOScontentFormat {
                                                                         (current+1));
             }
             //verify that the header lines are in the array, then extract NoData vals
-            if ((numHeaderLines > 0) && (infile.length > (startLine + numHeaderLines))) {
-                textHeader = new String[numHeaderLines];
-                textHeader = Arrays.copyOfRange( infile, startLine, startLine+numHeaderLines);
+            if ((numHeaderLines > 0) && (infile.getNumLines() > (startLine + numHeaderLines))) {
+                textHeader = infile.getLines( startLine, startLine+numHeaderLines);
                 line = textHeader[NODATA_LINE].substring(textHeader[NODATA_LINE].lastIndexOf(":")+1);
                 numbers = line.split(",");
                 if (numbers.length == 2) {
@@ -186,11 +203,11 @@ public class COSMOScontentFormat {
     /**
      * This method extracts and saves the comments for the channel.
      * @param startLine line number where the comments start
-     * @param infile array containing each line of the input file
+     * @param infile cursor holding the contents of the input file
      * @return the updated line number, after the comment section
      * @throws FormatException if unable to locate expected parameters
      */
-    private int parseComments(int startLine, String[] infile) 
+    private int parseComments(int startLine, TextFileCursor infile) 
                                                         throws FormatException {
 
         //at start of line, skip over any whitespace and pick up all digits
@@ -202,8 +219,8 @@ public class COSMOScontentFormat {
         String line = "";
         
         //get the first header line and extract the number of lines in the header
-        if (infile.length > current) {
-            line = infile[current];
+        if (infile.getNumLines() > current) {
+            line = infile.getLine(current);
         } else {
             throw new FormatException("EOF found before comments at line " 
                                                                     + (current+1));
@@ -225,9 +242,8 @@ public class COSMOScontentFormat {
             }
 
             //verify that the comment lines are in the array
-            if ((numComments > 0) && (infile.length > (current + numComments + 1))) {
-                comments = new String[numComments+1];
-                comments = Arrays.copyOfRange(infile,current,(current + numComments + 1));
+            if ((numComments > 0) && (infile.getNumLines() > (current + numComments + 1))) {
+                comments = infile.getLines(current,(current + numComments + 1));
             }
             else {
                 throw new FormatException("Error in comment length of " + numComments);
@@ -240,19 +256,19 @@ public class COSMOScontentFormat {
     /**
      * This method extracts and saves the end-of-data line for the channel.
      * @param startLine line number where the EOD starts
-     * @param infile array containing each line of the input file
+     * @param infile cursor holding the contents of the input file
      * @return the updated line number, after the end-of-data line
      * @throws FormatException if unable to locate expected parameters
      */
-    private int parseEndOfData( int startLine, String[] infile) throws FormatException {
+    private int parseEndOfData( int startLine, TextFileCursor infile) throws FormatException {
         String line;
         int current = startLine;
         //at start of line, skip over any whitespace and look for end-of-data,
         // case insensitive
         String endOfDataRegex = "^((\\s*)(?i)(End-of-data))";
 
-        if (infile.length > current) {
-            line = infile[current];        
+        if (infile.getNumLines() > current) {
+            line = infile.getLine(current);        
             Pattern regDigits = Pattern.compile( endOfDataRegex );
             Matcher m = regDigits.matcher( line );
             if (m.find(0)){
@@ -277,6 +293,53 @@ public class COSMOScontentFormat {
         System.err.println("method VrecToText must be overridden");
         return temp;
     }
+    /**
+     * This method writes the V component out to file in its COSMOS text format,
+     * one section at a time, in the same layout as VrecToText.  The text header,
+     * the integer and real headers and the comments are written first, then
+     * the data section through writeDataSection, and then the end-of-data line.
+     * @param out the writer for the output file
+     * @throws IOException if unable to write to the file
+     */
+    public void writeRecord (ChannelTextWriter out) throws IOException {
+        out.writeLines(this.textHeader);
+        this.intHeader.writeNumberSection(out);
+        this.realHeader.writeNumberSection(out);
+        out.writeLines(this.comments);
+        writeDataSection(out);
+        out.writeLine(this.endOfData);
+    }
+    /**
+     * This method must be overridden by each extending class.  It is called to
+     * write the data section of the V component out to file, in the same
+     * format as VrecToText.
+     * @param out the writer for the output file
+     * @throws IOException if unable to write to the file
+     */
+    public void writeDataSection (ChannelTextWriter out) throws IOException {
+        System.err.println("method writeDataSection must be overridden");
+    }
+    /**
+     * This method is overridden by the extending classes that have real data
+     * arrays.  It returns the data arrays for the binary sidecar file, in the
+     * order they appear in the data section.
+     * @return the data arrays, or an empty array for records without real data
+     */
+    public double[][] getDataArrays() {
+        return new double[0][];
+    }
+    /**
+     * This method writes out the binary sidecar file for the V component, with
+     * the integer and real header values and the data arrays from getDataArrays.
+     * @param outName the full path name of the sidecar file
+     * @param valueSize the size of each data value, BinarySidecar.FLOAT64_SIZE
+     * or BinarySidecar.FLOAT32_SIZE
+     * @throws IOException if unable to write to the file
+     */
+    public void writeBinarySidecar (Path outName, int valueSize) throws IOException {
+        BinarySidecar.write(outName, this.intHeader.getIntArray(),
+                    this.realHeader.getRealArray(), getDataArrays(), valueSize);
+    }
     /**
      * This method checks line 7 of the text header to see if it contains the 
      * record id, and checks the comments for the Authorization tag.  If either
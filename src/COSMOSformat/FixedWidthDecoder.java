@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Name: Java class FixedWidthDecoder.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package COSMOSformat;
+
+/**
+ * This class converts the text of a single numeric field in a COSMOS array
+ * section directly from a character buffer, without creating a string for the
+ * field.  The field must already be trimmed of leading and trailing whitespace.
+ * The results are the same as Integer.parseInt and Double.parseDouble on the
+ * field text.  The common COSMOS field layouts, such as the (10I8) counts and
+ * the (8F10.6) or (6E13.5) real values, are converted in a single pass over
+ * the digits.  Any other text, such as a value with too many digits to be
+ * converted exactly, is handed off to the standard parsing methods, which
+ * also throw the NumberFormatException for text that is not a number.
+ * @author jmjones
+ */
+public class FixedWidthDecoder {
+    // the largest number of digits that always fits in an int
+    private static final int MAX_INT_DIGITS = 9;
+    // the largest number of significant digits that is exact in a double
+    private static final int MAX_EXACT_DIGITS = 15;
+    // the largest exponent value read before handing off to Double.parseDouble
+    private static final int MAX_EXPONENT = 999;
+    // the powers of ten that are exact in a double, also used by the formatter
+    static final double[] POWERS_OF_TEN = {
+        1.0e0, 1.0e1, 1.0e2, 1.0e3, 1.0e4, 1.0e5, 1.0e6, 1.0e7, 1.0e8, 1.0e9,
+        1.0e10, 1.0e11, 1.0e12, 1.0e13, 1.0e14, 1.0e15, 1.0e16, 1.0e17, 1.0e18,
+        1.0e19, 1.0e20, 1.0e21, 1.0e22
+    };
+    /**
+     * Default constructor is private since all methods are static
+     */
+    private FixedWidthDecoder() {
+    }
+    /**
+     * Converts the text of an integer field to an int.
+     * @param text the character buffer holding the field
+     * @param first buffer offset of the first char of the field
+     * @param last buffer offset after the last char of the field
+     * @return the integer value of the field
+     * @throws NumberFormatException if the field is not a valid integer
+     */
+    public static int parseInt( char[] text, int first, int last )
+                                                throws NumberFormatException {
+        int i = first;
+        boolean negative = false;
+        int value = 0;
+        if ((i < last) && ((text[i] == '-') || (text[i] == '+'))) {
+            negative = (text[i] == '-');
+            i++;
+        }
+        if ((i == last) || ((last - i) > MAX_INT_DIGITS)) {
+            return Integer.parseInt(new String(text, first, last - first));
+        }
+        for (; i < last; i++) {
+            char c = text[i];
+            if ((c < '0') || (c > '9')) {
+                return Integer.parseInt(new String(text, first, last - first));
+            }
+            value = value * 10 + (c - '0');
+        }
+        return (negative) ? -value : value;
+    }
+    /**
+     * Converts the text of a real field to a double.  The digits are collected
+     * into an integer mantissa and a power of ten.  When both are exact in a
+     * double, a single multiply or divide gives the correctly rounded value,
+     * which is the same value returned by Double.parseDouble.
+     * @param text the character buffer holding the field
+     * @param first buffer offset of the first char of the field
+     * @param last buffer offset after the last char of the field
+     * @return the double value of the field
+     * @throws NumberFormatException if the field is not a valid number
+     */
+    public static double parseDouble( char[] text, int first, int last )
+                                                throws NumberFormatException {
+        int i = first;
+        boolean negative = false;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        double value;
+        if ((i < last) && ((text[i] == '-') || (text[i] == '+'))) {
+            negative = (text[i] == '-');
+            i++;
+        }
+        //collect the digits before the exponent, leading zeros are not counted
+        for (; i < last; i++) {
+            char c = text[i];
+            if ((c >= '0') && (c <= '9')) {
+                seenDigit = true;
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (digits > MAX_EXACT_DIGITS) {
+                    return Double.parseDouble(new String(text, first, last - first));
+                }
+                if (seenPoint) {
+                    scale--;
+                }
+            } else if ((c == '.') && !seenPoint) {
+                seenPoint = true;
+            } else if ((c == 'E') || (c == 'e')) {
+                break;
+            } else {
+                return Double.parseDouble(new String(text, first, last - first));
+            }
+        }
+        if (!seenDigit) {
+            return Double.parseDouble(new String(text, first, last - first));
+        }
+        //get the exponent, which must have at least one digit
+        if (i < last) {
+            i++;
+            boolean negexp = false;
+            int exponent = 0;
+            if ((i < last) && ((text[i] == '-') || (text[i] == '+'))) {
+                negexp = (text[i] == '-');
+                i++;
+            }
+            if (i == last) {
+                return Double.parseDouble(new String(text, first, last - first));
+            }
+            for (; i < last; i++) {
+                char c = text[i];
+                if ((c < '0') || (c > '9') || (exponent > MAX_EXPONENT)) {
+                    return Double.parseDouble(new String(text, first, last - first));
+                }
+                exponent = exponent * 10 + (c - '0');
+            }
+            scale = (negexp) ? scale - exponent : scale + exponent;
+        }
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if ((scale >= 0) && (scale < POWERS_OF_TEN.length)) {
+            value = (double)mantissa * POWERS_OF_TEN[scale];
+        } else if ((scale < 0) && (-scale < POWERS_OF_TEN.length)) {
+            value = (double)mantissa / POWERS_OF_TEN[-scale];
+        } else {
+            return Double.parseDouble(new String(text, first, last - first));
+        }
+        return (negative) ? -value : value;
+    }
+}
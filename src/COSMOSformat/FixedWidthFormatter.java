@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Name: Java class FixedWidthFormatter.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package COSMOSformat;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * This class formats the numeric values of a COSMOS array section into a
+ * reusable character buffer, in the fixed-width layouts used for the output
+ * arrays: %wd for integers, and %w.pf and %w.pe for reals.  The text is the
+ * same as String.format with the same format, right-justified in the field
+ * width with the field growing if the value needs more room.
+ * <p>
+ * The digits are computed directly from the value scaled by a power of ten.
+ * String.format rounds half-up on the shortest decimal form of the value, so
+ * a value whose scaled remainder is too close to one half for the two to be
+ * sure to agree, or one that is too large to scale exactly, is handed off to
+ * String.format.  String.format is also used for NaN and infinite values,
+ * and if the default locale does not use the ASCII digits and a decimal point.
+ * @author jmjones
+ */
+public class FixedWidthFormatter {
+    // the powers of ten that are exact in a double, from the decoder
+    private static final double[] POWERS_OF_TEN = FixedWidthDecoder.POWERS_OF_TEN;
+    // scaled values at or above this are handed off, keeps the digits exact
+    private static final double MAX_SCALED = 1.0e15;
+    // largest number of digits after the decimal point for the direct method
+    private static final int MAX_PRECISION = 14;
+    // relative distance from one half that is safe to round directly
+    private static final double ROUND_MARGIN = 1.0e-14;
+    private final boolean direct;  // false if the locale needs String.format
+    private final char[] digits;  // work space for the digits of one value
+    private char[] buffer;  // the formatted text
+    private int length;  // number of chars used in the buffer
+    /**
+     * Constructor for the formatter
+     * @param capacity the initial size of the buffer, normally the length of
+     * one output line
+     */
+    public FixedWidthFormatter( int capacity ) {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(
+                                    Locale.getDefault(Locale.Category.FORMAT));
+        this.direct = (symbols.getZeroDigit() == '0') &&
+                                        (symbols.getDecimalSeparator() == '.');
+        this.digits = new char[24];
+        this.buffer = new char[Math.max(capacity, 16)];
+        this.length = 0;
+    }
+    /**
+     * Empties the buffer so the next line can be formatted
+     */
+    public void reset() {
+        this.length = 0;
+    }
+    /**
+     * Getter for the number of chars formatted into the buffer
+     * @return the text length
+     */
+    public int length() {
+        return this.length;
+    }
+    /**
+     * Returns the formatted text as a string
+     * @return the text in the buffer
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+    /**
+     * Getter for the character buffer holding the formatted text, which is
+     * valid up to the length.  The buffer is not copied, so it should not be
+     * changed.
+     * @return reference to the character buffer
+     */
+    public char[] getText() {
+        return this.buffer;
+    }
+    /**
+     * Appends an integer value in the %wd format
+     * @param value the value to format
+     * @param width the field width
+     */
+    public void appendInt( int value, int width ) {
+        if (!direct) {
+            appendText(String.format("%" + width + "d", value));
+            return;
+        }
+        long mag = Math.abs((long)value);
+        int count = fillDigits(mag, 1);
+        appendField(value < 0, count, 0, width);
+    }
+    /**
+     * Appends a real value in the %w.pf format
+     * @param value the value to format
+     * @param width the field width
+     * @param precision the number of digits after the decimal point
+     */
+    public void appendFixed( double value, int width, int precision ) {
+        if ((!direct) || Double.isNaN(value) || Double.isInfinite(value) ||
+                                (precision < 0) || (precision > MAX_PRECISION)) {
+            appendText(String.format("%" + width + "." + precision + "f", value));
+            return;
+        }
+        long scaled = roundScaled(Math.abs(value) * POWERS_OF_TEN[precision]);
+        if (scaled < 0) {
+            appendText(String.format("%" + width + "." + precision + "f", value));
+            return;
+        }
+        int count = fillDigits(scaled, precision + 1);
+        appendField(isNegative(value), count, precision, width);
+    }
+    /**
+     * Appends a real value in the %w.pe format
+     * @param value the value to format
+     * @param width the field width
+     * @param precision the number of digits after the decimal point
+     */
+    public void appendExponent( double value, int width, int precision ) {
+        if ((!direct) || Double.isNaN(value) || Double.isInfinite(value) ||
+                                (precision < 0) || (precision > MAX_PRECISION)) {
+            appendText(String.format("%" + width + "." + precision + "e", value));
+            return;
+        }
+        double mag = Math.abs(value);
+        long scaled = 0;
+        int exponent = 0;
+        if (mag != 0.0) {
+            //find the power of ten that puts precision+1 digits before the point
+            exponent = (int)Math.floor(Math.log10(mag));
+            double lower = POWERS_OF_TEN[precision];
+            double upper = POWERS_OF_TEN[precision + 1];
+            double x = scaleBy(mag, precision - exponent);
+            if ((x >= 0.0) && (x < lower)) {
+                exponent--;
+                x = scaleBy(mag, precision - exponent);
+            } else if (x >= upper) {
+                exponent++;
+                x = scaleBy(mag, precision - exponent);
+            }
+            scaled = (x < 0.0) ? -1 : roundScaled(x);
+            if (scaled < 0) {
+                appendText(String.format("%" + width + "." + precision + "e", value));
+                return;
+            }
+            //rounding up can carry into the next power of ten
+            if (scaled == (long)upper) {
+                scaled = (long)lower;
+                exponent++;
+            }
+        }
+        int count = fillDigits(scaled, precision + 1);
+        //add the exponent after the mantissa digits, at least 2 digits
+        int expmag = Math.abs(exponent);
+        int explen = (expmag >= 100) ? 3 : 2;
+        digits[count++] = 'e';
+        digits[count++] = (exponent < 0) ? '-' : '+';
+        for (int i = explen - 1; i >= 0; i--) {
+            digits[count + i] = (char)('0' + (expmag % 10));
+            expmag = expmag / 10;
+        }
+        count += explen;
+        appendField(isNegative(value), count, precision, width, explen + 2);
+    }
+    /**
+     * Checks for a negative value, including negative zero, which String.format
+     * shows with a minus sign
+     * @param value the value to check
+     * @return true if the sign bit is set
+     */
+    private boolean isNegative( double value ) {
+        return (Double.doubleToRawLongBits(value) < 0);
+    }
+    /**
+     * Multiplies or divides by an exact power of ten
+     * @param mag the value to scale
+     * @param power the power of ten
+     * @return the scaled value, or -1 if the power of ten is not exact
+     */
+    private double scaleBy( double mag, int power ) {
+        if (Math.abs(power) >= POWERS_OF_TEN.length) {
+            return -1.0;
+        }
+        return (power >= 0) ? mag * POWERS_OF_TEN[power] : mag / POWERS_OF_TEN[-power];
+    }
+    /**
+     * Rounds a scaled value half-up to a whole number, if the rounding is
+     * certain to be the same as for the decimal digits String.format uses
+     * @param x the scaled value, not negative
+     * @return the rounded value, or -1 if the value must be handed off
+     */
+    private long roundScaled( double x ) {
+        if (x >= MAX_SCALED) {
+            return -1;
+        }
+        long whole = (long)x;
+        double remainder = x - whole;
+        if (Math.abs(remainder - 0.5) <= (x * ROUND_MARGIN)) {
+            return -1;
+        }
+        return (remainder > 0.5) ? whole + 1 : whole;
+    }
+    /**
+     * Puts the decimal digits of a whole number into the digit work space
+     * @param mag the number, not negative
+     * @param mindigits the smallest number of digits, padded with leading zeros
+     * @return the number of digits
+     */
+    private int fillDigits( long mag, int mindigits ) {
+        int count = 0;
+        long rest = mag;
+        do {
+            count++;
+            rest = rest / 10;
+        } while (rest > 0);
+        count = Math.max(count, mindigits);
+        rest = mag;
+        for (int i = count - 1; i >= 0; i--) {
+            digits[i] = (char)('0' + (rest % 10));
+            rest = rest / 10;
+        }
+        return count;
+    }
+    /**
+     * Copies the digits into the buffer as a right-justified field, with the
+     * minus sign and the decimal point added
+     * @param negative true to add a minus sign
+     * @param count the number of digits in the work space
+     * @param precision the number of digits after the decimal point
+     * @param width the field width
+     */
+    private void appendField( boolean negative, int count, int precision, int width ) {
+        appendField(negative, count, precision, width, 0);
+    }
+    /**
+     * Copies the digits into the buffer as a right-justified field, with the
+     * minus sign and the decimal point added
+     * @param negative true to add a minus sign
+     * @param count the number of chars in the work space
+     * @param precision the number of digits after the decimal point
+     * @param width the field width
+     * @param suffix the number of chars at the end of the work space, such as
+     * the exponent, that follow the digits after the decimal point
+     */
+    private void appendField( boolean negative, int count, int precision,
+                                                    int width, int suffix ) {
+        int point = (precision > 0) ? 1 : 0;
+        int size = count + point + ((negative) ? 1 : 0);
+        int pad = Math.max(width - size, 0);
+        ensureCapacity(length + pad + size);
+        for (int i = 0; i < pad; i++) {
+            buffer[length++] = ' ';
+        }
+        if (negative) {
+            buffer[length++] = '-';
+        }
+        int whole = count - precision - suffix;
+        System.arraycopy(digits, 0, buffer, length, whole);
+        length += whole;
+        if (point > 0) {
+            buffer[length++] = '.';
+        }
+        System.arraycopy(digits, whole, buffer, length, precision + suffix);
+        length += precision + suffix;
+    }
+    /**
+     * Appends text formatted by String.format
+     * @param text the formatted text
+     */
+    private void appendText( String text ) {
+        ensureCapacity(length + text.length());
+        text.getChars(0, text.length(), buffer, length);
+        length += text.length();
+    }
+    /**
+     * Grows the buffer if needed
+     * @param size the number of chars the buffer must hold
+     */
+    private void ensureCapacity( int size ) {
+        if (size > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(size, buffer.length * 2));
+        }
+    }
+}
@@ -22,7 +22,11 @@ import static SmConstants.VFileConstants.DELTA_T;
 import static SmConstants.VFileConstants.MSEC_TO_SEC;
 import SmException.FormatException;
 import SmException.SmException;
+import SmUtilities.ChannelTextWriter;
 import SmUtilities.ConfigReader;
+import SmUtilities.ProcessingContext;
+import SmUtilities.TextFileCursor;
+import java.io.IOException;
 import static SmUtilities.SmConfigConstants.OUT_ARRAY_FORMAT;
 
 /**
@@ -46,13 +50,13 @@ public class V0Component extends COSMOScontentFormat {
      * This method defines the steps for parsing a V0 data record, which contains
      * an integer data array.
      * @param startLine line number for the start of the data section
-     * @param infile contents of the input file, one string per line
+     * @param infile cursor holding the contents of the input file
      * @return updated line number now pointing to first line after data section
      * @throws FormatException if unable to extract format information or
      * to convert text values to numeric
      */
     @Override
-    public int parseDataSection (int startLine, String[] infile) throws 
+    public int parseDataSection (int startLine, TextFileCursor infile) throws 
                                                             FormatException {
         int current = startLine;
         
@@ -100,6 +104,16 @@ public class V0Component extends COSMOScontentFormat {
         outText[totalLength-1] = this.endOfData;
         return outText;
     }
+    /**
+     * This method writes the V0 data array out to file, in the same format as
+     * VrecToText.
+     * @param out the writer for the output file
+     * @throws IOException if unable to write to the file
+     */
+    @Override
+    public void writeDataSection(ChannelTextWriter out) throws IOException {
+        this.V0Data.writeNumberSection(out);
+    }
     /**
      * Updates certain parameters for the V0 file to facilitate its rewrite out
      * as single channel.  The array output format is checked in the configuration
@@ -111,9 +125,22 @@ public class V0Component extends COSMOScontentFormat {
      * @throws SmException if unable to build the new format line
      */
     public void updateV0(String inname) throws FormatException, SmException {
+        updateV0(inname, ProcessingContext.DEFAULT);
+    }
+    /**
+     * Updates certain parameters for the V0 file to facilitate its rewrite out
+     * as single channel, using the configuration parameters of the processing
+     * context for this record.
+     * @param inname the file name for this record
+     * @param context the processing context for this record
+     * @throws FormatException if field width is invalid
+     * @throws SmException if unable to build the new format line
+     */
+    public void updateV0(String inname, ProcessingContext context) 
+                                        throws FormatException, SmException {
         //Get the array output format of single column per channel or packed
         VFileConstants.SmArrayStyle packtype;
-        ConfigReader config = ConfigReader.INSTANCE;
+        ConfigReader config = context.getConfig();
         
         String arrformat = config.getConfigValue(OUT_ARRAY_FORMAT);
         arrformat = (arrformat == null) ? DEFAULT_ARRAY_STYLE : arrformat;
@@ -18,11 +18,15 @@ import static SmConstants.VFileConstants.*;
 import SmException.FormatException;
 import SmException.SmException;
 import SmProcessing.V1Process;
+import SmUtilities.ChannelTextWriter;
 import SmUtilities.ConfigReader;
+import SmUtilities.ProcessingContext;
 import static SmUtilities.SmConfigConstants.OUT_ARRAY_FORMAT;
 import static SmUtilities.SmConfigConstants.PROC_AGENCY_ABBREV;
 import static SmUtilities.SmConfigConstants.PROC_AGENCY_CODE;
 import SmUtilities.SmTimeFormatter;
+import SmUtilities.TextFileCursor;
+import java.io.IOException;
 
 /**
  * This class extends the COSMOScontentFormat base class to define a V1 record.
@@ -84,13 +88,13 @@ public class V1Component extends COSMOScontentFormat {
      * This method defines the steps for parsing a V1 data record, which contains
      * a floating point data array.
      * @param startLine line number for the start of the data section
-     * @param infile contents of the input file, one string per line
+     * @param infile cursor holding the contents of the input file
      * @return updated line number now pointing to first line after data section
      * @throws FormatException if unable to extract format information or
      * to convert text values to numeric
      */
     @Override
-    public int parseDataSection (int startLine, String[] infile) throws 
+    public int parseDataSection (int startLine, TextFileCursor infile) throws 
                                                              FormatException {
         int current = startLine;
         
@@ -120,6 +124,14 @@ public class V1Component extends COSMOScontentFormat {
     public double[] getDataArray() {
         return V1Data.getRealArray();
     }
+    /**
+     * Getter for the data array for the binary sidecar file
+     * @return an array holding the data array reference
+     */
+    @Override
+    public double[][] getDataArrays() {
+        return new double[][] {V1Data.getRealArray()};
+    }
     /**
      * This method builds the V1 component from the V1 process object, picking
      * up the data array and updating header parameters and format lines.  Once
@@ -131,13 +143,25 @@ public class V1Component extends COSMOScontentFormat {
      */
     public void buildV1 (V1Process inVvals) throws 
                                                 SmException, FormatException {
+        buildV1(inVvals, ProcessingContext.DEFAULT);
+    }
+    /**
+     * This method builds the V1 component from the V1 process object, using the
+     * configuration parameters of the processing context for this record.
+     * @param inVvals the V1Process object
+     * @param context the processing context for this record
+     * @throws SmException if unable to access the header values
+     * @throws FormatException if unable to format the numeric values to text
+     */
+    public void buildV1 (V1Process inVvals, ProcessingContext context) throws 
+                                                SmException, FormatException {
         Double epsilon = 0.001;
         StringBuilder sb = new StringBuilder(MAX_LINE_LENGTH);
         StringBuilder eod = new StringBuilder(MAX_LINE_LENGTH);
         String realformat = "%8.3f";
 
         SmTimeFormatter proctime = new SmTimeFormatter();
-        ConfigReader config = ConfigReader.INSTANCE;
+        ConfigReader config = context.getConfig();
         
         this.realHeader.setFieldWidth(DEFAULT_REAL_FIELDWIDTH);
         this.realHeader.buildArrayParams( SmArrayStyle.PACKED );
@@ -264,4 +288,14 @@ public class V1Component extends COSMOScontentFormat {
         outText[totalLength-1] = this.endOfData;
         return outText;
     }
+    /**
+     * This method writes the V1 data array out to file, in the same format as
+     * VrecToText.
+     * @param out the writer for the output file
+     * @throws IOException if unable to write to the file
+     */
+    @Override
+    public void writeDataSection(ChannelTextWriter out) throws IOException {
+        this.V1Data.writeNumberSection(out);
+    }
 }
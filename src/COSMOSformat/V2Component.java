@@ -20,12 +20,16 @@ import SmConstants.VFileConstants.V2DataType;
 import SmException.FormatException;
 import SmException.SmException;
 import SmProcessing.V2Process;
+import SmUtilities.ChannelTextWriter;
 import SmUtilities.ConfigReader;
 import SmUtilities.ProcessStepsRecorder2;
+import SmUtilities.ProcessingContext;
 import static SmUtilities.SmConfigConstants.OUT_ARRAY_FORMAT;
 import static SmUtilities.SmConfigConstants.PROC_AGENCY_ABBREV;
 import static SmUtilities.SmConfigConstants.PROC_AGENCY_CODE;
 import SmUtilities.SmTimeFormatter;
+import SmUtilities.TextFileCursor;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.regex.Matcher;
@@ -94,13 +98,13 @@ public class V2Component extends COSMOScontentFormat {
      * This method defines the steps for parsing a V2 data record, which contains
      * a floating point data array.
      * @param startLine line number for the start of the data section
-     * @param infile contents of the input file, one string per line
+     * @param infile cursor holding the contents of the input file
      * @return updated line number now pointing to first line after data section
      * @throws FormatException if unable to extract format information or
      * to convert text values to numeric
      */
     @Override
-    public int parseDataSection (int startLine, String[] infile) throws 
+    public int parseDataSection (int startLine, TextFileCursor infile) throws 
                                                             FormatException {
         int current = startLine;
         
@@ -130,6 +134,14 @@ public class V2Component extends COSMOScontentFormat {
     public double[] getDataArray() {
         return V2Data.getRealArray();
     }
+    /**
+     * Getter for the data array for the binary sidecar file
+     * @return an array holding the data array reference
+     */
+    @Override
+    public double[][] getDataArrays() {
+        return new double[][] {V2Data.getRealArray()};
+    }
     /**
      * This method builds the V2 component from the V2 process object, picking
      * up the data array and updating header parameters and format lines. Once
@@ -153,6 +165,21 @@ public class V2Component extends COSMOScontentFormat {
      */
     public void buildV2( V2DataType procType, V2Process inVvals, ArrayList<String>processSteps) 
                                             throws SmException, FormatException {
+        buildV2(procType, inVvals, processSteps, ProcessingContext.DEFAULT);
+    }
+    /**
+     * This method builds the V2 component from the V2 process object, using the
+     * configuration parameters and processing steps recorder of the processing
+     * context for this record.
+     * @param procType ACC, VEL, or DIS for the V2 data type
+     * @param inVvals the V2Process object
+     * @param processSteps string array of process steps
+     * @param context the processing context for this record
+     * @throws SmException if unable to access the header values
+     * @throws FormatException if unable to format the numeric values to text
+     */
+    public void buildV2( V2DataType procType, V2Process inVvals, ArrayList<String>processSteps,
+                ProcessingContext context) throws SmException, FormatException {
         Double epsilon = 0.001;
         StringBuilder sb = new StringBuilder(MAX_LINE_LENGTH);
         final double MSEC_TO_SEC = 1e-3;
@@ -163,7 +190,7 @@ public class V2Component extends COSMOScontentFormat {
         int unitscode;
 
         SmTimeFormatter proctime = new SmTimeFormatter();
-        ConfigReader config = ConfigReader.INSTANCE;
+        ConfigReader config = context.getConfig();
         
         double delta_t;
         double dtime;
@@ -317,7 +344,7 @@ public class V2Component extends COSMOScontentFormat {
             this.comments = updateComments(this.comments, processSteps);
         } else {
             if (inVvals.getQCStatus() == V2Status.GOOD) {
-                ProcessStepsRecorder2 stepRec = ProcessStepsRecorder2.INSTANCE;
+                ProcessStepsRecorder2 stepRec = context.getStepsRecorder();
                 ArrayList<String> psteps = stepRec.formatSteps();
                 this.comments = updateComments(this.comments, psteps);
                 psteps.clear();
@@ -386,6 +413,16 @@ public class V2Component extends COSMOScontentFormat {
         outText[totalLength-1] = this.endOfData;
         return outText;
     }
+    /**
+     * This method writes the V2 data array out to file, in the same format as
+     * VrecToText.
+     * @param out the writer for the output file
+     * @throws IOException if unable to write to the file
+     */
+    @Override
+    public void writeDataSection(ChannelTextWriter out) throws IOException {
+        this.V2Data.writeNumberSection(out);
+    }
     /**
      * Takes the current list of comments and appends additional comments created
      * during V2 processing.
@@ -17,16 +17,17 @@ package COSMOSformat;
 import SmConstants.VFileConstants;
 import static SmConstants.VFileConstants.*;
 import SmConstants.VFileConstants.SmArrayStyle;
-import static SmConstants.VFileConstants.V3_DAMPING_VALUES;
 import SmException.FormatException;
 import SmException.SmException;
 import SmProcessing.V3Process;
+import SmUtilities.ChannelTextWriter;
 import SmUtilities.ConfigReader;
+import SmUtilities.ProcessingContext;
 import static SmUtilities.SmConfigConstants.OUT_ARRAY_FORMAT;
 import static SmUtilities.SmConfigConstants.PROC_AGENCY_ABBREV;
 import static SmUtilities.SmConfigConstants.PROC_AGENCY_CODE;
-import SmUtilities.SmDebugLogger;
 import SmUtilities.SmTimeFormatter;
+import SmUtilities.TextFileCursor;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -39,6 +40,7 @@ import java.util.ArrayList;
  */
 public class V3Component extends COSMOScontentFormat {
     private String V3DampingValues; // holds the damping values
+    private int numPeriods; // number of periods at which spectra are computed
     private ArrayList<VRealArray> V3Data; // a list of VRealArray objects for all the different data sections
     private final V1Component parentV1; // link back to the parent V1 record 
     private final V2Component parentV2; // link back to the parent V2 record
@@ -56,6 +58,7 @@ public class V3Component extends COSMOScontentFormat {
         this.parentV2 = null;
         this.parentV2vel = null;
         this.parentV2dis = null;
+        this.numPeriods = NUM_T_PERIODS;
     }
     /**
      * Use this constructor when the V3 component is created from processing
@@ -73,6 +76,7 @@ public class V3Component extends COSMOScontentFormat {
         this.parentV2 = pV2;
         this.parentV2vel = pV2vel;
         this.parentV2dis = pV2dis;
+        this.numPeriods = NUM_T_PERIODS;
         //Load the text header with parent V1 values.  Leave the update to the V2
         //values to the buildV2 method.
         this.noIntVal = pV2.noIntVal;
@@ -99,16 +103,23 @@ public class V3Component extends COSMOScontentFormat {
      * This method defines the steps for parsing a V3 data record, which contains
      * multiple floating point data arrays.
      * @param startLine line number for the start of the data section
-     * @param infile contents of the input file, one string per line
+     * @param infile cursor holding the contents of the input file
      * @return updated line number now pointing to first line after data section
      * @throws FormatException if unable to extract format information or
      * to convert text values to numeric
      */
     @Override
-    public int parseDataSection (int startLine, String[] infile) throws 
+    public int parseDataSection (int startLine, TextFileCursor infile) throws 
                                                             FormatException {
         int current = startLine;
-        V3DampingValues = infile[current++];
+        int numdamp;
+        V3DampingValues = infile.getLine(current++);
+        try {
+            numdamp = Integer.parseInt(V3DampingValues.substring(0, 4).trim());
+        } catch (NumberFormatException | IndexOutOfBoundsException err) {
+            throw new FormatException("Unable to parse V3 damping values line: " + 
+                                                                V3DampingValues);
+        }
         VRealArray Periods = new VRealArray();
         current = Periods.parseValues(current, infile);
         V3Data.add(Periods);
@@ -116,7 +127,8 @@ public class V3Component extends COSMOScontentFormat {
         current = fftVals.parseValues(current, infile);
         V3Data.add(fftVals);
         VRealArray spectra;
-        for (int i = 0; i < NUM_V3_SPECTRA_ARRAYS; i++) {
+        //Sd, Sv and Sa for each damping value
+        for (int i = 0; i < 3 * numdamp; i++) {
             spectra = new VRealArray();
             current = spectra.parseValues(current, infile);
             V3Data.add(spectra);
@@ -141,6 +153,19 @@ public class V3Component extends COSMOScontentFormat {
         varray = V3Data.get(arrnum);
         return varray.getRealArray();
     }
+    /**
+     * Getter for the data arrays for the binary sidecar file, in the order of
+     * the V3 array list
+     * @return an array holding each data array reference
+     */
+    @Override
+    public double[][] getDataArrays() {
+        double[][] arrays = new double[V3Data.size()][];
+        for (int i = 0; i < arrays.length; i++) {
+            arrays[i] = V3Data.get(i).getRealArray();
+        }
+        return arrays;
+    }
     /**
      * This method builds the V3 component from the V3 process object, picking
      * up the data arrays and updating header parameters and format lines.  Once
@@ -151,6 +176,18 @@ public class V3Component extends COSMOScontentFormat {
      * @throws FormatException if unable to format the numeric values to text
      */
     public void buildV3(V3Process inVvals) throws SmException, FormatException {
+        buildV3(inVvals, ProcessingContext.DEFAULT);
+    }
+    /**
+     * This method builds the V3 component from the V3 process object, using the
+     * configuration parameters of the processing context for this record.
+     * @param inVvals the V3Process object
+     * @param context the processing context for this record
+     * @throws SmException if unable to access the header values
+     * @throws FormatException if unable to format the numeric values to text
+     */
+    public void buildV3(V3Process inVvals, ProcessingContext context) 
+                                            throws SmException, FormatException {
         StringBuilder sb = new StringBuilder(MAX_LINE_LENGTH);
         StringBuilder eod = new StringBuilder(MAX_LINE_LENGTH);
         double time;
@@ -161,7 +198,7 @@ public class V3Component extends COSMOScontentFormat {
         String freqformat = "%4.2f";
 
         SmTimeFormatter proctime = new SmTimeFormatter();
-        ConfigReader config = ConfigReader.INSTANCE;
+        ConfigReader config = context.getConfig();
         
         this.realHeader.setFieldWidth(DEFAULT_REAL_FIELDWIDTH);
         this.realHeader.buildArrayParams( VFileConstants.SmArrayStyle.PACKED );
@@ -185,19 +222,20 @@ public class V3Component extends COSMOScontentFormat {
                               SmArrayStyle.SINGLE_COLUMN : SmArrayStyle.PACKED;
         
         //Make the V3 damping values line
-        V3DampingValues = sb.append(String.format("%1$4s", String.valueOf(V3_DAMPING_VALUES.length)))
-                .append(" damping values for which spectra are computed:")
-                .append(String.format("%1$04.2f,", V3_DAMPING_VALUES[0]))
-                .append(String.format("%1$04.2f,", V3_DAMPING_VALUES[1]))
-                .append(String.format("%1$04.2f,", V3_DAMPING_VALUES[2]))
-                .append(String.format("%1$04.2f,", V3_DAMPING_VALUES[3]))
-                .append(String.format("%1$04.2f", V3_DAMPING_VALUES[4]))
-                .toString();
+        double[] dampings = inVvals.getDampingValues();
+        sb.append(String.format("%1$4s", String.valueOf(dampings.length)))
+                .append(" damping values for which spectra are computed:");
+        for (int d = 0; d < dampings.length; d++) {
+            sb.append(String.format("%1$04.2f", dampings[d]))
+                .append((d < dampings.length - 1) ? "," : "");
+        }
+        V3DampingValues = sb.toString();
         
         //transfer the data arrays, starting with the periods
+        numPeriods = inVvals.getV3Array(0).length;
         VRealArray Periods = new VRealArray();
         Periods.setRealArray(inVvals.getV3Array(0));
-        Periods.setNumVals(NUM_T_PERIODS);
+        Periods.setNumVals(numPeriods);
         Periods.setPrecision(REAL_PRECISION_V3);
         Periods.setFieldWidth(REAL_FIELDWIDTH_V3);
         Periods.setDisplayType("F");
@@ -208,7 +246,7 @@ public class V3Component extends COSMOScontentFormat {
         
         VRealArray fftvals = new VRealArray();
         fftvals.setRealArray(inVvals.getV3Array(1));
-        fftvals.setNumVals(NUM_T_PERIODS);
+        fftvals.setNumVals(numPeriods);
         fftvals.setPrecision(REAL_PRECISION_V3);
         fftvals.setFieldWidth(REAL_FIELDWIDTH_V3);
         fftvals.setDisplayType("E");
@@ -219,40 +257,40 @@ public class V3Component extends COSMOScontentFormat {
         
         VRealArray sarray;
         int arrcount = 2;
-        for (int s = 0; s < V3_DAMPING_VALUES.length; s++) {
+        for (int s = 0; s < dampings.length; s++) {
             sarray = new VRealArray();
             sarray.setRealArray(inVvals.getV3Array(arrcount++));
-            sarray.setNumVals(NUM_T_PERIODS);
+            sarray.setNumVals(numPeriods);
             sarray.setPrecision(REAL_PRECISION_V3);
             sarray.setFieldWidth(REAL_FIELDWIDTH_V3);
             sarray.setDisplayType("E");
             sarray.buildArrayParams(packtype);
             line = buildNewDataFormatLine(CMT, CMN, "spectra","Sd",
-                                                            V3_DAMPING_VALUES[s]);
+                                                            dampings[s]);
             sarray.setFormatLine(line + sarray.getNumberFormat());
             V3Data.add(sarray);
 
             sarray = new VRealArray();
             sarray.setRealArray(inVvals.getV3Array(arrcount++));
-            sarray.setNumVals(NUM_T_PERIODS);
+            sarray.setNumVals(numPeriods);
             sarray.setPrecision(REAL_PRECISION_V3);
             sarray.setFieldWidth(REAL_FIELDWIDTH_V3);
             sarray.setDisplayType("E");
             sarray.buildArrayParams(packtype);
             line = buildNewDataFormatLine(CMSECT, CMSECN, "spectra","Sv",
-                                                            V3_DAMPING_VALUES[s]);
+                                                            dampings[s]);
             sarray.setFormatLine(line + sarray.getNumberFormat());
             V3Data.add(sarray);
 
             sarray = new VRealArray();
             sarray.setRealArray(inVvals.getV3Array(arrcount++));
-            sarray.setNumVals(NUM_T_PERIODS);
+            sarray.setNumVals(numPeriods);
             sarray.setPrecision(REAL_PRECISION_V3);
             sarray.setFieldWidth(REAL_FIELDWIDTH_V3);
             sarray.setDisplayType("E");
             sarray.buildArrayParams(packtype);
             line = buildNewDataFormatLine(CMSQSECT, CMSQSECN, "spectra","Sa",
-                                                            V3_DAMPING_VALUES[s]);
+                                                            dampings[s]);
             sarray.setFormatLine(line + sarray.getNumberFormat());
             V3Data.add(sarray);
         }
@@ -262,24 +300,31 @@ public class V3Component extends COSMOScontentFormat {
         //update values in the text header
         this.textHeader[0] = SPECTRA.concat(this.textHeader[0].substring(END_OF_DATATYPE));
         sb = new StringBuilder(MAX_LINE_LENGTH);
-        this.textHeader[10] = sb.append("Processed:").append(val).append(",")
-                            .append(agabbrev).append(", SaMax= ")
-                            .append(String.format(freqformat,inVvals.getPeakVal()))
+        sb.append("Processed:").append(val).append(",").append(agabbrev)
+                                                        .append(", SaMax= ");
+        //without 5% damping spectra there is no peak, so the text has the
+        //no-data value from the headers
+        if (Double.compare(inVvals.getPeakVal(), this.noRealVal) == 0) {
+            sb.append(String.valueOf(this.noRealVal)).append(", no 5%damp spectra");
+        } else {
+            sb.append(String.format(freqformat,inVvals.getPeakVal()))
                             .append(" ").append(unitsname).append(" at ")
                             .append(String.format(freqformat,inVvals.getPeakPeriod()))
-                            .append(" secp, 5%damp").toString();
+                            .append(" secp, 5%damp");
+        }
+        this.textHeader[10] = sb.toString();
         
         //Update the Response Spectrum Parameters in the headers
         this.intHeader.setIntValue(PROCESSING_STAGE_INDEX, V3_STAGE);
         this.intHeader.setIntValue(V_UNITS_INDEX, DEFAULT_NOINTVAL);
         this.intHeader.setIntValue(DATA_PHYSICAL_PARAM_CODE, DEFAULT_NOINTVAL);
-        this.intHeader.setIntValue(NUM_SPECTRA_PERIODS, NUM_T_PERIODS);
-        this.intHeader.setIntValue(NUM_DAMPING_VALUES, V3_DAMPING_VALUES.length);
-        this.realHeader.setRealValue(VALUE_SA_0P2, (inVvals.getSa_0p2()/FROM_G_CONVERSION));
-        this.realHeader.setRealValue(VALUE_SA_0P3, (inVvals.getSa_0p3()/FROM_G_CONVERSION));
-        this.realHeader.setRealValue(VALUE_SA_1P0, (inVvals.getSa_1p0()/FROM_G_CONVERSION));
-        this.realHeader.setRealValue(VALUE_SA_3P0, (inVvals.getSa_3p0()/FROM_G_CONVERSION));
-        this.realHeader.setRealValue(MAX_SA_SPECTRUM, (inVvals.getPeakVal()/FROM_G_CONVERSION));
+        this.intHeader.setIntValue(NUM_SPECTRA_PERIODS, numPeriods);
+        this.intHeader.setIntValue(NUM_DAMPING_VALUES, dampings.length);
+        this.realHeader.setRealValue(VALUE_SA_0P2, convertSa(inVvals.getSa_0p2()));
+        this.realHeader.setRealValue(VALUE_SA_0P3, convertSa(inVvals.getSa_0p3()));
+        this.realHeader.setRealValue(VALUE_SA_1P0, convertSa(inVvals.getSa_1p0()));
+        this.realHeader.setRealValue(VALUE_SA_3P0, convertSa(inVvals.getSa_3p0()));
+        this.realHeader.setRealValue(MAX_SA_SPECTRUM, convertSa(inVvals.getPeakVal()));
         this.realHeader.setRealValue(PERIOD_OF_MAX, inVvals.getPeakPeriod());
         this.realHeader.setRealValue(TIME_OF_MAX, inVvals.getPeakTime());
         this.realHeader.setRealValue(HOUSNER_INTENSITY, inVvals.getHousnerIntensity());        
@@ -288,6 +333,17 @@ public class V3Component extends COSMOScontentFormat {
         this.endOfData = this.parentV2.endOfData;
         this.updateEndOfDataLine(SPECTRA, this.parentV2.getChannel());
     }
+    /**
+     * Converts an Sa value for the real header to units of g, leaving the
+     * no-data value for a period that is not in the period list or for a peak
+     * without 5% damping spectra
+     * @param sa the Sa value
+     * @return the Sa value in g, or the no-data value
+     */
+    private double convertSa( double sa ) {
+        return (Double.compare(sa, this.noRealVal) == 0) ? this.noRealVal : 
+                                                    (sa / FROM_G_CONVERSION);
+    }
     /**
      * This method creates a new data format line for the V3 component data arrays.
      * @param units the numeric code for the type of units, COSMOS table 2
@@ -304,21 +360,21 @@ public class V3Component extends COSMOScontentFormat {
         String outline;
         if (atype.equalsIgnoreCase("periods")) {
             datType = " periods at which spectra computed,      units=";
-            outline = line.append(String.format("%1$4s", String.valueOf(NUM_T_PERIODS)))
+            outline = line.append(String.format("%1$4s", String.valueOf(numPeriods)))
                         .append(datType)
                         .append(String.format("%1$7s",String.valueOf(units)))
                         .append(String.format("(%1$02d),Format=",unitsCode))
                         .toString();
         } else if (atype.equalsIgnoreCase("fft")) {
             datType = " values of approx Fourier spectrum,      units=";
-            outline = line.append(String.format("%1$4s", String.valueOf(NUM_T_PERIODS)))
+            outline = line.append(String.format("%1$4s", String.valueOf(numPeriods)))
                         .append(datType)
                         .append(String.format("%1$7s",String.valueOf(units)))
                         .append(String.format("(%1$02d),Format=",unitsCode))
                         .toString();
         } else {
             outline= line.append(String.format("%1$4s values of %2$2s",
-                                            String.valueOf(NUM_T_PERIODS),stype))
+                                            String.valueOf(numPeriods),stype))
                         .append(String.format(" for Damping =%1$4s",String.valueOf(damp)))
                         .append(",         units=")
                         .append(String.format("%1$7s",String.valueOf(units)))
@@ -380,6 +436,19 @@ public class V3Component extends COSMOScontentFormat {
         outText[totalLength-1] = this.endOfData;
         return outText;
     }
+    /**
+     * This method writes the V3 damping values line and each of the V3 data
+     * arrays out to file, in the same format as VrecToText.
+     * @param out the writer for the output file
+     * @throws IOException if unable to write to the file
+     */
+    @Override
+    public void writeDataSection(ChannelTextWriter out) throws IOException {
+        out.writeLine(V3DampingValues);
+        for (VRealArray each :  V3Data) {
+            each.writeNumberSection(out);
+        }
+    }
     /**
      * updateUploadParms picks up the values needed for the apktable and writes
      * them to a csv file along with the table headers.  Currently the file is
@@ -387,7 +456,15 @@ public class V3Component extends COSMOScontentFormat {
      * @throws IOException if unable to write to the file
      */
     public void updateUploadParms() throws IOException {
-        SmDebugLogger elog = SmDebugLogger.INSTANCE;
+        updateUploadParms(ProcessingContext.DEFAULT);
+    }
+    /**
+     * updateUploadParms picks up the values needed for the apktable and writes
+     * them to a csv file through the processing context for this record.
+     * @param context the processing context for this record
+     * @throws IOException if unable to write to the file
+     */
+    public void updateUploadParms(ProcessingContext context) throws IOException {
         String[] headerline = {"SCNL","STATION_TYPE","STATION_NAME","LAT","LON",
             "EPIC","FAULT","PGAV1","PGAV2","PGV","PGD","SA0P3","SA1P0","SA3P0"};
         ArrayList<String> data = new ArrayList<>();
@@ -431,7 +508,7 @@ public class V3Component extends COSMOScontentFormat {
         data.add(String.format("%15.6f",this.realHeader.getRealValue(VALUE_SA_1P0)));
         data.add(String.format("%15.6f",this.realHeader.getRealValue(VALUE_SA_3P0)));
         
-        elog.writeToCSV(data, headerline, "apktable.csv");
+        context.writeToCSV(data, headerline, "apktable.csv");
         data.clear();
     }
 }
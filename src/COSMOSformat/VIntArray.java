@@ -16,6 +16,7 @@ package COSMOSformat;
 
 import static SmConstants.VFileConstants.*;
 import SmException.FormatException;
+import SmUtilities.TextFileCursor;
 import java.util.ArrayList;
 
 /**
@@ -59,38 +60,27 @@ public class VIntArray extends COSMOSarrayFormat {
     }
     /**
      * This method overrides the abstract class to handle the extraction of 
-     * numeric values for integer arrays.  It takes a string array of text lines
-     * from the input file and an index into the text where the array section
+     * numeric values for integer arrays.  It takes a text cursor holding the lines
+     * of the input file and an index into the text where the array section
      * begins, and parses the format line, then extracts each number and stores
      * in an integer array
      * @param startLine beginning line in the text file for the array information
-     * @param infile string array holding the contents of the COSMOS file
+     * @param infile cursor holding the contents of the COSMOS file
      * @return updated line number, now pointing to the line after the array info.
      * @throws FormatException if unable to find the expected format values or
      * unable to convert text to integer
      */
     @Override
-    public int parseValues( int startLine, String[] infile) 
+    public int parseValues( int startLine, TextFileCursor infile) 
                                                         throws FormatException {
         int current = startLine;
-        int next = 0;
-        ArrayList<String> holdNumbers;
         
         //Check for EOF before parsing format line
-        if (infile.length <= current) {
+        if (infile.getNumLines() <= current) {
             throw new FormatException("Unexpected EOF encountered at line " + current);
         }
-        try {
-            this.parseNumberFormatLine(infile[current]);
-            holdNumbers =  this.extractNumericVals( current, infile);
-            intVals = new int[holdNumbers.size()];
-            for (String each: holdNumbers){
-                intVals[next++] = Integer.parseInt(each);
-            }
-        } catch (NumberFormatException err) {
-            throw new FormatException("Unable to convert text to numeric at line " 
-                                                                        + current);
-        }
+        this.parseNumberFormatLine(infile.getLine(current));
+        intVals = this.decodeIntVals( current, infile);
         //add 1 to account for the integer header format line
         return (current + calculateNumLines() + 1);
     }
@@ -155,14 +145,26 @@ public class VIntArray extends COSMOSarrayFormat {
      */
     @Override
     public ArrayList<String> arrayToText() {
-        String formatting = "%" + String.valueOf(this.getFieldWidth()) + "d";
+        FixedWidthFormatter text = new FixedWidthFormatter(this.getFieldWidth());
         ArrayList <String> textVals = new ArrayList<>();
         
-        for (int each : intVals){
-            textVals.add(String.format(formatting, each));
+        for (int i = 0; i < intVals.length; i++){
+            text.reset();
+            this.formatValue(i, text);
+            textVals.add(text.toString());
         }
         return textVals;
     }
+    /**
+     * This method formats the integer value at the given index in the
+     * %wd format, using the field width stored for the array
+     * @param index index into the integer array
+     * @param out the formatter holding the text being built
+     */
+    @Override
+    public void formatValue(int index, FixedWidthFormatter out) {
+        out.appendInt(intVals[index], this.getFieldWidth());
+    }
     /**
      * Getter for the displayType field,i.e. "I", for type integer
      * @return the display type
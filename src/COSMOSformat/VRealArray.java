@@ -16,6 +16,7 @@ package COSMOSformat;
 
 import static SmConstants.VFileConstants.*;
 import SmException.FormatException;
+import SmUtilities.TextFileCursor;
 import java.util.ArrayList;
 
 /**
@@ -61,38 +62,27 @@ public class VRealArray extends COSMOSarrayFormat {
     }
     /**
      * This method overrides the abstract class to handle the extraction of 
-     * numeric values for real arrays.  It takes a string array of text lines
-     * from the input file and an index into the text where the array section
+     * numeric values for real arrays.  It takes a text cursor holding the lines
+     * of the input file and an index into the text where the array section
      * begins, and parses the format line, then extracts each number and stores
      * in a real array
      * @param startLine beginning line in the text file for the array information
-     * @param infile string array holding the contents of the COSMOS file
+     * @param infile cursor holding the contents of the COSMOS file
      * @return updated line number, now pointing to the line after the array info.
      * @throws FormatException if unable to find the expected format values or
      * unable to convert text to double
      */
     @Override
-    public int parseValues( int startLine, String[] infile) 
-                                                    throws FormatException {
+    public int parseValues( int startLine, TextFileCursor infile) 
+                                                        throws FormatException {
         int current = startLine;
-        int next = 0;
-        ArrayList<String> holdNumbers;
         
         //Check for EOF before parsing format line
-        if (infile.length <= current) {
+        if (infile.getNumLines() <= current) {
             throw new FormatException("Unexpected EOF encountered at line " + current);
         }
-        try {
-            this.parseNumberFormatLine(infile[current]);
-            holdNumbers =  this.extractNumericVals( current, infile);        
-            realVals = new double[holdNumbers.size()];
-            for (String each: holdNumbers){
-                realVals[next++] = Double.parseDouble(each);
-            }
-        } catch (NumberFormatException err) {
-            throw new FormatException("Unable to convert text to numeric at line " 
-                                                                        + current);
-        }
+        this.parseNumberFormatLine(infile.getLine(current));
+        realVals = this.decodeRealVals( current, infile);
         //add 1 to account for the real header format line
         return (current + calculateNumLines() + 1);
     }
@@ -166,17 +156,31 @@ public class VRealArray extends COSMOSarrayFormat {
      */
     @Override
     public ArrayList<String> arrayToText() {
-        String outType = ("e".equalsIgnoreCase(this.displayType)) ? "e" : "f";
-        //!!!update this line for floating pt. format
-        String formatting = "%" + String.valueOf(this.getFieldWidth()) + "." +
-                                String.valueOf(this.getPrecision())+ outType;
+        FixedWidthFormatter text = new FixedWidthFormatter(this.getFieldWidth());
         ArrayList <String> textVals = new ArrayList<>();
         
-        for (double each : realVals){
-            textVals.add(String.format(formatting, each));
+        for (int i = 0; i < realVals.length; i++){
+            text.reset();
+            this.formatValue(i, text);
+            textVals.add(text.toString());
         }
         return textVals;
     }
+    /**
+     * This method formats the real value at the given index in the %w.pe
+     * format if the display type is 'E', and in the %w.pf format otherwise,
+     * using the field width and precision stored for the array
+     * @param index index into the real array
+     * @param out the formatter holding the text being built
+     */
+    @Override
+    public void formatValue(int index, FixedWidthFormatter out) {
+        if ("e".equalsIgnoreCase(this.displayType)) {
+            out.appendExponent(realVals[index], this.getFieldWidth(), this.getPrecision());
+        } else {
+            out.appendFixed(realVals[index], this.getFieldWidth(), this.getPrecision());
+        }
+    }
     /**
      * Getter for the displayType field,i.e. "F", for floating point
      * @return the display type
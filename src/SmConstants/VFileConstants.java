@@ -188,6 +188,9 @@ public final class VFileConstants {
     public static final int DEFAULT_1ST_POLY_ORD_UPPER = 2;
     public static final int DEFAULT_3RD_POLY_ORD_LOWER = 1;
     public static final int DEFAULT_3RD_POLY_ORD_UPPER = 3;
+    //adaptive baseline iterations are checked in rms order, or all are checked
+    public static final String ABC_SEARCH_RANKED = "Ranked";
+    public static final String ABC_SEARCH_FULL = "Full";
     
     //QC check constants
     public static final double DEFAULT_QA_INITIAL_VELOCITY = 0.1;
@@ -201,9 +204,42 @@ public final class VFileConstants {
     public static final String BASELINE_WRITE_ON = "On";
     public static final String DELETE_INPUT_V0 = "Yes";
     
+    //batch processing, number of input files and channels processed at the same time
+    public static final int DEFAULT_PROCESSING_THREADS = 1;
+    
+    //watch folder daemon, time in msec a new file must be unchanged before it
+    //is processed, and time in msec to wait for folder events
+    public static final String WATCH_INPUT_FOLDER_ON = "On";
+    public static final long WATCH_SETTLE_MSEC = 2000;
+    public static final long WATCH_POLL_MSEC = 500;
+    
+    //batch processing, number of parsed files waiting in the pipeline
+    public static final int DEFAULT_PIPELINE_QUEUE_SIZE = 4;
+    
+    //binary sidecar files for the V1, V2 and V3 products, value type and extension
+    public static final String BINARY_SIDECAR_FLOAT64 = "Float64";
+    public static final String BINARY_SIDECAR_FLOAT32 = "Float32";
+    public static final String BINARY_SIDECAR_EXT = ".bin";
+    
+    //V3 response spectra engine, one period at a time or a lane group of
+    //periods advanced together at each time step
+    public enum SpectraEngine { SCALAR, LANEGROUP };
+    public static final String SPECTRA_ENGINE_SCALAR = "Scalar";
+    public static final String SPECTRA_ENGINE_LANEGROUP = "LaneGroup";
+    
+    //records below the sampling limit are resampled unless this is set
+    public static final String RESAMPLE_LOW_RATES_OFF = "Off";
+    
+    //resampling method, zero padding the FFT or the polyphase filter
+    public static final String RESAMPLE_METHOD_FFT = "FFT";
+    public static final String RESAMPLE_METHOD_POLYPHASE = "Polyphase";
+    public static final int RESAMPLE_CHUNK_SIZE = 4096;
+    
     //V3 processing
     public static final int NUM_COEF_VALS = 6;
     public static final double[] V3_DAMPING_VALUES = {0.00, 0.02, 0.05, 0.10, 0.20};
+    //the V3 damping values line fits this many values of 2 decimal places
+    public static final int MAX_V3_DAMPINGS = 6;
     public static final double[] V3_SAMPLING_RATES = {50.0, 100.0, 200.0, 500.0};
     public static final int NUM_T_PERIODS = 91;
     //1 array for periods, 1 for fft, 3 for each of 5 damping values = 17
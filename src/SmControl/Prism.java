@@ -15,24 +15,42 @@
 
 package SmControl;
 
-import SmConstants.VFileConstants;
-import static SmConstants.VFileConstants.RAWACC;
-import SmException.FormatException;
+import static SmConstants.VFileConstants.DEFAULT_PIPELINE_QUEUE_SIZE;
+import static SmConstants.VFileConstants.DEFAULT_PROCESSING_THREADS;
+import static SmConstants.VFileConstants.WATCH_INPUT_FOLDER_ON;
+import static SmConstants.VFileConstants.WATCH_POLL_MSEC;
+import static SmConstants.VFileConstants.WATCH_SETTLE_MSEC;
 import SmException.SmException;
 import SmUtilities.ConfigReader;
 import SmUtilities.PrismLogger;
 import SmUtilities.PrismXMLReader;
 import SmUtilities.SmConfigConstants;
+import static SmUtilities.SmConfigConstants.PIPELINE_QUEUE_SIZE;
+import static SmUtilities.SmConfigConstants.PROCESSING_THREADS;
+import static SmUtilities.SmConfigConstants.WATCH_INPUT_FOLDER;
 import SmUtilities.SmDebugLogger;
 import SmUtilities.SmTimeFormatter;
 import java.io.*;
 import java.lang.reflect.Field;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import javax.xml.parsers.ParserConfigurationException;
 import org.xml.sax.SAXException;
 
@@ -43,7 +61,15 @@ import org.xml.sax.SAXException;
  * reads in *.V0 files in the folder and then processes each file in turn.
  * Processing involves reading in the file and parsing into record(s), running
  * the waveform processing algorithms to create the data products, and then
- * writing out the data in the different formats.
+ * writing out the data in the different formats.  The reading, processing,
+ * and writing of a list of files are run as the stages of a pipeline, so the
+ * file reads and writes overlap with the processing.  If the configuration file
+ * sets more than one processing thread, the files are processed in parallel by
+ * that many pipeline workers, with the log entries still written out for one
+ * file at a time and in the same order as a single-threaded run.  The channels
+ * within each file are also processed in parallel on a shared fork-join pool.
+ * If the configuration file turns on the watch input folder flag, PRISM runs as
+ * a daemon that keeps processing new files as they arrive in the input folder.
  * @author jmjones
  */
 public class Prism {
@@ -55,6 +81,9 @@ public class Prism {
     private File[] inVList;
     private SmQueue smqueue;
     private SmProduct Vproduct;
+    private ForkJoinPool channelPool;  //shared pool for the channels in a file
+    private int queueSize;  //number of parsed files waiting in the pipeline
+    private final String V0_FILE_PATTERN = "*.[vV]0*";
     /**
      * Constructor for PRISM main
      * @param args input arguments
@@ -86,7 +115,10 @@ public class Prism {
     /**
      * Main method starts the loggers, reads in the configuration file, 
      * reads in all .v0 or .v0c file names in the input folder, processes each file
-     * in turn, and then deletes the input file.
+     * in turn, and then deletes the input file.  The files are processed in
+     * parallel if the configuration file sets more than one processing thread.
+     * If the configuration file turns on the watch input folder flag, the
+     * input folder is then watched for new files until the program is stopped.
      * @param args input string arguments, input folder, output folder, optional
      * configuration file (full path names)
      * @throws SmException if a fatal error occurs during processing
@@ -94,8 +126,6 @@ public class Prism {
      */
     public static void main(String[] args) throws SmException, IOException { 
         String config = "";
-        int lineCount = 0; 
-        int recordCount = 0;
         double NANO_TO_SECOND = 1.0e-9; //for timing tests
         // 
         try {
@@ -116,13 +146,6 @@ public class Prism {
             catch (IOException err) {
                 throw new SmException("Unable to open the log files: " + err.getMessage());
             }
-            //get the list of filenames in the input directory
-            try {
-                smc.inVList = smc.getFileList( smc.inFolder, "*.[vV]0*" );
-            }
-            catch (IOException err) {
-                throw new SmException("Unable to access V0 file list: " + err.getMessage());
-            }
             //get the configuration file
             if ( !smc.configFile.isEmpty()  ) {
                 smc.readConfigFile( smc.configFile );
@@ -133,35 +156,40 @@ public class Prism {
                     throw new SmException("Unable to access configuration file parameters for logging");
                 }
             }
+            String watch = ConfigReader.INSTANCE.getConfigValue(WATCH_INPUT_FOLDER);
+            boolean watchFolder = (watch == null) ? false : 
+                                    watch.equalsIgnoreCase(WATCH_INPUT_FOLDER_ON);
+            //get the list of filenames in the input directory
+            if (!watchFolder) {
+                try {
+                    smc.inVList = smc.getFileList( smc.inFolder, smc.V0_FILE_PATTERN );
+                }
+                catch (IOException err) {
+                    throw new SmException("Unable to access V0 file list: " + err.getMessage());
+                }
+            }
             //Get each filename, read in, parse, process, write it out. When  
             //going through the list of input files, report any problems 
             //with an individual file and move directly to the next file.  
             //Attempt to process all the files in the list.
-            for (File each: smc.inVList){
-                smc.smqueue = new SmQueue( each, logtime );
-                smc.Vproduct = new SmProduct(smc.inFolder, smc.outFolder);
-                try {
-                    smc.smqueue.readInFile( each );
-                    
-                    // parse the raw acceleration file into channel record(s)
-                    recordCount = smc.smqueue.parseVFile( RAWACC );
-                    
-                    //process the records, then write out results
-                    smc.smqueue.processQueueContents(smc.Vproduct);
-
-                    String[] outlist = smc.Vproduct.writeOutProducts();
-                    log.writeToLog(outlist);
-                    String[] troublelist = smc.Vproduct.buildTroubleLog(outlist);
-                    if (troublelist.length > 0) {
-                        errlog.writeToLog(troublelist, VFileConstants.LogType.TROUBLE);
-                    }
-                    smc.Vproduct.deleteV0AfterProcessing(each);
+            String threads = ConfigReader.INSTANCE.getConfigValue(PROCESSING_THREADS);
+            int numThreads = (threads == null) ? DEFAULT_PROCESSING_THREADS : 
+                                                    Integer.parseInt(threads);
+            String qsize = ConfigReader.INSTANCE.getConfigValue(PIPELINE_QUEUE_SIZE);
+            smc.queueSize = (qsize == null) ? DEFAULT_PIPELINE_QUEUE_SIZE : 
+                                                    Integer.parseInt(qsize);
+            if (numThreads > 1) {
+                smc.channelPool = new ForkJoinPool(numThreads);
+            }
+            try {
+                if (watchFolder) {
+                    smc.watchInputFolder(numThreads, logtime);
+                } else {
+                    smc.processFileList(numThreads, logtime);
                 }
-                catch (FormatException | IOException | SmException err) {
-                    String[] logtxt = new String[2];
-                    logtxt[0] = "Unable to process file " + each.toString();
-                    logtxt[1] = "\t" + err.getMessage();
-                    log.writeToLog(logtxt);
+            } finally {
+                if (smc.channelPool != null) {
+                    smc.channelPool.shutdownNow();
                 }
             }
         } 
@@ -171,6 +199,164 @@ public class Prism {
         }
 
 
+    }
+    /**
+     * Processes each of the files in the input file list.  If there is more
+     * than one file, the files go through the read, process, and write stages
+     * of the pipeline, with one processing worker per processing thread.
+     * @param numThreads the number of processing threads
+     * @param logtime the time stamp for this processing run
+     * @throws SmException if a stage is interrupted or fails unexpectedly
+     * @throws IOException if unable to write to the log files
+     */
+    public void processFileList( int numThreads, String logtime ) 
+                                                throws SmException, IOException {
+        if (this.inVList.length > 1) {
+            SmPipeline pipeline = new SmPipeline(this.inFolder, this.outFolder,
+                                    logtime, this.channelPool, this.queueSize);
+            pipeline.processFiles(this.inVList, numThreads);
+        } else {
+            for (File each: this.inVList){
+                this.smqueue = new SmQueue( each, logtime );
+                this.smqueue.setChannelPool(this.channelPool);
+                this.Vproduct = new SmProduct(this.inFolder, this.outFolder);
+                processFile(this.smqueue, this.Vproduct, each);
+            }
+        }
+    }
+    /**
+     * Runs PRISM as a daemon on the input folder.  The folder is registered
+     * with a watch service before it is listed, so no file arriving during
+     * startup is missed.  The files already in the folder and each new or
+     * changed V0 file are processed once they have been unchanged for the
+     * settle time, so files still being copied into the folder are not read.
+     * The files that are ready at the same time are processed together as one
+     * file list, in file name order.  If the processing of a file list fails,
+     * the failure and the file names are recorded in the log and those files
+     * are dropped.  The configuration and spectra tables are read in only once
+     * for the life of the daemon.  This method returns only if the thread is
+     * interrupted.
+     * @param numThreads the number of processing threads
+     * @param logtime the time stamp for this processing run
+     * @throws SmException if the input folder can no longer be watched
+     * @throws IOException if unable to watch the input folder or write to the logs
+     */
+    public void watchInputFolder( int numThreads, String logtime ) 
+                                                throws SmException, IOException {
+        PrismLogger log = PrismLogger.INSTANCE;
+        Path dir = Paths.get(this.inFolder);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher(
+                                                    "glob:" + V0_FILE_PATTERN);
+        Map<String, Long> pending = new TreeMap<>();
+        ArrayList<File> ready = new ArrayList<>();
+        WatchKey key;
+        long now;
+        
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+            String[] watchLog = new String[1];
+            watchLog[0] = "Watching input folder " + this.inFolder + " for new files";
+            log.writeToLog(watchLog);
+            addFolderContents(dir, pending, System.currentTimeMillis());
+            while (true) {
+                key = watcher.poll(WATCH_POLL_MSEC, TimeUnit.MILLISECONDS);
+                now = System.currentTimeMillis();
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            addFolderContents(dir, pending, now);
+                        } else {
+                            Path name = (Path)event.context();
+                            if (matcher.matches(name)) {
+                                pending.put(name.toString(), now);
+                            }
+                        }
+                    }
+                    if (!key.reset()) {
+                        throw new SmException("Input folder " + this.inFolder +
+                                                        " is no longer accessible");
+                    }
+                }
+                //pick up the files that have settled and process them
+                Iterator<Map.Entry<String, Long>> iter = pending.entrySet().iterator();
+                while (iter.hasNext()) {
+                    Map.Entry<String, Long> entry = iter.next();
+                    if ((now - entry.getValue()) >= WATCH_SETTLE_MSEC) {
+                        File name = new File(this.inFolder, entry.getKey());
+                        if (name.isFile()) {
+                            ready.add(name);
+                        }
+                        iter.remove();
+                    }
+                }
+                if (!ready.isEmpty()) {
+                    this.inVList = ready.toArray(new File[ready.size()]);
+                    ready.clear();
+                    //a batch that fails is logged and dropped, and the folder
+                    //is still watched for new files
+                    try {
+                        processFileList(numThreads, logtime);
+                    } catch (SmException err) {
+                        logFailedBatch(log, err);
+                    }
+                }
+            }
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    /**
+     * Records a file list that failed processing in the log, with the names
+     * of the files that were dropped
+     * @param log the logger for writing
+     * @param err the reason the processing failed
+     * @throws IOException if unable to write to the log
+     */
+    private void logFailedBatch( PrismLogger log, SmException err ) 
+                                                            throws IOException {
+        String[] logtxt = new String[this.inVList.length + 2];
+        logtxt[0] = "Unable to process file list, its files are dropped";
+        logtxt[1] = "\t" + err.getMessage();
+        for (int i = 0; i < this.inVList.length; i++) {
+            logtxt[i + 2] = "\t" + this.inVList[i].toString();
+        }
+        log.writeToLog(logtxt);
+    }
+    /**
+     * Adds the names of the V0 files currently in the folder to the list of
+     * files waiting to be processed
+     * @param dir the input folder
+     * @param pending the file names waiting to be processed, with the time of
+     * the last change seen for each file
+     * @param now the current time in msec
+     * @throws IOException if unable to read the folder contents
+     */
+    private void addFolderContents( Path dir, Map<String, Long> pending, long now )
+                                                            throws IOException {
+        try (DirectoryStream<Path> stream =
+                                    Files.newDirectoryStream(dir, V0_FILE_PATTERN)) {
+            for (Path entry: stream) {
+                pending.put(entry.getFileName().toString(), now);
+            }
+        }
+    }
+    /**
+     * Reads in, parses, and processes a single input file, then writes out the
+     * products and records the output file names in the log.  Any problems
+     * with the file are recorded in the log and the file is skipped.
+     * @param queue the processing queue for the file
+     * @param product the product queue for the file
+     * @param each the input file
+     * @throws IOException if unable to write to the log files
+     */
+    public void processFile( SmQueue queue, SmProduct product, File each ) 
+                                                            throws IOException {
+        if (SmPipeline.readFile(queue, each)) {
+            //process the records, then write out results
+            if (SmPipeline.processRecords(queue, product, each)) {
+                SmPipeline.writeProducts(product, each);
+            }
+        }
     }
     /**
      * Reads in the configuration file and parses the xml
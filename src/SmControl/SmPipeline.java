@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Name: Java class SmPipeline.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package SmControl;
+
+import SmConstants.VFileConstants;
+import static SmConstants.VFileConstants.RAWACC;
+import SmException.FormatException;
+import SmException.SmException;
+import SmUtilities.LogBuffer;
+import SmUtilities.PrismLogger;
+import SmUtilities.SmDebugLogger;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class runs the batch processing of a list of input files as a pipeline
+ * of three stages: reading and parsing the input files, processing the records,
+ * and writing out the products.  The stages are connected by bounded queues so
+ * that the disk reads and writes overlap with the processing, and a stage that
+ * gets ahead of the others waits for them, keeping the number of files held in
+ * memory limited.  One thread reads the files in list order, the processing
+ * stage runs one or more worker threads, and the calling thread writes out the
+ * products in list order.  Each file has its own log buffer that is attached to
+ * the thread working on it in each stage, and the buffer is written out to the
+ * logs once the products for the file are written, so the log files match
+ * those from a single-threaded run.
+ * <p>
+ * The three steps for one file are also available as static methods for
+ * processing a file directly on the calling thread.
+ * @author jmjones
+ */
+public class SmPipeline {
+    private final String inFolder;
+    private final String outFolder;
+    private final String logtime;
+    private final ForkJoinPool channelPool;
+    private final int capacity;
+    private final fileitem ENDITEM = new fileitem(null, null, null);
+    /**
+     * Constructor for the pipeline
+     * @param inFolder the input folder
+     * @param outFolder the output folder, top level
+     * @param logtime the time stamp for this processing run
+     * @param channelPool the fork-join pool for the channels within a file, or
+     * null to process the channels one at a time
+     * @param capacity the number of parsed files that can wait for processing
+     */
+    public SmPipeline( String inFolder, String outFolder, String logtime,
+                                        ForkJoinPool channelPool, int capacity ) {
+        this.inFolder = inFolder;
+        this.outFolder = outFolder;
+        this.logtime = logtime;
+        this.channelPool = channelPool;
+        this.capacity = capacity;
+    }
+    /**
+     * Processes the files in the list through the pipeline.  The processing
+     * queue holds up to capacity parsed files, and the write queue holds the
+     * files in list order up to capacity plus the number of workers, so the
+     * reader waits when either the processing or the writing falls behind.
+     * @param inVList the list of input files
+     * @param numWorkers the number of processing worker threads
+     * @throws SmException if a stage is interrupted or fails unexpectedly
+     * @throws IOException if unable to write to the log files
+     */
+    public void processFiles( final File[] inVList, final int numWorkers )
+                                            throws SmException, IOException {
+        final ArrayBlockingQueue<fileitem> processQueue =
+                                            new ArrayBlockingQueue<>(capacity);
+        final ArrayBlockingQueue<fileitem> writeQueue =
+                                new ArrayBlockingQueue<>(capacity + numWorkers);
+        ExecutorService pool = Executors.newFixedThreadPool(numWorkers + 1);
+        ArrayList<Future<Void>> stages = new ArrayList<>();
+        try {
+            //read stage, reads and parses the files in list order
+            stages.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException, InterruptedException {
+                    try {
+                        for (File each : inVList) {
+                            fileitem item = new fileitem(each,
+                                        new SmQueue( each, logtime ),
+                                        new SmProduct(inFolder, outFolder));
+                            item.queue.setChannelPool(channelPool);
+                            item.buffer.attach();
+                            try {
+                                item.failed = !readFile(item.queue, each);
+                            } finally {
+                                item.buffer.detach();
+                            }
+                            writeQueue.put(item);
+                            processQueue.put(item);
+                        }
+                    } finally {
+                        for (int i = 0; i < numWorkers; i++) {
+                            processQueue.put(ENDITEM);
+                        }
+                        writeQueue.put(ENDITEM);
+                    }
+                    return null;
+                }
+            }));
+            //processing stage, each worker takes the next parsed file
+            for (int i = 0; i < numWorkers; i++) {
+                stages.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws InterruptedException {
+                        fileitem item = processQueue.take();
+                        while (item != ENDITEM) {
+                            item.buffer.attach();
+                            try {
+                                if (!item.failed) {
+                                    item.failed = !processRecords(item.queue,
+                                                        item.product, item.file);
+                                }
+                            } catch (IOException | RuntimeException | Error err) {
+                                //any failure, including an Error, is recorded
+                                //before the latch is released so the products
+                                //of the file are not written
+                                item.error = err;
+                            } finally {
+                                item.buffer.detach();
+                                item.done.countDown();
+                            }
+                            item = processQueue.take();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            //write stage, on this thread and in list order
+            fileitem item = writeQueue.take();
+            while (item != ENDITEM) {
+                item.done.await();
+                if (item.error != null) {
+                    throw new SmException("Unable to process file " +
+                                item.file.toString() + ": " + item.error.toString());
+                }
+                if (!item.failed) {
+                    item.buffer.attach();
+                    try {
+                        writeProducts(item.product, item.file);
+                    } finally {
+                        item.buffer.detach();
+                    }
+                }
+                item.buffer.writeToLogs();
+                item = writeQueue.take();
+            }
+            for (Future<Void> stage : stages) {
+                stage.get();
+            }
+        } catch (ExecutionException err) {
+            throw new SmException("Unable to process file list: " +
+                                                    err.getCause().toString());
+        } catch (InterruptedException err) {
+            //keep the interrupt so a caller that goes on, such as the input
+            //folder watch, still stops
+            Thread.currentThread().interrupt();
+            throw new SmException("Processing interrupted for file list");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    /**
+     * Reads in the input file and parses it into channel record(s).  Any
+     * problem with the file is recorded in the log.
+     * @param queue the processing queue for the file
+     * @param each the input file
+     * @return true if the file was read in and parsed, false if not
+     * @throws IOException if unable to write to the log files
+     */
+    public static boolean readFile( SmQueue queue, File each ) throws IOException {
+        try {
+            queue.readInFile( each );
+
+            // parse the raw acceleration file into channel record(s)
+            queue.parseVFile( RAWACC );
+            return true;
+        }
+        catch (FormatException | IOException | SmException err) {
+            logFileError(each, err);
+            return false;
+        }
+    }
+    /**
+     * Processes the records in the queue and hands the products off to the
+     * product object.  Any problem with the records is recorded in the log.
+     * @param queue the processing queue for the file
+     * @param product the product queue for the file
+     * @param each the input file
+     * @return true if the records were processed, false if not
+     * @throws IOException if unable to write to the log files
+     */
+    public static boolean processRecords( SmQueue queue, SmProduct product,
+                                                File each ) throws IOException {
+        try {
+            queue.processQueueContents(product);
+            return true;
+        }
+        catch (FormatException | IOException | SmException err) {
+            logFileError(each, err);
+            return false;
+        }
+    }
+    /**
+     * Writes out the products, records the output file names in the log,
+     * and deletes the input file if requested in the configuration file.  Any
+     * problem with the products is recorded in the log.
+     * @param product the product queue for the file
+     * @param each the input file
+     * @throws IOException if unable to write to the log files
+     */
+    public static void writeProducts( SmProduct product, File each )
+                                                            throws IOException {
+        PrismLogger log = PrismLogger.INSTANCE;
+        SmDebugLogger errlog = SmDebugLogger.INSTANCE;
+        try {
+            String[] outlist = product.writeOutProducts();
+            log.writeToLog(outlist);
+            String[] troublelist = product.buildTroubleLog(outlist);
+            if (troublelist.length > 0) {
+                errlog.writeToLog(troublelist, VFileConstants.LogType.TROUBLE);
+            }
+            product.deleteV0AfterProcessing(each);
+        }
+        catch (IOException err) {
+            logFileError(each, err);
+        }
+    }
+    /**
+     * Records a problem with an input file in the log
+     * @param each the input file
+     * @param err the error found for the file
+     * @throws IOException if unable to write to the log file
+     */
+    private static void logFileError( File each, Exception err ) throws IOException {
+        PrismLogger log = PrismLogger.INSTANCE;
+        String[] logtxt = new String[2];
+        logtxt[0] = "Unable to process file " + each.toString();
+        logtxt[1] = "\t" + err.getMessage();
+        log.writeToLog(logtxt);
+    }
+    /**
+     * This private class holds one input file as it moves through the stages,
+     * with its processing queue, product queue, and log buffer.  The latch is
+     * released when the processing stage is done with the file.
+     */
+    private class fileitem {
+        private final File file;
+        private final SmQueue queue;
+        private final SmProduct product;
+        private final LogBuffer buffer;
+        private final CountDownLatch done;
+        private boolean failed;
+        private Throwable error;
+
+        public fileitem( File file, SmQueue queue, SmProduct product ) {
+            this.file = file;
+            this.queue = queue;
+            this.product = product;
+            this.buffer = new LogBuffer();
+            this.done = new CountDownLatch(1);
+            this.failed = false;
+            this.error = null;
+        }
+    }
+}
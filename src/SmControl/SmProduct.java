@@ -19,12 +19,17 @@ import COSMOSformat.V0Component;
 import COSMOSformat.V1Component;
 import COSMOSformat.V2Component;
 import COSMOSformat.V3Component;
+import COSMOSformat.BinarySidecar;
+import static SmConstants.VFileConstants.BINARY_SIDECAR_EXT;
+import static SmConstants.VFileConstants.BINARY_SIDECAR_FLOAT32;
+import static SmConstants.VFileConstants.BINARY_SIDECAR_FLOAT64;
 import static SmConstants.VFileConstants.DELETE_INPUT_V0;
 import static SmConstants.VFileConstants.MAX_LINE_LENGTH;
 import SmConstants.VFileConstants.V2Status;
+import SmUtilities.ChannelTextWriter;
 import SmUtilities.ConfigReader;
+import static SmUtilities.SmConfigConstants.BINARY_SIDECAR;
 import static SmUtilities.SmConfigConstants.DELETE_V0;
-import SmUtilities.TextFileWriter;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -55,6 +60,7 @@ public class SmProduct {
     private File logDir;
     private ArrayList<String> loglist;
     private boolean deleteInputFiles;
+    private int sidecarValueSize;  // 0 if no binary sidecar files are written
     private final String V0DIR = "V0";
     private final String V1DIR = "V1";
     private final String V2DIR = "V2";
@@ -81,6 +87,14 @@ public class SmProduct {
         String deleteV0 = config.getConfigValue(DELETE_V0);
         this.deleteInputFiles = (deleteV0 == null) ? false : 
                                     deleteV0.equalsIgnoreCase(DELETE_INPUT_V0);
+        String sidecar = config.getConfigValue(BINARY_SIDECAR);
+        if ((sidecar != null) && sidecar.equalsIgnoreCase(BINARY_SIDECAR_FLOAT64)) {
+            this.sidecarValueSize = BinarySidecar.FLOAT64_SIZE;
+        } else if ((sidecar != null) && sidecar.equalsIgnoreCase(BINARY_SIDECAR_FLOAT32)) {
+            this.sidecarValueSize = BinarySidecar.FLOAT32_SIZE;
+        } else {
+            this.sidecarValueSize = 0;
+        }
     }
     /**
      * Method to add a product to the product queue for later writing out to a file.
@@ -193,21 +207,17 @@ public class SmProduct {
      * @throws IOException if unable to write out the file
      */
     public String[] writeOutProducts() throws IOException {
-        TextFileWriter textout;
         Iterator iter;
         Path outName = null;
-        String[] contents;
         String chanvalue;
         //write out V0s
         iter = this.V0List.iterator();
         while (iter.hasNext()) {
             V0Component rec0 = (V0Component)iter.next();
-            contents = rec0.VrecToText();
             chanvalue = (V0List.size() > 1) ? rec0.getChannel() : "";
             outName = buildFilename(rec0.getStationDir(),V0DIR, rec0.getFileName(),
                                                     "V0c", chanvalue, "");
-            textout = new TextFileWriter(outName, contents);
-            textout.writeOutToFile();
+            writeRecord(rec0, outName);
             this.loglist.add(outName.toString());
         }
         this.V0List.clear();
@@ -215,46 +225,42 @@ public class SmProduct {
         iter = this.V1List.iterator();
         while (iter.hasNext()) {
             V1Component rec1 = (V1Component)iter.next();
-            contents = rec1.VrecToText();
             chanvalue = (V1List.size() > 1) ? rec1.getChannel() : "";
             outName = buildFilename(rec1.getStationDir(),V1DIR, rec1.getFileName(),
                                                     "V1c", chanvalue, "");
-            textout = new TextFileWriter(outName, contents);
-            textout.writeOutToFile();
+            writeRecord(rec1, outName);
             this.loglist.add(outName.toString());
+            writeSidecar(rec1, outName);
         }
         this.V1List.clear();
         //write out V2s
         iter = this.V2List.iterator();
         while (iter.hasNext()) {
             V2Component rec2 = (V2Component)iter.next();
-            contents = rec2.VrecToText();
             chanvalue = (V2List.size() > 3) ? rec2.getChannel() : "";
             outName = buildFilename(rec2.getStationDir(),V2DIR, rec2.getFileName(),
                                                   "V2c", chanvalue, "acc");
-            textout = new TextFileWriter(outName, contents);
-            textout.writeOutToFile();
+            writeRecord(rec2, outName);
             this.loglist.add(outName.toString());
+            writeSidecar(rec2, outName);
             
             //get velocity and write to file
             if (iter.hasNext()) {
                 rec2 = (V2Component)iter.next();
                 outName = buildFilename(rec2.getStationDir(),V2DIR, rec2.getFileName(),
                                                     "V2c",chanvalue, "vel");
-                contents = rec2.VrecToText();
-                textout = new TextFileWriter(outName, contents);
-                textout.writeOutToFile();
+                writeRecord(rec2, outName);
                 this.loglist.add(outName.toString());
+                writeSidecar(rec2, outName);
             }
             //get displacement and write to file
             if (iter.hasNext()) {
                 rec2 = (V2Component)iter.next();
                 outName = buildFilename(rec2.getStationDir(),V2DIR, rec2.getFileName(),
                                                     "V2c", chanvalue, "dis");
-                contents = rec2.VrecToText();
-                textout = new TextFileWriter(outName, contents);
-                textout.writeOutToFile();
+                writeRecord(rec2, outName);
                 this.loglist.add(outName.toString());
+                writeSidecar(rec2, outName);
             }
         }
         this.V2List.clear();
@@ -265,10 +271,9 @@ public class SmProduct {
             chanvalue = (V3List.size() > 1) ? rec3.getChannel() : "";
             outName = buildFilename(rec3.getStationDir(), V3DIR, rec3.getFileName(),
                                                    "V3c", chanvalue, "");
-            contents = rec3.VrecToText();
-            textout = new TextFileWriter(outName, contents);
-            textout.writeOutToFile();
+            writeRecord(rec3, outName);
             this.loglist.add(outName.toString());
+            writeSidecar(rec3, outName);
         }
         this.V3List.clear();
         
@@ -277,6 +282,34 @@ public class SmProduct {
         loglist.clear();
         return outlist;
     }
+    /**
+     * Writes out a single record to its output file, streaming each section of
+     * the record to the file as it is formatted.
+     * @param rec the record to write out
+     * @param outName the full path name of the output file
+     * @throws IOException if unable to write out the file
+     */
+    private void writeRecord(COSMOScontentFormat rec, Path outName) throws IOException {
+        try (ChannelTextWriter out = new ChannelTextWriter(outName)) {
+            rec.writeRecord(out);
+        }
+    }
+    /**
+     * Writes out the binary sidecar file for a V1, V2 or V3 record next to its
+     * product file, if sidecar output is selected in the configuration file,
+     * and adds the sidecar file name to the log list.
+     * @param rec the record to write out
+     * @param outName the full path name of the product file
+     * @throws IOException if unable to write out the file
+     */
+    private void writeSidecar(COSMOScontentFormat rec, Path outName) throws IOException {
+        if (this.sidecarValueSize == 0) {
+            return;
+        }
+        Path sideName = Paths.get(outName.toString() + BINARY_SIDECAR_EXT);
+        rec.writeBinarySidecar(sideName, this.sidecarValueSize);
+        this.loglist.add(sideName.toString());
+    }
     /**
      * Builds the output filename from a folder path, file name, file extension,
      * channel number, and V2 processing type extension
@@ -26,22 +26,29 @@ import SmException.SmException;
 import SmProcessing.V1Process;
 import SmProcessing.V2Process;
 import SmProcessing.V3Process;
-import SmUtilities.TextFileReader;
+import SmUtilities.ConfigReader;
+import SmUtilities.ProcessingContext;
+import SmUtilities.TextFileCursor;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  *  This class builds a queue of all the records in one input V0 file.  The file
  * may contain only one channel or could have mulitple channels bundled together.
  * The contents of the queue are processed to create V1 - V3 records, complete
- * with their text files ready for writing out to file.
+ * with their text files ready for writing out to file.  If a fork-join pool
+ * has been set for the queue, the records are processed in parallel on the
+ * pool and the products are then handed off in the original record order.
  * @author jmjones
  */
 public class SmQueue {
     private final File fileName; //input file name and path
     private ArrayList<COSMOScontentFormat> smlist;  //holds each channel as a record
-    private String[] fileContents;  // the input file contents by line
+    private TextFileCursor fileContents;  // the input file contents by line
     private String logtime;
+    private ForkJoinPool channelPool;  //pool for parallel records, or null
     /**
      * Constructor for SmQueue
      * @param inFileName input file name
@@ -50,18 +57,28 @@ public class SmQueue {
     public SmQueue (File inFileName, String logtime){
         this.fileName = inFileName;
         this.logtime = logtime;
+        this.channelPool = null;
     }
     /**
-     * This method reads in the input text file
+     * Sets the fork-join pool used to process the records in the queue in
+     * parallel.  If the pool is null, the records are processed one at a time.
+     * @param pool the fork-join pool for the records, or null
+     */
+    public void setChannelPool(ForkJoinPool pool) {
+        this.channelPool = pool;
+    }
+    /**
+     * This method reads in the input text file.  The contents are held in a
+     * single buffer with the line offsets, and strings are only created for
+     * the header and comment lines as the records are parsed.
      * @param filename input file name
      * @throws IOException if unable to read the file
      */
     public void readInFile(File filename) throws IOException{
-        TextFileReader infile = new TextFileReader( filename );
-        fileContents = infile.readInTextFile();
+        fileContents = new TextFileCursor( filename );
     }
     /**
-     * Start with the COSMOS text file in an array of strings.  Create a record for
+     * Start with the COSMOS text file held in a text cursor.  Create a record for
      * each channel in the file and fill the record with the header and data
      * arrays.  Let the record object determine how much of the file goes into
      * each channel record.  Create an arrayList of all the records contained
@@ -81,30 +98,30 @@ public class SmQueue {
         int returnLine;
         smlist = new ArrayList<>();
         
-        while (currentLine < fileContents.length) {
+        while (currentLine < fileContents.getNumLines()) {
             if (dataType.equals( RAWACC )) {
                 V0Component rec = new V0Component( dataType );
                 returnLine = rec.loadComponent(currentLine, fileContents);
-                currentLine = (returnLine > currentLine) ? returnLine : fileContents.length;
+                currentLine = (returnLine > currentLine) ? returnLine : fileContents.getNumLines();
                 smlist.add(rec);
             } else if (dataType.equals( UNCORACC )){
                 V1Component rec = new V1Component( dataType );
                 returnLine = rec.loadComponent(currentLine, fileContents);
-                currentLine = (returnLine > currentLine) ? returnLine : fileContents.length;
+                currentLine = (returnLine > currentLine) ? returnLine : fileContents.getNumLines();
                 smlist.add(rec);                
             } else if ((dataType.equals( CORACC )) || (dataType.equals( VELOCITY )) ||
                                                  (dataType.equals( DISPLACE ))) {
                 //Look at current line to see what piece of V2 is next.
-                if (fileContents[currentLine].matches("(?s).*(?i)Velocity.*")) {
+                if (fileContents.getLine(currentLine).matches("(?s).*(?i)Velocity.*")) {
                     dataType = VELOCITY;
-                } else if (fileContents[currentLine].matches("(?s).*(?i)Displace.*"))  {
+                } else if (fileContents.getLine(currentLine).matches("(?s).*(?i)Displace.*"))  {
                     dataType = DISPLACE;
                 } else {
                     dataType = CORACC;
                 }
                 V2Component rec = new V2Component( dataType );
                 returnLine = rec.loadComponent(currentLine, fileContents);
-                currentLine = (returnLine > currentLine) ? returnLine : fileContents.length;
+                currentLine = (returnLine > currentLine) ? returnLine : fileContents.getNumLines();
                 smlist.add(rec);                
             } else {
                 throw new FormatException("Invalid file data type: " + dataType);
@@ -114,7 +131,17 @@ public class SmQueue {
     }
     /**
      * This method processes each record in the queue and hands the products off
-     * to the product object.
+     * to the product object.  Each record is processed with its own processing
+     * context, holding a snapshot of the configuration parameters taken at the
+     * start of the queue, its own processing steps recorder, and a buffer for
+     * its debug log entries.  The log entries for a record are written out when
+     * the record is complete.  If a fork-join pool has been set and there is
+     * more than one record, all the records are processed on the pool first,
+     * then the products and log entries are handed off in record order.  If a
+     * record fails, the records ahead of it are handed off and the error for
+     * the first failed record is thrown, the same as for serial processing.
+     * The pool is also kept in the context of each record, so the response
+     * spectra of a record are computed in parallel on the same pool.
      * @param Vprod the product queue object that will receive the processed results
      * @throws FormatException if a called method is unable to format, such as text to numerics
      * @throws SmException if a called method found a processing error such as an
@@ -123,63 +150,158 @@ public class SmQueue {
      */
     public void processQueueContents(SmProduct Vprod) 
                                 throws FormatException, SmException, IOException {
-
-        V2Component V2acc;
-        V2Component V2vel;
-        V2Component V2dis;
-        
+        ConfigReader config = ConfigReader.INSTANCE.getSnapshot();
+        final ArrayList<channeltask> tasks = new ArrayList<>();
         for (COSMOScontentFormat rec : smlist) {
-            //declare rec as a V0 channel record
-            V0Component v0rec = (V0Component)rec;
-            v0rec.updateV0(this.fileName.toString());
+            tasks.add(new channeltask((V0Component)rec, fileName, logtime,
+                                new ProcessingContext(config, channelPool)));
+        }
+        if ((channelPool != null) && (tasks.size() > 1)) {
+            channelPool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+            for (channeltask task : tasks) {
+                try {
+                    task.checkError();
+                    task.addProducts(Vprod);
+                } finally {
+                    task.context.writeLogs();
+                }
+            }
+        } else {
+            for (channeltask task : tasks) {
+                try {
+                    task.processChannel();
+                    task.addProducts(Vprod);
+                } finally {
+                    task.context.writeLogs();
+                }
+            }
+        }
+    }
+    /**
+     * Getter for the queue of records from the file
+     * @return the queue of cosmos objects
+     */
+    public ArrayList<COSMOScontentFormat> getSmList() {
+        return smlist;
+    }
+    /**
+     * This private class runs the V1 - V3 processing for one record of the
+     * queue and holds the resulting components until they are handed off to
+     * the product object.  When run as a fork-join task, any processing error
+     * is held and rethrown by checkError so that errors are reported in
+     * record order.
+     */
+    private static class channeltask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final V0Component v0rec;
+        private final File fileName;
+        private final String logtime;
+        private final ProcessingContext context;
+        private V1Component v1rec;
+        private V2Status V2result;
+        private V2Component V2acc;
+        private V2Component V2vel;
+        private V2Component V2dis;
+        private V3Component V3rec;
+        private Exception error;
+
+        public channeltask( V0Component v0rec, File fileName, String logtime,
+                                                ProcessingContext context ) {
+            this.v0rec = v0rec;
+            this.fileName = fileName;
+            this.logtime = logtime;
+            this.context = context;
+            this.error = null;
+        }
+        @Override
+        protected void compute() {
+            try {
+                processChannel();
+            } catch (FormatException | SmException | IOException | RuntimeException err) {
+                this.error = err;
+            }
+        }
+        /**
+         * Rethrows the error held from processing the record, if any
+         * @throws FormatException if unable to format, such as text to numerics
+         * @throws SmException if a processing error was found
+         * @throws IOException if unable to create directories, etc.
+         */
+        public void checkError() throws FormatException, SmException, IOException {
+            if (error instanceof FormatException) {
+                throw (FormatException)error;
+            } else if (error instanceof SmException) {
+                throw (SmException)error;
+            } else if (error instanceof IOException) {
+                throw (IOException)error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException)error;
+            }
+        }
+        /**
+         * Runs the V1 - V3 processing for the record and builds the components
+         * @throws FormatException if unable to format, such as text to numerics
+         * @throws SmException if a processing error was found
+         * @throws IOException if unable to read in the spectra coefficients
+         */
+        public void processChannel() throws FormatException, SmException, IOException {
+            v0rec.updateV0(fileName.toString(), context);
             
             //create the V1 processing object and do the processing          
-            V1Process v1val = new V1Process(v0rec);
+            V1Process v1val = new V1Process(v0rec, context);
             v1val.processV1Data();
             
             //create a V1 component to get the processing results
-            V1Component v1rec = new V1Component( UNCORACC, v0rec);
-            v1rec.buildV1(v1val);
+            v1rec = new V1Component( UNCORACC, v0rec);
+            v1rec.buildV1(v1val, context);
            
             //Create the V2 processing object and do the processing.  V2 processing
             //produces 3 V2 objects: corrected acceleration, velocity, and displacement
-            V2Process v2val = new V2Process(v1rec, this.fileName, this.logtime);
-            V2Status V2result = v2val.processV2Data();
-            
-            Vprod.setDirectories(v0rec.getRcrdId(),v0rec.getSCNLauth(), 
-                                                v1rec.getEventDateTime(),V2result);
-            Vprod.addProduct(v0rec, "V0");
-            Vprod.addProduct(v1rec, "V1");
+            V2Process v2val = new V2Process(v1rec, fileName, logtime, context);
+            V2result = v2val.processV2Data();
             
             if ((V2result == V2Status.GOOD) || (V2result == V2Status.FAILQC)) {
                 //create the V2 components to get the processing results
                 V2acc = new V2Component( CORACC, v1rec );
-                V2acc.buildV2(V2DataType.ACC, v2val, null);
+                V2acc.buildV2(V2DataType.ACC, v2val, null, context);
                 V2vel = new V2Component( VELOCITY, v1rec );
-                V2vel.buildV2(V2DataType.VEL, v2val, null);
+                V2vel.buildV2(V2DataType.VEL, v2val, null, context);
                 V2dis = new V2Component( DISPLACE, v1rec );
-                V2dis.buildV2(V2DataType.DIS, v2val, null);
-                Vprod.addProduct(V2acc, "V2");
-                Vprod.addProduct(V2vel, "V2");
-                Vprod.addProduct(V2dis, "V2");
+                V2dis.buildV2(V2DataType.DIS, v2val, null, context);
                 if (V2result == V2Status.GOOD) {
                     //Create the V3 processing object and do the processing.  V3
                     //processing produces 1  V3 object: response spectra.
-                    V3Process v3val = new V3Process(V2acc, v2val);
+                    V3Process v3val = new V3Process(V2acc, v2val, context);
                     v3val.processV3Data();
-                    V3Component V3rec = new V3Component( SPECTRA, V2acc, V2vel, V2dis);
-                    V3rec.buildV3(v3val);
-                    V3rec.updateUploadParms();
-                    Vprod.addProduct(V3rec, "V3");
+                    V3rec = new V3Component( SPECTRA, V2acc, V2vel, V2dis);
+                    V3rec.buildV3(v3val, context);
+                    V3rec.updateUploadParms(context);
                 }
             }
         }
-    }
-    /**
-     * Getter for the queue of records from the file
-     * @return the queue of cosmos objects
-     */
-    public ArrayList<COSMOScontentFormat> getSmList() {
-        return smlist;
+        /**
+         * Sets up the directories for the record and hands its components off
+         * to the product object
+         * @param Vprod the product queue object to receive the components
+         */
+        public void addProducts( SmProduct Vprod ) {
+            Vprod.setDirectories(v0rec.getRcrdId(),v0rec.getSCNLauth(), 
+                                                v1rec.getEventDateTime(),V2result);
+            Vprod.addProduct(v0rec, "V0");
+            Vprod.addProduct(v1rec, "V1");
+            if (V2acc != null) {
+                Vprod.addProduct(V2acc, "V2");
+                Vprod.addProduct(V2vel, "V2");
+                Vprod.addProduct(V2dis, "V2");
+            }
+            if (V3rec != null) {
+                Vprod.addProduct(V3rec, "V3");
+            }
+        }
     }
 }
\ No newline at end of file
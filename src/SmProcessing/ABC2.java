@@ -21,8 +21,14 @@ import SmConstants.VFileConstants.V2Status;
 import SmException.SmException;
 import SmUtilities.ABCSortPairs;
 import SmUtilities.ConfigReader;
+import SmUtilities.ProcessingContext;
 import static SmUtilities.SmConfigConstants.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
 
 /**
@@ -46,6 +52,11 @@ import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
  * </p><p>
  * The goodness of fit values are ranked, and the lowest ranking iteration that
  * also passes the QC checks is chosen as the final baseline correction.</p>
+ * <p>The rms values are known as soon as the baseline function is fitted, before
+ * any filtering.  By default the iterations are ranked by rms first, and only
+ * filtered and QC checked in ranked order until one passes, which selects the
+ * same iteration as filtering and checking every one.  The full search of every
+ * iteration can be chosen in the configuration file.</p>
  * <p>The solutions returned from ABC reflect the order of corrections determined from
  * the velocity array.  The actual corrections made were the derivative of the baseline
  * correction determined from velocity.  To record the order of the actual corrections
@@ -57,6 +68,8 @@ public class ABC2 {
     private final int RESULT_PARMS = 14;
     
     private final int MOVING_WINDOW = 200;
+    private final double INITIAL_STEP_PENALTY = 1000;
+    private final double NOT_CHECKED = -1.0;
     private final int difforder;
     private final double dtime;
     private final double lowcut;
@@ -78,6 +91,7 @@ public class ABC2 {
     private double[] bnn;
     private double[] derivbnn;
     private double[] b1;
+    private SegmentPolynomialFit segmentfit;
     private int bestfirstdegree;
     private int bestthirddegree;
     private ArrayList<double[]> params;
@@ -87,6 +101,8 @@ public class ABC2 {
     private int counter;
     private double calculated_taper;
     private double config_taper;
+    private final ProcessingContext context;
+    private final boolean rankedSearch;
     /**
      * The constructor for ABC validates the low and high ranges for the 1st and
      * 3rd polynomial orders that were defined in the configuration file.
@@ -103,6 +119,28 @@ public class ABC2 {
     public ABC2(double delttime, double[] invel, double[] inacc,
                                       double lowcut,double highcut, int numroll,
                                       int ppick, double taplengthtime) throws SmException {
+        this(delttime, invel, inacc, lowcut, highcut, numroll, ppick, taplengthtime,
+                                                    ProcessingContext.DEFAULT);
+    }
+    /**
+     * The constructor for ABC using the configuration parameters of the
+     * processing context for this record.
+     * @param delttime sampling interval, in seconds/sample
+     * @param invel velocity array to find the baseline function for
+     * @param inacc acceleration array to remove the baseline function derivative from
+     * @param lowcut lowcut filter value to use
+     * @param highcut high cut filter value
+     * @param numroll filter order / 2
+     * @param ppick event onset index
+     * @param taplengthtime minimum number of seconds for the filter taper length
+     * @param context the processing context for this record
+     * @throws SmException if polynomial orders are invalid
+     */
+    public ABC2(double delttime, double[] invel, double[] inacc,
+                                      double lowcut,double highcut, int numroll,
+                                      int ppick, double taplengthtime,
+                        ProcessingContext context) throws SmException {
+        this.context = context;
         this.dtime = delttime;
         this.estart = ppick;
         this.taplength = taplengthtime;
@@ -119,9 +157,11 @@ public class ABC2 {
         this.bestfirstdegree = 0;
         this.bestthirddegree = 0;
 
-        ConfigReader config = ConfigReader.INSTANCE;
+        ConfigReader config = context.getConfig();
         String difford = config.getConfigValue(DIFFERENTIATION_ORDER);
         this.difforder = (difford == null) ? DEFAULT_DIFFORDER : Integer.parseInt(difford);
+        String search = config.getConfigValue(ABC_CANDIDATE_SEARCH);
+        this.rankedSearch = (search == null) || !search.equalsIgnoreCase(ABC_SEARCH_FULL);
         
         //Get the values out of the configuration file and screen for correctness.
         //First polynomial order        
@@ -168,7 +208,7 @@ public class ABC2 {
     public final int validateConfigParam( String configparm, int defval, int lower,
                                                                     int upper) {
         int outval = 0;
-        ConfigReader config = ConfigReader.INSTANCE;
+        ConfigReader config = context.getConfig();
         String inval = config.getConfigValue(configparm);
         if (inval == null) {
             outval = defval;
@@ -201,11 +241,8 @@ public class ABC2 {
         int startval = estart + MOVING_WINDOW;
         boolean success = false;
         params = new ArrayList<>();
-        double[] onerun;
         VFileConstants.V2Status status = V2Status.NOABC;
-        QCcheck qcchecker = new QCcheck();
-        qcchecker.validateQCvalues();
-        qcchecker.findWindow(lowcut, (1.0/dtime), estart);
+        QCcheck qcchecker = makeQCcheck();
         filter = new ButterworthFilter();
         boolean valid = filter.calculateCoefficients(lowcut,highcut,dtime,numroll, true);
         if (!valid) {
@@ -222,44 +259,49 @@ public class ABC2 {
         //At each iteration, filter, integrate, and differentiate.  Store the
         //QC results for each iteration as well as the rms of the corrected vs. 
         //original segments.
+        ArrayList<int[]> iterations = new ArrayList<>();
         for (int order3 = degreeP3lo; order3 <= degreeP3hi; order3++) {
             for (int t2 = startval; t2 <= endval; t2 += MOVING_WINDOW) {
                 if (((t2-estart)*dtime) >= ((int)1.0/lowcut)) {
-                    processTheArrays( t2, order3);
-                    qcchecker.qcVelocity(velocity);
-                    qcchecker.qcDisplacement(displace);
-                    //store the results in an array for comparison
-                    onerun = new double[RESULT_PARMS];
-                    onerun[0] = Math.sqrt(Math.pow(rms[0], 2) +
-                            Math.pow(rms[1],2) + Math.pow(rms[2],2));
-                    onerun[1] = Math.abs(qcchecker.getResidualDisplacement());
-                    onerun[2] = Math.abs(qcchecker.getInitialVelocity());
-                    onerun[3] = Math.abs(qcchecker.getResidualVelocity());
-                    onerun[4] = estart;
-                    onerun[5] = t2;
-                    onerun[6] = bestfirstdegree;
-                    onerun[7] = order3;
-                    onerun[8] = counter;
-                    onerun[9] = rms[0];
-                    onerun[10] = rms[1];
-                    onerun[11] = rms[2];
-                    onerun[12] = 0;
-                    onerun[13]= 0;
-                    //Penalty for initial acceleration step
-                    ArrayStats accstat = new ArrayStats(accel);
-                    if (Math.abs(Math.abs(accel[0]) - Math.abs(accstat.getPeakVal())) < 5*Math.ulp(accel[0])) {
-                        onerun[0] = 1000;
-                    }
-                    params.add(onerun);
-                    counter++;
+                    iterations.add(new int[] {t2, order3});
                 }
             }
         }
         //exit with error status if no estimates performed
-        if (params.isEmpty()) {
+        if (iterations.isEmpty()) {
             status = V2Status.NOABC;
             return status;
         }
+        //prepare the 3rd segment fits for each 2nd break point
+        segmentfit = new SegmentPolynomialFit(velstart, dtime, degreeP3hi,
+                                                    startval, MOVING_WINDOW);
+        ArrayList<Integer> remaining = new ArrayList<>();
+        if (rankedSearch) {
+            status = findRankedFit(iterations, qcchecker);
+            if (status == V2Status.GOOD) {
+                return status;
+            }
+            //No iteration ahead of the penalized ones passed, so finish the
+            //remaining iterations and select from all of them.
+            for (int i = 0; i < iterations.size(); i++) {
+                if (params.get(i)[1] == NOT_CHECKED) {
+                    remaining.add(i);
+                }
+            }
+            candidatetask[] tasks = runCandidates(iterations, remaining, false);
+            for (int k = 0; k < tasks.length; k++) {
+                params.set(remaining.get(k), tasks[k].getResult());
+            }
+            counter = iterations.size() + 1;
+        } else {
+            for (int i = 0; i < iterations.size(); i++) {
+                remaining.add(i);
+            }
+            for (candidatetask task : runCandidates(iterations, remaining, false)) {
+                params.add(task.getResult());
+                counter++;
+            }
+        }
         //Sort the results based on cumulative rms
         int count = 0;
         ABCSortPairs sorter = new ABCSortPairs();
@@ -274,9 +316,7 @@ public class ABC2 {
         //check each solution against the QA values and find the first that passes
         for (int idx : ranking) {
             eachrun = params.get(idx);
-            success = (eachrun[2] <= qcchecker.getInitVelocityQCval()) && 
-                          (eachrun[3] <= qcchecker.getResVelocityQCval()) && 
-                                (eachrun[1] <= qcchecker.getResDisplaceQCval());
+            success = passesQC(eachrun, qcchecker);
             if (success) {
                 processTheArrays((int)eachrun[5],(int)eachrun[7]);
                 status = V2Status.GOOD;
@@ -292,6 +332,239 @@ public class ABC2 {
         }
         return status;
     }
+    /**
+     * Ranks the iterations by the rms of the baseline fit alone, then filters
+     * and QC checks them in ranked order, stopping at the first one that passes.
+     * This gives the same solution as the full search because the rms ranking
+     * is the ranking of the full search, except for iterations given the
+     * penalty for an initial acceleration step, which is only known after
+     * filtering.  A penalized iteration ranks at the penalty value, so the
+     * iterations with rms below the penalty are checked in order, and
+     * iterations with equal rms are checked only once, as in the sorter.  If
+     * none of these pass, the status is left at NOABC, and the iterations not
+     * checked have NOT_CHECKED for their QC values in the parameter list.
+     * <p>When the record has a fork-join pool, the next iterations in ranked
+     * order are run together, one for each thread of the pool, and their
+     * results are then checked in ranked order.  Results past the one that
+     * passes are dropped, so the parameter list is the same as for a run on
+     * one thread.</p>
+     * @param iterations the 2nd break point and 3rd polynomial order for each
+     * iteration
+     * @param qcchecker the QC checker holding the QC limits
+     * @return GOOD if an iteration passed QC, otherwise NOABC
+     * @throws SmException if unable to calculate valid filter parameters
+     */
+    private V2Status findRankedFit( ArrayList<int[]> iterations, QCcheck qcchecker)
+                                                            throws SmException {
+        final double[] scores = new double[iterations.size()];
+        Integer[] order = new Integer[iterations.size()];
+        double[] segrms = new double[NUM_SEGMENTS];
+        segrms[0] = rms[0];
+        double[] onerun;
+        for (int i = 0; i < iterations.size(); i++) {
+            int[] each = iterations.get(i);
+            findBaseline(velstart, each[0], each[1], segrms);
+            onerun = makeResult(each, counter, segrms, null, null);
+            params.add(onerun);
+            scores[i] = onerun[0];
+            order[i] = i;
+            counter++;
+        }
+        //rank by rms, with equal values in iteration order
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int cmp = Double.compare(scores[a], scores[b]);
+                return (cmp != 0) ? cmp : a.compareTo(b);
+            }
+        });
+        ranking = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            ranking[i] = order[i];
+        }
+        ForkJoinPool pool = context.getPool();
+        int batch = (pool == null) ? 1 : pool.getParallelism();
+        boolean ranked = false;
+        int k = 0;
+        while ((k < order.length) &&
+                    (Double.compare(scores[order[k]], INITIAL_STEP_PENALTY) < 0)) {
+            //collect the next iterations to run, leaving out any with the same
+            //rms as an iteration that has already been ranked
+            ArrayList<Integer> next = new ArrayList<>();
+            boolean skip = ranked;
+            int end = k;
+            while ((end < order.length) && (next.size() < batch) &&
+                    (Double.compare(scores[order[end]], INITIAL_STEP_PENALTY) < 0)) {
+                if (!sameScore(scores, order, end)) {
+                    skip = false;
+                }
+                if (!skip) {
+                    next.add(order[end]);
+                }
+                end++;
+            }
+            candidatetask[] tasks = runCandidates(iterations, next, true);
+            int t = 0;
+            for (int j = k; j < end; j++) {
+                int idx = order[j];
+                candidatetask task = null;
+                if ((t < next.size()) && (next.get(t) == idx)) {
+                    task = tasks[t++];
+                }
+                if (sameScore(scores, order, j)) {
+                    if (ranked) {
+                        continue;
+                    }
+                } else {
+                    ranked = false;
+                }
+                onerun = task.getResult();
+                params.set(idx, onerun);
+                if (Double.compare(onerun[0], scores[idx]) != 0) {
+                    //penalized, so it ranks at the penalty value
+                    continue;
+                }
+                ranked = true;
+                if (passesQC(onerun, qcchecker)) {
+                    //the arrays from this iteration are the solution
+                    applyCandidate(task.getCandidate());
+                    solution = idx;
+                    return V2Status.GOOD;
+                }
+            }
+            k = end;
+        }
+        return V2Status.NOABC;
+    }
+    /**
+     * Checks if the iteration at the input position in the ranked order has
+     * the same rms as the one ranked before it
+     * @param scores the rms values for each iteration
+     * @param order the iteration indices in ranked order
+     * @param position the position in the ranked order
+     * @return true if the rms is the same as the one before it
+     */
+    private boolean sameScore( double[] scores, Integer[] order, int position ) {
+        return (position > 0) && (Double.compare(scores[order[position]],
+                                        scores[order[position - 1]]) == 0);
+    }
+    /**
+     * Runs the input iterations, in parallel on the fork-join pool for the
+     * record if there is one.  Each iteration is run independently, so the
+     * results are the same as running them one at a time.
+     * @param iterations the 2nd break point and 3rd polynomial order for each
+     * iteration
+     * @param indices the indices of the iterations to run
+     * @param keep true if the arrays for each iteration are kept with the
+     * results, false if only the results are kept
+     * @return the completed task for each index, in the order of the indices
+     * @throws SmException if unable to calculate valid filter parameters
+     */
+    private candidatetask[] runCandidates( ArrayList<int[]> iterations,
+                    ArrayList<Integer> indices, boolean keep ) throws SmException {
+        final ArrayList<candidatetask> tasks = new ArrayList<>();
+        for (int idx : indices) {
+            tasks.add(new candidatetask(iterations.get(idx), idx + 1, keep));
+        }
+        ForkJoinPool pool = context.getPool();
+        if ((pool == null) || (tasks.size() < 2)) {
+            for (candidatetask task : tasks) {
+                task.invoke();
+            }
+        } else if (ForkJoinTask.getPool() == pool) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        }
+        for (candidatetask task : tasks) {
+            task.checkError();
+        }
+        return tasks.toArray(new candidatetask[tasks.size()]);
+    }
+    /**
+     * Makes a QC checker for this record with the QC limits from the
+     * configuration file and the QC window.  Each iteration is checked with its
+     * own QC checker, since the checker holds the values from the last check.
+     * @return the QC checker
+     */
+    private QCcheck makeQCcheck() {
+        QCcheck qcchecker = new QCcheck(context);
+        qcchecker.validateQCvalues();
+        qcchecker.findWindow(lowcut, (1.0/dtime), estart);
+        return qcchecker;
+    }
+    /**
+     * Runs the QC checks on the velocity and displacement of one iteration
+     * and stores the results
+     * @param found the arrays from the iteration
+     * @param number the iteration number
+     * @return the results for the iteration
+     */
+    private double[] checkCandidate( candidate found, int number ) {
+        QCcheck qcchecker = makeQCcheck();
+        qcchecker.qcVelocity(found.velocity);
+        qcchecker.qcDisplacement(found.displace);
+        return makeResult(found.iteration, number, found.rms, qcchecker, found.accel);
+    }
+    /**
+     * Stores the results of one iteration in an array for comparison
+     * @param iteration the 2nd break point and 3rd polynomial order
+     * @param number the iteration number
+     * @param segrms the rms values for each segment
+     * @param qcchecker the QC checker with the results for the iteration, or
+     * null if the iteration has not been QC checked
+     * @param filtacc the filtered acceleration for the iteration, or null
+     * @return the results for the iteration
+     */
+    private double[] makeResult( int[] iteration, int number, double[] segrms,
+                                        QCcheck qcchecker, double[] filtacc) {
+        double[] onerun = new double[RESULT_PARMS];
+        onerun[0] = Math.sqrt(Math.pow(segrms[0], 2) +
+                Math.pow(segrms[1],2) + Math.pow(segrms[2],2));
+        if (qcchecker == null) {
+            onerun[1] = NOT_CHECKED;
+            onerun[2] = NOT_CHECKED;
+            onerun[3] = NOT_CHECKED;
+        } else {
+            onerun[1] = Math.abs(qcchecker.getResidualDisplacement());
+            onerun[2] = Math.abs(qcchecker.getInitialVelocity());
+            onerun[3] = Math.abs(qcchecker.getResidualVelocity());
+        }
+        onerun[4] = estart;
+        onerun[5] = iteration[0];
+        onerun[6] = bestfirstdegree;
+        onerun[7] = iteration[1];
+        onerun[8] = number;
+        onerun[9] = segrms[0];
+        onerun[10] = segrms[1];
+        onerun[11] = segrms[2];
+        onerun[12] = 0;
+        onerun[13]= 0;
+        //Penalty for initial acceleration step
+        if (filtacc != null) {
+            ArrayStats accstat = new ArrayStats(filtacc);
+            if (Math.abs(Math.abs(filtacc[0]) - Math.abs(accstat.getPeakVal())) < 5*Math.ulp(filtacc[0])) {
+                onerun[0] = INITIAL_STEP_PENALTY;
+            }
+        }
+        return onerun;
+    }
+    /**
+     * Checks the QC results for one iteration against the QC limits
+     * @param eachrun the results for the iteration
+     * @param qcchecker the QC checker holding the limits
+     * @return true if the iteration passes all the QC checks
+     */
+    private boolean passesQC( double[] eachrun, QCcheck qcchecker ) {
+        return (eachrun[2] <= qcchecker.getInitVelocityQCval()) && 
+                  (eachrun[3] <= qcchecker.getResVelocityQCval()) && 
+                        (eachrun[1] <= qcchecker.getResDisplaceQCval());
+    }
     /**
      * Finds the best fit for the first segment (from 0 to event onset) by
      * iterating over the different polynomial orders and choosing the order that
@@ -310,9 +583,12 @@ public class ABC2 {
         PolynomialFunction poly;
         double[] time = ArrayOps.makeTimeArray( dtime, h1.length);
         System.arraycopy(velstart,0,h1,0,h1.length);
+        //the fits for each order come from the same pass over the segment
+        SegmentPolynomialFit fitter = new SegmentPolynomialFit(h1, dtime,
+                                                        degreeP1hi, 0, len);
         for (int order1 = degreeP1lo; order1 <= degreeP1hi; order1++) {
             //find best fit for 1st polynomial, since its length doesn't change
-            coefs = ArrayOps.findPolynomialTrend(h1, order1, dtime);
+            coefs = fitter.findCoefficients(0, order1);
             poly = new PolynomialFunction( coefs );
             for (int i = 0; i < len; i++) {
                 b1[i] = poly.value(time[i]);
@@ -339,41 +615,75 @@ public class ABC2 {
      * @throws SmException if unable to calculate valid filter parameters
      */
     private void processTheArrays( int secondb, int order) throws SmException {
-
-        //fit a baseline function to segments 2 and 3 and make correction
-        //updated results in accel and velocity
-        makeCorrection(velstart, accstart, secondb, order);
+        applyCandidate(makeCandidate(new int[] {secondb, order}));
+    }
+    /**
+     * Runs one iteration without changing the state of ABC2, so that iterations
+     * can be run in parallel.  It fits a baseline function to segments 2 and 3,
+     * removes the derivative of the baseline function from acceleration, then
+     * filters the acceleration and integrates to velocity and displacement.
+     * @param iteration the 2nd break point and 3rd polynomial order
+     * @return the arrays from the iteration
+     * @throws SmException if unable to calculate valid filter parameters
+     */
+    private candidate makeCandidate( int[] iteration ) throws SmException {
+        candidate found = new candidate(iteration, new double[NUM_SEGMENTS]);
+        found.rms[0] = rms[0];
+        found.bnn = findBaseline(velstart, iteration[0], iteration[1], found.rms);
+        
+        //differentiate the baseline function and remove the derivative from
+        //acceleration
+        found.derivbnn = ArrayOps.differentiate(found.bnn, dtime, difforder);
+        found.accel = new double[accstart.length];
+        for (int i = 0; i < accstart.length; i++) {
+            found.accel[i] = accstart[i] - found.derivbnn[i];
+        }
         
         //filter acceleration and integrate to velocity and displacement
         FilterAndIntegrateProcess filterInt = 
                 new FilterAndIntegrateProcess(lowcut,highcut,numroll,
                                                             taplength,estart);
-        filterInt.filterAndIntegrate(accel, dtime);
-        paddedaccel = filterInt.getPaddedAccel();
-        velocity = filterInt.getVelocity();
-        displace = filterInt.getDisplacement();
-        calculated_taper = filterInt.getCalculatedTaper();
-        config_taper = filterInt.getConfigTaper();
-    }
-    /**
-     * Makes the baseline correction on the input array. It first calculates the
-     * baseline function for the 3rd segment based on the input order and beginning
-     * at the input break index.  Then it calls the spline method to build the
-     * interpolating spline between the baseline functions of the 1st and 3rd 
-     * segments. It subtracts the baseline function from the input array and
-     * calculates the rms of the 2nd and 3rd segments and adds these to the stored
-     * rms values.
-     * @param array the input array to correct
+        filterInt.filterAndIntegrate(found.accel, dtime);
+        found.paddedaccel = filterInt.getPaddedAccel();
+        found.velocity = filterInt.getVelocity();
+        found.displace = filterInt.getDisplacement();
+        found.calculated_taper = filterInt.getCalculatedTaper();
+        found.config_taper = filterInt.getConfigTaper();
+        return found;
+    }
+    /**
+     * Makes the arrays from the input iteration the current arrays of ABC2
+     * @param found the arrays from the iteration
+     */
+    private void applyCandidate( candidate found ) {
+        bnn = found.bnn;
+        derivbnn = found.derivbnn;
+        accel = found.accel;
+        velocity = found.velocity;
+        displace = found.displace;
+        paddedaccel = found.paddedaccel;
+        calculated_taper = found.calculated_taper;
+        config_taper = found.config_taper;
+        rms[1] = found.rms[1];
+        rms[2] = found.rms[2];
+    }
+    /**
+     * Builds the baseline function for the input array from the 1st segment
+     * fit, the 3rd segment fit of the input order beginning at the input break
+     * index, and the interpolating spline between them.  The rms values of the
+     * 2nd and 3rd segments are stored in the input rms array.
+     * @param velin the input array to fit
      * @param break2 the index to split the array at for the 3rd segment
-     * @param order3 the order of the 3rd segment polynomial for correction
-     * @return the baseline-corrected input array
+     * @param order3 the order of the 3rd segment polynomial
+     * @param segrms the rms values for each segment, updated for segments 2 and 3
+     * @return the baseline function
      */
-    private void makeCorrection( double[] velin, double[] accin, int break2, int order3) {
+    private double[] findBaseline( double[] velin, int break2, int order3,
+                                                            double[] segrms) {
         double[] h2;
         double[] h3;
         int break1 = estart;
         int splinelength = break2-(break1+1);
-        accel = new double[accin.length];
         double[] time = ArrayOps.makeTimeArray(dtime, velin.length);
         
         h2 = new double[splinelength];
@@ -383,53 +693,39 @@ public class ABC2 {
         System.arraycopy(velin, break2, h3, 0, velin.length-break2);
         
         //Get the best fit baseline function for the 3rd segment
-        double[] b3 = find3rdPolyFit(h3, order3);
+        double[] b3 = find3rdPolyFit(break2, order3);
         
         //Construct the baseline function from the first and 3rd sections
-        bnn = new double[time.length];
-        for (int i = 0; i < bnn.length; i++) {
+        double[] baseline = new double[time.length];
+        for (int i = 0; i < baseline.length; i++) {
             if ( i <= break1) {
-                bnn[i] = b1[i];
+                baseline[i] = b1[i];
             } else if ( i >= break2) {
-                bnn[i] = b3[i - break2];
+                baseline[i] = b3[i - break2];
             } else {
-                bnn[i] = 0.0;
+                baseline[i] = 0.0;
             }
         }
         //Connect the 1st and 3rd segments with the interpolating spline
-        getSplineSmooth( bnn, break1, break2, dtime );
-        System.arraycopy(bnn,break1+1,b2,0,splinelength);
-        
-        //differentiate the baseline function and remove the derivative from
-        //acceleration
-        derivbnn = ArrayOps.differentiate(bnn, dtime, difforder);
-        for (int i = 0; i < accin.length; i++) {
-            accel[i] = accin[i] - derivbnn[i];
-        }
-        
-        //integrate acceleration to velocity and correct for initial estimate of 0
-        velocity = ArrayOps.integrate(accel, dtime, 0.0);
-        ArrayOps.correctForZeroInitialEstimate( velocity, estart );
+        getSplineSmooth( baseline, break1, break2, dtime );
+        System.arraycopy(baseline,break1+1,b2,0,splinelength);
         
         //Compute the rms of original and corrected segments
-        rms[1] = ArrayOps.rootMeanSquare(h2,b2);
-        rms[2] = ArrayOps.rootMeanSquare(h3,b3);
+        segrms[1] = ArrayOps.rootMeanSquare(h2,b2);
+        segrms[2] = ArrayOps.rootMeanSquare(h3,b3);
+        return baseline;
     }
     /**
      * Finds the 3rd polynomial baseline fit based on the polynomial degree.
-     * @param array the input array to fit
+     * The fits for the segments at each 2nd break point are updated from one
+     * break point to the next by the segment fit, instead of fitting each
+     * segment from the beginning.
+     * @param break2 the index of the start of the 3rd segment
      * @param degree the degree of the polynomial to use to fit
      * @return the baseline correction function
      */
-    private double[] find3rdPolyFit(double[] array, int degree) {
-        double[] result = new double[array.length];
-        double[] time = ArrayOps.makeTimeArray(dtime, array.length);
-        double[] coefs = ArrayOps.findPolynomialTrend(array, degree, dtime);
-        PolynomialFunction poly = new PolynomialFunction( coefs );
-        for (int i = 0; i < array.length; i++) {
-            result[i] = poly.value(time[i]);
-        }
-        return result;
+    private double[] find3rdPolyFit(int break2, int degree) {
+        return segmentfit.findFit(break2, degree);
     }
     /**
      * Connects the 1st and 3rd segments of the baseline correction fit with
@@ -500,7 +796,8 @@ public class ABC2 {
         return derivbnn;
     }
     /**
-     * Getter for the array of ranks
+     * Getter for the array of ranks.  If the ranked search found a solution,
+     * this is the ranking by rms before any penalties.
      * @return ranked index array of iteration numbers
      */
     public int[] getRanking() {
@@ -605,4 +902,88 @@ public class ABC2 {
     public void clearParamsArray() {
         params.clear();
     }
+    /**
+     * This private class holds the arrays from one iteration of the baseline
+     * correction, filtering and integration, so that each iteration can be
+     * run independently of the others.
+     */
+    private static class candidate {
+        private final int[] iteration;
+        private final double[] rms;
+        private double[] bnn;
+        private double[] derivbnn;
+        private double[] accel;
+        private double[] velocity;
+        private double[] displace;
+        private double[] paddedaccel;
+        private double calculated_taper;
+        private double config_taper;
+        /**
+         * Constructor for the arrays of one iteration
+         * @param iteration the 2nd break point and 3rd polynomial order
+         * @param rms the array for the rms values of each segment
+         */
+        public candidate( int[] iteration, double[] rms ) {
+            this.iteration = iteration;
+            this.rms = rms;
+        }
+    }
+    /**
+     * This private class runs one iteration and its QC checks as a fork-join
+     * task.  Any processing error is held and rethrown by checkError.
+     */
+    private class candidatetask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int[] iteration;
+        private final int number;
+        private final boolean keep;
+        private candidate found;
+        private double[] result;
+        private SmException error;
+        /**
+         * Constructor for the task
+         * @param iteration the 2nd break point and 3rd polynomial order
+         * @param number the iteration number
+         * @param keep true if the arrays from the iteration are kept after
+         * the QC checks, false if only the results are kept
+         */
+        public candidatetask( int[] iteration, int number, boolean keep ) {
+            this.iteration = iteration;
+            this.number = number;
+            this.keep = keep;
+        }
+        @Override
+        protected void compute() {
+            try {
+                candidate each = makeCandidate(iteration);
+                result = checkCandidate(each, number);
+                found = (keep) ? each : null;
+            } catch (SmException err) {
+                error = err;
+            }
+        }
+        /**
+         * Rethrows any processing error from the iteration
+         * @throws SmException if unable to calculate valid filter parameters
+         */
+        public void checkError() throws SmException {
+            if (error != null) {
+                throw error;
+            }
+        }
+        /**
+         * Getter for the results of the iteration
+         * @return the results for the iteration
+         */
+        public double[] getResult() {
+            return result;
+        }
+        /**
+         * Getter for the arrays from the iteration
+         * @return the arrays, or null if they were not kept
+         */
+        public candidate getCandidate() {
+            return found;
+        }
+    }
 }
@@ -14,13 +14,10 @@
 
 package SmProcessing;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
-import org.apache.commons.math3.fitting.PolynomialCurveFitter;
-import org.apache.commons.math3.fitting.WeightedObservedPoint;
 import org.apache.commons.math3.stat.regression.SimpleRegression;
 
 /**
@@ -37,8 +34,10 @@ import org.apache.commons.math3.stat.regression.SimpleRegression;
  * ArrayOps.removeValue(array, mean).
  * </p>
  * <p>
- * The linear and polynomial trend methods utilize the apache commons math 
+ * The linear trend methods utilize the apache commons math 
  * package.  http://commons.apache.org/proper/commons-math/
+ * The polynomial trends are direct least-squares fits from the
+ * SegmentPolynomialFit class.
  * </p>
  * @author jmjones
  */
@@ -272,8 +271,9 @@ public class ArrayOps {
     }
     /**
      * Finds a polynomial trend of specified degree from the input array.  The
-     * polynomial trend is calculated with the apache commons math 
-     * PolynomialCurveFitter class, and the coefficients are returned.
+     * polynomial trend is the least-squares fit calculated with the
+     * SegmentPolynomialFit class in one pass over the array, and the
+     * coefficients are returned.
      * 
      * @param array input array containing data with a polynomial trend.
      * @param degree polynomial degree to calculate, such as 2 or 3.
@@ -287,15 +287,9 @@ public class ArrayOps {
                                     (Math.abs(timestep - 0.0) < OPS_EPSILON)) {
             return new double[0];
         }
-        int len = array.length;
-        double[] time = makeTimeArray( timestep, len);
-        ArrayList<WeightedObservedPoint> points = new ArrayList<>();
-        for (int i = 0; i < len; i++ ){
-            points.add(new WeightedObservedPoint( 1.0, time[i], array[i]));
-        }
-        PolynomialCurveFitter fitter = PolynomialCurveFitter.create(degree);
-        double[] coefs = fitter.fit(points);
-        return coefs;
+        SegmentPolynomialFit fitter = new SegmentPolynomialFit(array, timestep,
+                                                    degree, 0, array.length);
+        return fitter.findCoefficients(0, degree);
     }
     /**
      * Removes a polynomial trend from the input array, with the trend defined
@@ -359,9 +353,12 @@ public class ArrayOps {
         double[] time = makeTimeArray( timestep, len);
         PolynomialFunction poly;
         int numOrder = 0;
+        //the 1st and 2nd order fits come from the same pass over the array
+        SegmentPolynomialFit fitter = new SegmentPolynomialFit(inarr, timestep,
+                                                            2, 0, len);
 
         //find 1st order polynomial trend for input array and commpare with original
-        lcoefs = findPolynomialTrend(inarr, 1, timestep);
+        lcoefs = fitter.findCoefficients(0, 1);
 //        System.out.println("a: " + lcoefs[0] + "  b: " + lcoefs[1]);
         poly = new PolynomialFunction( lcoefs );
         double[] linbase = new double[len];
@@ -371,7 +368,7 @@ public class ArrayOps {
         double linrms = rootMeanSquare( inarr, linbase );
         
         //find 2nd order polynomial trend for input array and rms compare with original
-        pcoefs = findPolynomialTrend(inarr, 2, timestep);
+        pcoefs = fitter.findCoefficients(0, 2);
 //        System.out.println("a: " + pcoefs[0] + "  b: " + pcoefs[1] + " c: " + pcoefs[2]);
         poly = new PolynomialFunction( pcoefs );
         double[] polbase = new double[len];
@@ -413,9 +410,12 @@ public class ArrayOps {
         double[] time = makeTimeArray( timestep, len);
         PolynomialFunction firpoly, secpoly;
         int numOrder = 0;
+        //the 1st and 2nd order fits come from the same pass over the array
+        SegmentPolynomialFit fitter = new SegmentPolynomialFit(inarr, timestep,
+                                                            2, 0, len);
 
         //find 1st order polynomial trend for input array and commpare with original
-        lcoefs = findPolynomialTrend(inarr, 1, timestep);
+        lcoefs = fitter.findCoefficients(0, 1);
         firpoly = new PolynomialFunction( lcoefs );
         double[] linbase = new double[len];
         for (int i = 0; i < len; i++) {
@@ -424,7 +424,7 @@ public class ArrayOps {
         double linrms = rootMeanSquare( inarr, linbase );
         
         //find 2nd order polynomial trend for input array and rms compare with original
-        pcoefs = findPolynomialTrend(inarr, 2, timestep);
+        pcoefs = fitter.findCoefficients(0, 2);
         secpoly = new PolynomialFunction( pcoefs );
         double[] polbase = new double[len];
         for (int i = 0; i < len; i++) {
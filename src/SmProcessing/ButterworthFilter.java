@@ -61,12 +61,12 @@ public class ButterworthFilter {
     private double dtime;
     private int nroll;
     private boolean icaus;
-    private final double pi = Math.PI;
     private final int MAXROLL = 8;
     private final double epsilon = 0.001;
     private double[] fact;
     private double[] b1;
     private double[] b2;
+    private FilterPlan plan;
     private int npad;
     
     private int tapercount;
@@ -76,6 +76,7 @@ public class ButterworthFilter {
      * Default constructor
      */
     public ButterworthFilter() {
+        this.plan = null;
         this.npad = 0;
         this.tapercount = 0;
         this.taperend = 0;
@@ -83,7 +84,9 @@ public class ButterworthFilter {
     /**
      * This method calculates the filter coefficients based on the corner frequencies,
      * the sample time interval, and the roll off.  A flag is also input to select
-     * the type of filtering, either causal or acausal.
+     * the type of filtering, either causal or acausal.  The coefficients are
+     * taken from the FilterPlan for the parameters, which is only calculated
+     * the first time the parameters are used.
      * @param lowCutOff the filter low cutoff frequency
      * @param highCutOff the filter high cutoff frequency
      * @param dtime the sample time interval for the record
@@ -101,14 +104,6 @@ public class ButterworthFilter {
         this.nroll = rolloff;
         this.icaus = acausal;           //true if acausal filter
         
-        fact = new double[2*MAXROLL];
-        b1 = new double[2*MAXROLL];
-        b2 = new double[2*MAXROLL];
-        
-        double pre; double pim; double argre; double argim; double rho; double theta;
-        double sjre; double sjim; double bj; double cj; double con;
-        int index;
-        
         //Check input parameters for valid values
         if ((Math.abs(f1 - 0.0) < epsilon) || (Math.abs(f2 - f1) < epsilon) ||
                                            (rolloff < 1) || (rolloff > MAXROLL)){
@@ -119,37 +114,12 @@ public class ButterworthFilter {
             return false;
         }
         
-        //for w1 and w2 calc., the 2 in the num. and denom. can be deleted but its
-        //left in for clarity
-        double w1 = 2.0 * Math.tan(((2.0*pi*f1)*dtime)/2.0) / dtime;
-        double w2 = 2.0 * Math.tan(((2.0*pi*f2)*dtime)/2.0) / dtime;
-        
-        //calculate the filter coefficients into arrays b1 and b2, and calculate
-        //the gain into array fact
-        for (int k = 1; k < nroll+1; k++) {
-            pre = (-1.0) * Math.sin((pi*(2.0*k - 1)) / (4.0*nroll));
-            pim = Math.cos((pi*(2.0*k - 1)) / (4.0*nroll));
-            
-            argre = (((Math.pow(pre,2.0) - Math.pow(pim,2.0)) * Math.pow((w2-w1),2.0)) / 4.0) - (w1 * w2);
-            argim = (2.0 * pre * pim * Math.pow((w2-w1),2.0)) / 4.0;
-            
-            rho = Math.pow((Math.pow(argre,2.0) + Math.pow(argim, 2.0)), (1.0/4.0));
-            theta = pi + (Math.atan2(argim, argre)) / 2.0;
-            
-            for (int i = 1; i < 3; i++) {
-                sjre = (pre * (w2-w1)/2.0) + (Math.pow(-1,i) * rho * ((-1.0)*Math.sin(theta-(pi/2.0))));
-                sjim = (pim * (w2-w1)/2.0) + (Math.pow(-1,i) * rho * (Math.cos(theta-(pi/2.0))));
-                
-                bj = (-2.0) * sjre;
-                cj = Math.pow(sjre,2) + Math.pow(sjim,2);
-                con = 1.0 / ((2.0/dtime) + bj + (cj*dtime/2.0));
-                
-                index = 2*k + i - 3;
-                fact[index] = (w2 - w1) * con;
-                b1[index] = ((cj*dtime) - (4.0/dtime)) * con;
-                b2[index] = ((2.0/dtime) - bj + (cj*dtime/2.0)) * con;
-            }
-        }
+        //the coefficient arrays b1 and b2 and the gain array fact are shared
+        //by all filters with the same parameters
+        plan = FilterPlan.getPlan(f1, f2, dtime, nroll);
+        fact = plan.getFact();
+        b1 = plan.getB1();
+        b2 = plan.getB2();
         return true;
     }
     /**
@@ -178,7 +148,6 @@ public class ButterworthFilter {
         
         int np2;
         double[] filteredS;
-        double x1; double x2; double y1; double y2; double xp; double yp;
 
         //Calculate the length of the initial cosine taper.  Put a lower limit of the
         //taperlength time specified in the configuration file, and set the ending
@@ -216,39 +185,11 @@ public class ButterworthFilter {
 //        SmDebugLogger elog = SmDebugLogger.INSTANCE;
 //        elog.writeOutArray(filteredS, "after_taper_with_pads.txt");
         //filter the array
-        for (int k = 0; k < 2*nroll; k++) {
-            x1 = 0.0;
-            x2 = 0.0;
-            y1 = 0.0;
-            y2 = 0.0;
-            for (int j = 0; j < np2; j++) {
-                xp = filteredS[j];
-                yp = fact[k] * (xp - x2) - (b1[k] * y1) - (b2[k] * y2);
-                filteredS[j] = yp;
-                y2 = y1;
-                y1 = yp;
-                x2 = x1;
-                x1 = xp;
-            }
-        }
+        applySections(filteredS, false);
         
         //if acausal, filter again from back to front
         if (icaus) {
-            for (int k = 0; k < 2*nroll; k++) {
-                x1 = 0.0;
-                x2 = 0.0;
-                y1 = 0.0;
-                y2 = 0.0;
-                for (int j = 0; j < np2; j++) {
-                    xp = filteredS[np2 - j - 1];
-                    yp = fact[k] * (xp - x2) - (b1[k] * y1) - (b2[k] * y2);
-                    filteredS[np2 - j - 1] = yp;
-                    y2 = y1;
-                    y1 = yp;
-                    x2 = x1;
-                    x1 = xp;
-                }
-            }
+            applySections(filteredS, true);
             System.arraycopy(filteredS, (npad/2), arrayS, 0, arrayS.length);
         } else {
             System.arraycopy(filteredS, 0, arrayS, 0, np2);
@@ -257,6 +198,86 @@ public class ButterworthFilter {
 //        System.out.println("+++ after filter, arrayS[end] = " + arrayS[arrayS.length-1]);
         return filteredS;
     }
+    /**
+     * This method runs the array through the cascade of 2*nroll second-order
+     * sections, either from front to back or from back to front.  Each
+     * section is a recurrence that waits on its own previous output, so a
+     * full pass of the array through one section at a time is bound by the
+     * latency of the recurrence.  Instead, the array is passed through four
+     * sections at a time, with the states of the sections held in local
+     * variables, so that the recurrences of the four sections overlap.  Each
+     * section sees the same values in the same order as in a pass of its own,
+     * so the result is the same.
+     * @param s the array to filter, updated with the filtered values
+     * @param reverse true to filter from back to front
+     */
+    private void applySections( double[] s, boolean reverse ) {
+        int nsect = 2*nroll;
+        int k = 0;
+        for (; k + 4 <= nsect; k += 4) {
+            passFourSections(s, k, reverse);
+        }
+        //the number of sections is even, so at most a pair is left
+        if (k < nsect) {
+            passTwoSections(s, k, reverse);
+        }
+    }
+    /**
+     * Passes the array through four consecutive sections of the cascade
+     * @param s the array to filter, updated with the filtered values
+     * @param k the index of the first of the sections
+     * @param reverse true to filter from back to front
+     */
+    private void passFourSections( double[] s, int k, boolean reverse ) {
+        double fa = fact[k];   double a1 = b1[k];   double a2 = b2[k];
+        double fb = fact[k+1]; double c1 = b1[k+1]; double c2 = b2[k+1];
+        double fc = fact[k+2]; double d1 = b1[k+2]; double d2 = b2[k+2];
+        double fd = fact[k+3]; double e1 = b1[k+3]; double e2 = b2[k+3];
+        double ax1 = 0.0; double ax2 = 0.0; double ay1 = 0.0; double ay2 = 0.0;
+        double bx1 = 0.0; double bx2 = 0.0; double by1 = 0.0; double by2 = 0.0;
+        double cx1 = 0.0; double cx2 = 0.0; double cy1 = 0.0; double cy2 = 0.0;
+        double dx1 = 0.0; double dx2 = 0.0; double dy1 = 0.0; double dy2 = 0.0;
+        double xp; double ya; double yb; double yc; double yd;
+        int len = s.length;
+        int step = (reverse) ? -1 : 1;
+        int j = (reverse) ? len - 1 : 0;
+        for (int n = 0; n < len; n++, j += step) {
+            xp = s[j];
+            ya = fa * (xp - ax2) - (a1 * ay1) - (a2 * ay2);
+            ax2 = ax1; ax1 = xp; ay2 = ay1; ay1 = ya;
+            yb = fb * (ya - bx2) - (c1 * by1) - (c2 * by2);
+            bx2 = bx1; bx1 = ya; by2 = by1; by1 = yb;
+            yc = fc * (yb - cx2) - (d1 * cy1) - (d2 * cy2);
+            cx2 = cx1; cx1 = yb; cy2 = cy1; cy1 = yc;
+            yd = fd * (yc - dx2) - (e1 * dy1) - (e2 * dy2);
+            dx2 = dx1; dx1 = yc; dy2 = dy1; dy1 = yd;
+            s[j] = yd;
+        }
+    }
+    /**
+     * Passes the array through two consecutive sections of the cascade
+     * @param s the array to filter, updated with the filtered values
+     * @param k the index of the first of the sections
+     * @param reverse true to filter from back to front
+     */
+    private void passTwoSections( double[] s, int k, boolean reverse ) {
+        double fa = fact[k];   double a1 = b1[k];   double a2 = b2[k];
+        double fb = fact[k+1]; double c1 = b1[k+1]; double c2 = b2[k+1];
+        double ax1 = 0.0; double ax2 = 0.0; double ay1 = 0.0; double ay2 = 0.0;
+        double bx1 = 0.0; double bx2 = 0.0; double by1 = 0.0; double by2 = 0.0;
+        double xp; double ya; double yb;
+        int len = s.length;
+        int step = (reverse) ? -1 : 1;
+        int j = (reverse) ? len - 1 : 0;
+        for (int n = 0; n < len; n++, j += step) {
+            xp = s[j];
+            ya = fa * (xp - ax2) - (a1 * ay1) - (a2 * ay2);
+            ax2 = ax1; ax1 = xp; ay2 = ay1; ay1 = ya;
+            yb = fb * (ya - bx2) - (c1 * by1) - (c2 * by2);
+            bx2 = bx1; bx1 = ya; by2 = by1; by1 = yb;
+            s[j] = yb;
+        }
+    }
     /**
      * This method adds the half cosine taper to the front and back of the array
      * @param array input array to have the taper applied to
@@ -273,13 +294,12 @@ public class ButterworthFilter {
         
         int len = array.length;
         //range is N, the number of samples over which to apply the taper,
-        //and m is the length of the half cosine taper itself.
+        //and m is the length of the half cosine taper itself.  The taper
+        //windows are kept in the filter plan when there is one.
         int m = range / 2;
         
-        double[] taper = new double[m];
-        for (int i = 0; i < m; i++) {
-            taper[i] = 0.5 * (1.0 - Math.cos(2 * pi * i / (range-1)));
-        }
+        double[] taper = (plan != null) ? plan.getTaper(range) :
+                                                FilterPlan.makeTaper(range);
         
         //apply at the front
         for (int i = 0; i < m; i++) {
@@ -288,10 +308,8 @@ public class ButterworthFilter {
         //Apply the end-length taper to the end of the array
         int m2 = endrange / 2;
         
-        double[] taper2 = new double[m2];
-        for (int i = 0; i < m2; i++) {
-            taper2[i] = 0.5 * (1.0 - Math.cos(2 * pi * i / (endrange-1)));
-        }
+        double[] taper2 = (plan != null) ? plan.getTaper(endrange) :
+                                                FilterPlan.makeTaper(endrange);
         
         //apply at the end
         int k = m2 - 1;
@@ -301,7 +319,8 @@ public class ButterworthFilter {
         }
     }
     /**
-     * Getter for the array with the calculated gains
+     * Getter for the array with the calculated gains, which is shared with
+     * the filter plan and should not be changed
      * @return the gains
      */
     public double[] getFact() { return fact; }
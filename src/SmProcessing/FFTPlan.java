@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Name: Java class FFTPlan.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package SmProcessing;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * The FFTPlan class computes fast Fourier transforms of one power of 2 length
+ * on primitive arrays, in place of the commons math FastFourierTransformer,
+ * which makes a Complex object for each value.  Complex arrays are
+ * interleaved, with the real part of value k at index 2k and the imaginary
+ * part at index 2k+1.  The plan holds the cosine and sine tables for its
+ * length, and the plans are kept in a cache by length and shared between
+ * threads.  A plan is not changed after it is built, so it is thread-safe.
+ * </p>
+ * <p>
+ * The complex transform is the iterative radix-2 transform done in place.
+ * The transform of a real array of length n is done with the complex
+ * transform of length n/2, packing the even samples in the real parts and
+ * the odd samples in the imaginary parts, and then separating the two halves.
+ * Since the transform of a real array is symmetric, only the first n/2+1
+ * values are kept, which is the half spectrum.  The inverse of a half
+ * spectrum runs the same steps backward to get the real array.  None of the
+ * transforms allocate any memory, other than any plan that is not yet in the
+ * cache.  The forward transforms are not scaled and the inverse transforms
+ * are scaled by 1/n, the same as the STANDARD normalization in commons math.
+ * </p>
+ * @author jmjones
+ */
+public class FFTPlan {
+    private static final int MAX_PLANS = 64;
+    private static final ConcurrentHashMap<Integer, FFTPlan> plans =
+                                                    new ConcurrentHashMap<>();
+    private final int length;
+    private final double[] cos;
+    private final double[] sin;
+    private final FFTPlan half;
+    /**
+     * Gets the plan for the transform length, building it the first time the
+     * length is seen
+     * @param length the transform length, a power of 2
+     * @return the plan
+     * @throws IllegalArgumentException if the length is not a power of 2
+     */
+    public static FFTPlan getPlan( int length ) {
+        if ((length < 1) || ((length & (length - 1)) != 0)) {
+            throw new IllegalArgumentException("FFT length " + length +
+                                                    " is not a power of 2");
+        }
+        FFTPlan plan = plans.get(length);
+        if (plan == null) {
+            plan = new FFTPlan(length);
+            if (plans.size() >= MAX_PLANS) {
+                plans.clear();
+            }
+            FFTPlan current = plans.putIfAbsent(length, plan);
+            plan = (current == null) ? plan : current;
+        }
+        return plan;
+    }
+    /**
+     * Constructor fills the cosine and sine tables for the angles 2*pi*j/length
+     * from j = 0 up to j = length/2, and gets the plan for half the length,
+     * which is used for the real transforms
+     * @param length the transform length, a power of 2
+     */
+    private FFTPlan( int length ) {
+        this.length = length;
+        int count = length / 2 + 1;
+        cos = new double[count];
+        sin = new double[count];
+        for (int j = 0; j < count; j++) {
+            double angle = (2.0 * Math.PI * j) / length;
+            cos[j] = Math.cos(angle);
+            sin[j] = Math.sin(angle);
+        }
+        half = (length >= 2) ? getPlan(length / 2) : null;
+    }
+    /**
+     * Getter for the transform length
+     * @return the transform length
+     */
+    public int getLength() {
+        return length;
+    }
+    /**
+     * Computes the complex transform in place
+     * @param data the interleaved complex array, at least 2*length long,
+     * replaced by its transform
+     * @param inverse true for the inverse transform, scaled by 1/length
+     */
+    public void transform( double[] data, boolean inverse ) {
+        int n = length;
+        //reorder to bit-reversed indices
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (j > i) {
+                double tr = data[2*i];
+                double ti = data[2*i+1];
+                data[2*i] = data[2*j];
+                data[2*i+1] = data[2*j+1];
+                data[2*j] = tr;
+                data[2*j+1] = ti;
+            }
+            int m = n >> 1;
+            while ((m >= 1) && (j >= m)) {
+                j -= m;
+                m >>= 1;
+            }
+            j += m;
+        }
+        //butterflies, doubling the size of the transforms at each stage.  The
+        //first stage has no twiddle factors.
+        for (int a = 0; a < 2*n - 2; a += 4) {
+            double tr = data[a+2];
+            double ti = data[a+3];
+            data[a+2] = data[a] - tr;
+            data[a+3] = data[a+1] - ti;
+            data[a] += tr;
+            data[a+1] += ti;
+        }
+        double sign = (inverse) ? 1.0 : -1.0;
+        for (int size = 4; size <= n; size <<= 1) {
+            int halfsize = size >> 1;
+            int stride = n / size;
+            for (int start = 0; start < n; start += size) {
+                int a = 2 * start;
+                int b = 2 * (start + halfsize);
+                for (int k = 0; k < halfsize * stride; k += stride) {
+                    double wr = cos[k];
+                    double wi = sign * sin[k];
+                    double tr = wr * data[b] - wi * data[b+1];
+                    double ti = wr * data[b+1] + wi * data[b];
+                    data[b] = data[a] - tr;
+                    data[b+1] = data[a+1] - ti;
+                    data[a] += tr;
+                    data[a+1] += ti;
+                    a += 2;
+                    b += 2;
+                }
+            }
+        }
+        if (inverse) {
+            double scale = 1.0 / n;
+            for (int i = 0; i < 2*n; i++) {
+                data[i] *= scale;
+            }
+        }
+    }
+    /**
+     * Computes the half spectrum of a real array, the first length/2+1 values
+     * of its transform
+     * @param array the real array, at least length long, which is not changed
+     * unless it is the spectrum array itself, for a transform in place
+     * @param spectrum the interleaved complex array for the half spectrum, at
+     * least length+2 long
+     * @throws IllegalArgumentException if the plan length is less than 2
+     */
+    public void realForward( double[] array, double[] spectrum ) {
+        if (half == null) {
+            throw new IllegalArgumentException("Real FFT length must be at least 2");
+        }
+        int m = length / 2;
+        //the even samples are the real parts and the odd samples the imaginary
+        //parts of the half length transform
+        System.arraycopy(array, 0, spectrum, 0, length);
+        half.transform(spectrum, false);
+
+        //separate the transforms of the even and odd samples, E and O, from
+        //bins k and m-k, and combine them as E + W^k O, with W = exp(-2 pi i/n)
+        double zr = spectrum[0];
+        double zi = spectrum[1];
+        spectrum[0] = zr + zi;
+        spectrum[1] = 0.0;
+        spectrum[2*m] = zr - zi;
+        spectrum[2*m+1] = 0.0;
+        for (int k = 1; k <= m / 2; k++) {
+            int a = 2 * k;
+            int b = 2 * (m - k);
+            zr = spectrum[a];
+            zi = spectrum[a+1];
+            double cr = spectrum[b];
+            double ci = spectrum[b+1];
+            double er = 0.5 * (zr + cr);
+            double ei = 0.5 * (zi - ci);
+            double or = 0.5 * (zi + ci);
+            double oi = -0.5 * (zr - cr);
+            double wr = cos[k];
+            double wi = -sin[k];
+            double tr = wr * or - wi * oi;
+            double ti = wr * oi + wi * or;
+            spectrum[a] = er + tr;
+            spectrum[a+1] = ei + ti;
+            if (b != a) {
+                //bin m-k is conj(E) - conj(W^k O)
+                spectrum[b] = er - tr;
+                spectrum[b+1] = ti - ei;
+            }
+        }
+    }
+    /**
+     * Computes the real array from its half spectrum, scaled by 1/length.
+     * The imaginary parts of the first and last bins are not used.  This
+     * gives the real part of the inverse transform of the full symmetric
+     * spectrum.
+     * @param spectrum the interleaved complex half spectrum, at least
+     * length+2 long, which is not changed
+     * @param array the real array for the result, at least length long
+     * @throws IllegalArgumentException if the plan length is less than 2
+     */
+    public void realInverse( double[] spectrum, double[] array ) {
+        if (half == null) {
+            throw new IllegalArgumentException("Real FFT length must be at least 2");
+        }
+        int m = length / 2;
+        //rebuild the half length transform from E = (X[k] + conj(X[m-k]))/2
+        //and O = (X[k] - conj(X[m-k])) conj(W^k)/2, as E + iO.  The first
+        //bin has no imaginary part in a real transform.
+        array[0] = 0.5 * (spectrum[0] + spectrum[2*m]);
+        array[1] = 0.5 * (spectrum[0] - spectrum[2*m]);
+        for (int k = 1; k < m; k++) {
+            int a = 2 * k;
+            int b = 2 * (m - k);
+            double ar = spectrum[a];
+            double ai = spectrum[a+1];
+            double br = spectrum[b];
+            double bi = spectrum[b+1];
+            double er = 0.5 * (ar + br);
+            double ei = 0.5 * (ai - bi);
+            double dr = 0.5 * (ar - br);
+            double di = 0.5 * (ai + bi);
+            double or = dr * cos[k] - di * sin[k];
+            double oi = dr * sin[k] + di * cos[k];
+            array[a] = er - oi;
+            array[a+1] = ei + or;
+        }
+        half.transform(array, true);
+    }
+}
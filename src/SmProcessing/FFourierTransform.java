@@ -14,129 +14,85 @@
 
 package SmProcessing;
 
-import java.util.Arrays;
-import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
-
 /**
- * This class calculates the FFT of an array using the Apache Commons Math 
- * package and returns the result as magnitudes (square root of the squares of
+ * This class calculates the FFT of an array using the primitive transforms in
+ * FFTPlan and returns the result as magnitudes (square root of the squares of
  * the real and imaginary parts).  It first pads the array to the next closest
- * power-of-2 length before calculating the FFT.
+ * power-of-2 length before calculating the FFT.  Since the input arrays are
+ * real, only the half spectrum is computed, as an interleaved complex array
+ * with the real part of bin k at index 2k and the imaginary part at 2k+1.
  * @author jmjones
  */
 public class FFourierTransform {
     private int powerlength;
     private int fftlen;
-    private int cpowerlength;
     /**
      * Constructor just initializes variables.
      */
     public FFourierTransform() {
         this.powerlength = 0;
         this.fftlen = 0;
-        this.cpowerlength = 0;
     }
     /**
      * Performs the FFT calculations by padding the input array to the closest
      * power of 2 gt or eq to the current length, calling the FFT transform method,
-     * extracting only the first half of the complex array returned and converting
-     * these values to magnitudes.
+     * and converting the half spectrum to magnitudes.
      * @param array input array for calculating the transform
      * @return the magnitudes of the transformed array
      */
     public double[] calculateFFT( double[] array ) {
-        double[] arrpad = padArray( array );
-         
-        FastFourierTransformer fft = new FastFourierTransformer( DftNormalization.STANDARD);
-        Complex[] transfreq = fft.transform(arrpad, TransformType.FORWARD);
+        double[] transform = padArray( array, false );
+        FFTPlan.getPlan(powerlength).realForward(transform, transform);
 
         fftlen = (powerlength / 2) + 1;
         double[] mags = new double[fftlen];
         for (int i = 0; i < fftlen; i++) {
-            mags[i]= Math.sqrt(Math.pow(transfreq[i].getReal(),2) + 
-                                    Math.pow(transfreq[i].getImaginary(),2));
+            double re = transform[2*i];
+            double im = transform[2*i+1];
+            mags[i]= Math.sqrt(re * re + im * im);
         }
         return mags;
     }
     /**
      * Performs the FFT calculations by padding the input array AT THE START to the closest
      * power of 2 gt or eq to the current length, calling the FFT transform method,
-     * and returning the complex array.
+     * and returning the half spectrum.
      * @param array input array for calculating the transform
-     * @return the transformed array
+     * @return the interleaved complex half spectrum, of length powerlength+2
      */
-    public Complex[] calculateFFTComplex( double[] array ) {
-        double[] arrpad = padArrayAtStart( array );
-        FastFourierTransformer fft = new FastFourierTransformer( DftNormalization.STANDARD);
-        Complex[] transfreq = fft.transform(arrpad, TransformType.FORWARD);
+    public double[] calculateFFTComplex( double[] array ) {
+        double[] transfreq = padArray( array, true );
+        FFTPlan.getPlan(powerlength).realForward(transfreq, transfreq);
         return transfreq;
     }
     /**
-     * Calculates the inverse FFT on an input complex array and returns an array
-     * of doubles containing only the real component of the iFFT result.
-     * @param transfreq array of complex frequency values
-     * @return an array containing the real components of the iFFT result
+     * Calculates the inverse FFT of a half spectrum and returns the real array.
+     * This is the real component of the iFFT of the full symmetric spectrum.
+     * @param transfreq the interleaved complex half spectrum, of length n+2
+     * where n is a power of 2
+     * @return an array of length n containing the real components of the
+     * iFFT result
      */
-    public double[] inverseFFTComplex( Complex[] transfreq ) {
-        Complex[] transpad = padArrayComplex( transfreq );
-        double[] realvals;
-        FastFourierTransformer fft = new FastFourierTransformer( DftNormalization.STANDARD);
-        Complex[] invvals = fft.transform(transpad, TransformType.INVERSE);
-        realvals = new double[invvals.length];
-        for (int i = 0; i < invvals.length; i++) {
-            realvals[i] = invvals[i].getReal();
-        }
+    public double[] inverseFFTComplex( double[] transfreq ) {
+        int length = transfreq.length - 2;
+        double[] realvals = new double[length];
+        FFTPlan.getPlan(length).realInverse(transfreq, realvals);
         return realvals;
     }
     /**
-     * pads the incoming array with zeros to the nearest power of 2 length, pads
-     * are added at the end
+     * Copies the incoming array into a new array for the half spectrum, padded
+     * with zeros to the nearest power of 2 length plus 2 for the last bin.  The
+     * real transform can then be done in place.
      * @param array the input array
-     * @return the padded real array
-     */
-    private double[] padArray( double[] array ) {
-        powerlength = findPower2Length( array.length);
-        if (array.length != powerlength) {
-            double[] arrpad = new double[powerlength];
-            Arrays.fill(arrpad, 0.0);
-            System.arraycopy(array, 0, arrpad, 0, array.length);
-            return arrpad;
-        } else {
-            return array;
-        }
-    }
-    /**
-     * pads the incoming array with zeros to the nearest power of 2 length, pads
+     * @param atstart true if the pads are added at the start, false if they
      * are added at the end
-     * @param array the input array
      * @return the padded real array
      */
-    private double[] padArrayAtStart( double[] array ) {
+    private double[] padArray( double[] array, boolean atstart ) {
         powerlength = findPower2Length( array.length);
-        int inlen = array.length;
-        if (inlen != powerlength) {
-            double[] arrpad = new double[powerlength];
-            Arrays.fill(arrpad, 0.0);
-            System.arraycopy(array, 0, arrpad, (powerlength-inlen), array.length);
-            return arrpad;
-        } else {
-            return array;
-        }
-    }
-    /**
-     * pads the incoming array with zeros to the nearest power of 2 length, pads
-     * are added at the end
-     * @param array the input array
-     * @return the padded real array
-     */
-    private Complex[] padArrayComplex( Complex[] carray ) {
-        cpowerlength = findPower2Length( carray.length);
-        Complex[] arrpad = new Complex[cpowerlength];
-        Arrays.fill(arrpad, Complex.ZERO);
-        System.arraycopy(carray, 0, arrpad, 0, carray.length);
+        double[] arrpad = new double[powerlength + 2];
+        int offset = (atstart) ? powerlength - array.length : 0;
+        System.arraycopy(array, 0, arrpad, offset, array.length);
         return arrpad;
     }
     /**
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Name: Java class FilterPlan.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package SmProcessing;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * The FilterPlan class holds the Butterworth bandpass filter coefficients for
+ * one set of corner frequencies, sampling interval and roll off, along with
+ * the half-cosine taper windows used before filtering.  The same filter is
+ * run many times within a record, once for each adaptive baseline iteration,
+ * so the plans are kept in a cache by their parameters and shared between
+ * filters and threads.  A plan is not changed after it is built, except for
+ * adding taper windows to its own concurrent cache, so it is thread-safe.
+ * The arrays returned from a plan are shared, so they should not be changed.
+ * </p>
+ * <p>
+ * The number of plans and of taper windows in each plan is limited, and a
+ * cache is cleared when it is full, so that a long run over records with many
+ * different filter parameters does not keep growing the caches.
+ * </p>
+ * @author jmjones
+ */
+public class FilterPlan {
+    private static final int MAXROLL = 8;
+    private static final int MAX_PLANS = 64;
+    private static final int MAX_TAPERS = 256;
+    private static final ConcurrentHashMap<plankey, FilterPlan> plans =
+                                                    new ConcurrentHashMap<>();
+    private final double[] fact;
+    private final double[] b1;
+    private final double[] b2;
+    private final ConcurrentHashMap<Integer, double[]> tapers;
+    /**
+     * Gets the plan for the filter parameters, building it the first time
+     * the parameters are seen.  The parameters should already be checked for
+     * validity, as in ButterworthFilter.calculateCoefficients.
+     * @param f1 the filter low cutoff frequency
+     * @param f2 the filter high cutoff frequency
+     * @param dtime the sample time interval for the record
+     * @param nroll the filter roll off, which is 1/2 the filter order
+     * @return the filter plan
+     */
+    public static FilterPlan getPlan( double f1, double f2, double dtime,
+                                                                int nroll ) {
+        plankey key = new plankey(f1, f2, dtime, nroll);
+        FilterPlan plan = plans.get(key);
+        if (plan == null) {
+            plan = new FilterPlan(f1, f2, dtime, nroll);
+            if (plans.size() >= MAX_PLANS) {
+                plans.clear();
+            }
+            FilterPlan current = plans.putIfAbsent(key, plan);
+            plan = (current == null) ? plan : current;
+        }
+        return plan;
+    }
+    /**
+     * Constructor calculates the filter coefficients into arrays b1 and b2,
+     * and the gain into array fact, for each of the 2*nroll second-order
+     * sections of the filter.
+     * @param f1 the filter low cutoff frequency
+     * @param f2 the filter high cutoff frequency
+     * @param dtime the sample time interval for the record
+     * @param nroll the filter roll off, which is 1/2 the filter order
+     */
+    private FilterPlan( double f1, double f2, double dtime, int nroll ) {
+        double pi = Math.PI;
+        fact = new double[2*MAXROLL];
+        b1 = new double[2*MAXROLL];
+        b2 = new double[2*MAXROLL];
+        tapers = new ConcurrentHashMap<>();
+
+        double pre; double pim; double argre; double argim; double rho; double theta;
+        double sjre; double sjim; double bj; double cj; double con;
+        int index;
+
+        //for w1 and w2 calc., the 2 in the num. and denom. can be deleted but its
+        //left in for clarity
+        double w1 = 2.0 * Math.tan(((2.0*pi*f1)*dtime)/2.0) / dtime;
+        double w2 = 2.0 * Math.tan(((2.0*pi*f2)*dtime)/2.0) / dtime;
+
+        //calculate the filter coefficients into arrays b1 and b2, and calculate
+        //the gain into array fact
+        for (int k = 1; k < nroll+1; k++) {
+            pre = (-1.0) * Math.sin((pi*(2.0*k - 1)) / (4.0*nroll));
+            pim = Math.cos((pi*(2.0*k - 1)) / (4.0*nroll));
+
+            argre = (((Math.pow(pre,2.0) - Math.pow(pim,2.0)) * Math.pow((w2-w1),2.0)) / 4.0) - (w1 * w2);
+            argim = (2.0 * pre * pim * Math.pow((w2-w1),2.0)) / 4.0;
+
+            rho = Math.pow((Math.pow(argre,2.0) + Math.pow(argim, 2.0)), (1.0/4.0));
+            theta = pi + (Math.atan2(argim, argre)) / 2.0;
+
+            for (int i = 1; i < 3; i++) {
+                sjre = (pre * (w2-w1)/2.0) + (Math.pow(-1,i) * rho * ((-1.0)*Math.sin(theta-(pi/2.0))));
+                sjim = (pim * (w2-w1)/2.0) + (Math.pow(-1,i) * rho * (Math.cos(theta-(pi/2.0))));
+
+                bj = (-2.0) * sjre;
+                cj = Math.pow(sjre,2) + Math.pow(sjim,2);
+                con = 1.0 / ((2.0/dtime) + bj + (cj*dtime/2.0));
+
+                index = 2*k + i - 3;
+                fact[index] = (w2 - w1) * con;
+                b1[index] = ((cj*dtime) - (4.0/dtime)) * con;
+                b2[index] = ((2.0/dtime) - bj + (cj*dtime/2.0)) * con;
+            }
+        }
+    }
+    /**
+     * Gets the half-cosine taper window for the input range, building it the
+     * first time the range is seen.  The length of the window is 1/2 of the
+     * range.
+     * @param range the number of elements the taper is applied over
+     * @return the taper window, which is shared and should not be changed
+     */
+    public double[] getTaper( int range ) {
+        double[] taper = tapers.get(range);
+        if (taper == null) {
+            taper = makeTaper(range);
+            if (tapers.size() >= MAX_TAPERS) {
+                tapers.clear();
+            }
+            double[] current = tapers.putIfAbsent(range, taper);
+            taper = (current == null) ? taper : current;
+        }
+        return taper;
+    }
+    /**
+     * Builds the half-cosine taper window for the input range
+     * @param range the number of elements the taper is applied over
+     * @return the taper window, of length 1/2 of the range
+     */
+    public static double[] makeTaper( int range ) {
+        int m = range / 2;
+        double[] taper = new double[m];
+        for (int i = 0; i < m; i++) {
+            taper[i] = 0.5 * (1.0 - Math.cos(2 * Math.PI * i / (range-1)));
+        }
+        return taper;
+    }
+    /**
+     * Getter for the array with the calculated gains
+     * @return the gains
+     */
+    public double[] getFact() { return fact; }
+    /**
+     * Getter for the first coefficient array
+     * @return the first coefficient array
+     */
+    public double[] getB1() { return b1; }
+    /**
+     * Getter for the 2nd coefficient array
+     * @return the second coefficient array
+     */
+    public double[] getB2() { return b2; }
+    /**
+     * This private class is the key for the filter plans, made up of the
+     * corner frequencies, the sampling interval and the roll off.
+     */
+    private static final class plankey {
+        private final double f1;
+        private final double f2;
+        private final double dtime;
+        private final int nroll;
+
+        public plankey( double f1, double f2, double dtime, int nroll ) {
+            this.f1 = f1;
+            this.f2 = f2;
+            this.dtime = dtime;
+            this.nroll = nroll;
+        }
+        @Override
+        public boolean equals( Object other ) {
+            if (!(other instanceof plankey)) {
+                return false;
+            }
+            plankey key = (plankey)other;
+            return (Double.compare(f1, key.f1) == 0) &&
+                        (Double.compare(f2, key.f2) == 0) &&
+                        (Double.compare(dtime, key.dtime) == 0) &&
+                        (nroll == key.nroll);
+        }
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(f1);
+            bits = bits * 31 + Double.doubleToLongBits(f2);
+            bits = bits * 31 + Double.doubleToLongBits(dtime);
+            bits = bits * 31 + nroll;
+            return (int)(bits ^ (bits >>> 32));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Name: Java class OscillatorCoefficients.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package SmProcessing;
+
+import static SmConstants.VFileConstants.NUM_COEF_VALS;
+
+/**
+ * <p>
+ * The OscillatorCoefficients class computes the recurrence coefficients for
+ * the single-degree-of-freedom oscillators used for the response spectra,
+ * for any sampling interval, damping value and period.  These are the same
+ * coefficients as in the spectra coefficient tables, computed directly so
+ * that records at sampling rates without a table can be processed.
+ * </p>
+ * <p>
+ * The coefficients are the exact solution of the oscillator equation over
+ * one time step, with the acceleration held at its value for the step.  For
+ * natural frequency w = 2*pi/T, damping z, damped frequency wd = w*sqrt(1-z*z)
+ * and time step dt, with ex = exp(-z*w*dt), sn = sin(wd*dt), cs = cos(wd*dt):
+ * </p>
+ * <pre>
+ *   a = ex * (cs + z/sqrt(1-z*z) * sn)    b = ex * sn / wd
+ *   c = -w*w * b                          d = ex * (cs - z/sqrt(1-z*z) * sn)
+ *   e = (1 - d - 2*z*w*b) / (w*w)         f = b
+ * </pre>
+ * <p>
+ * and the recurrence for displacement y0 and velocity y1 is
+ * y0[k] = a*y0[k-1] + b*y1[k-1] + e*acc[k] and
+ * y1[k] = c*y0[k-1] + d*y1[k-1] + f*acc[k].
+ * The damping must be less than 1.
+ * </p>
+ * @author jmjones
+ */
+public class OscillatorCoefficients {
+    /**
+     * Default private constructor for the static methods
+     */
+    private OscillatorCoefficients() {
+    }
+    /**
+     * Computes the 6 recurrence coefficients for one oscillator
+     * @param dtime the sampling interval in seconds
+     * @param damping the damping value, as a fraction of critical damping
+     * @param period the oscillator period in seconds
+     * @return the coefficients in the coefficient table order a, b, c, d, e, f
+     */
+    public static double[] calculateCoefs( double dtime, double damping,
+                                                            double period ) {
+        double omega = (2.0 * Math.PI) / period;
+        double root = Math.sqrt(1.0 - damping * damping);
+        double omegad = omega * root;
+        double ex = Math.exp(-damping * omega * dtime);
+        double sin = Math.sin(omegad * dtime);
+        double cos = Math.cos(omegad * dtime);
+        double ratio = damping / root;
+        double[] coefs = new double[NUM_COEF_VALS];
+        coefs[0] = ex * (cos + ratio * sin);
+        coefs[1] = ex * sin / omegad;
+        coefs[2] = -omega * omega * coefs[1];
+        coefs[3] = ex * (cos - ratio * sin);
+        coefs[4] = (1.0 - coefs[3] - 2.0 * damping * omega * coefs[1]) /
+                                                            (omega * omega);
+        coefs[5] = coefs[1];
+        return coefs;
+    }
+    /**
+     * Computes the recurrence coefficients for each period, in the same layout
+     * as the coefficient tables
+     * @param dtime the sampling interval in seconds
+     * @param damping the damping value, as a fraction of critical damping
+     * @param periods the oscillator periods in seconds
+     * @return the coefficients, [period][6]
+     */
+    public static double[][] calculateCoefArray( double dtime, double damping,
+                                                        double[] periods ) {
+        double[][] coefs = new double[periods.length][];
+        for (int i = 0; i < periods.length; i++) {
+            coefs[i] = calculateCoefs(dtime, damping, periods[i]);
+        }
+        return coefs;
+    }
+}
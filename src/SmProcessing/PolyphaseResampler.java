@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Name: Java class PolyphaseResampler.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package SmProcessing;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * The PolyphaseResampler class increases the sampling rate of a record by an
+ * integer factor in the time domain, as an alternative to the FFT method in
+ * Resampling.  Each new sample is interpolated from the input samples around
+ * it with a Kaiser-windowed sinc filter, with its cutoff at the Nyquist
+ * frequency of the input.  The filter is split into one phase for each of
+ * the factor output samples between two input samples, so each output sample
+ * costs 2*halflength multiplications, and the whole record costs
+ * O(N*factor*halflength) instead of the FFTs of the padded record.  The
+ * phase for the input samples themselves is the identity, so the input
+ * samples are kept unchanged.
+ * </p>
+ * <p>
+ * The input is streamed through in chunks of any size, with a history of the
+ * last 2*halflength input samples, so the memory used is bounded by the
+ * filter length.  The output for an input sample comes out halflength samples
+ * later, once the samples after it have been read, and flush runs the last
+ * samples out with zeros past the end of the record.  The record is also
+ * taken as zero before its start.
+ * </p>
+ * <p>
+ * Within the passband the output matches the FFT method, which is the ideal
+ * band-limited interpolation, except near the ends of the record, where the
+ * two methods treat the edges differently.  With the default filter, the
+ * difference for a tapered sinusoid is below PASSBAND_ERROR of its amplitude
+ * up to PASSBAND_EDGE times the input Nyquist frequency, and is about 1.0e-5
+ * in tests at factors 2 and 4.  Frequencies above the passband are rolled off
+ * to the Nyquist frequency, where the gain is 1/2, and images above it are
+ * attenuated by the Kaiser window.  Unlike the FFT method, which keeps its
+ * spectrum a power of 2 long, the filter works for any integer factor, and
+ * Resampling uses it for the factors that are not a power of 2.
+ * </p>
+ * @author jmjones
+ */
+public class PolyphaseResampler {
+    /**
+     * The default number of input samples on each side of an output sample
+     */
+    public static final int DEFAULT_HALF_LENGTH = 32;
+    /**
+     * The default Kaiser window shape parameter
+     */
+    public static final double DEFAULT_BETA = 10.0;
+    /**
+     * The upper edge of the passband with the default filter, as a fraction of
+     * the input Nyquist frequency
+     */
+    public static final double PASSBAND_EDGE = 0.9;
+    /**
+     * The largest difference from the FFT method within the passband with the
+     * default filter, relative to the amplitude
+     */
+    public static final double PASSBAND_ERROR = 1.0e-4;
+    private final int factor;
+    private final int halflength;
+    private final int taps;
+    private final double[][] phases;
+    private final double[] history;
+    private int position;
+    private long received;
+    /**
+     * Constructor for the resampler with the default filter
+     * @param factor the integer factor for the increase in sampling rate
+     */
+    public PolyphaseResampler( int factor ) {
+        this(factor, DEFAULT_HALF_LENGTH, DEFAULT_BETA);
+    }
+    /**
+     * Constructor builds the filter phases for the factor.  Phase p holds the
+     * weights of the 2*halflength input samples around output sample p after
+     * an input sample, each normalized to a sum of 1 so that a constant is
+     * kept exactly.
+     * @param factor the integer factor for the increase in sampling rate
+     * @param halflength the number of input samples on each side of an output
+     * sample
+     * @param beta the Kaiser window shape parameter, higher values give
+     * more attenuation of the images and a wider transition band
+     * @throws IllegalArgumentException if the factor or halflength is less
+     * than 1
+     */
+    public PolyphaseResampler( int factor, int halflength, double beta ) {
+        if ((factor < 1) || (halflength < 1)) {
+            throw new IllegalArgumentException("Invalid resampling factor " +
+                                    factor + " or filter length " + halflength);
+        }
+        this.factor = factor;
+        this.halflength = halflength;
+        this.taps = 2 * halflength;
+        this.phases = new double[factor][taps];
+        double span = (double)halflength * factor;
+        double norm = besselI0(beta);
+        for (int p = 0; p < factor; p++) {
+            double sum = 0.0;
+            for (int j = 0; j < taps; j++) {
+                //offset in output samples from input sample j of the window
+                double t = (double)(halflength - 1 - j) * factor + p;
+                double x = t / factor;
+                double sinc;
+                if (p == 0) {
+                    sinc = (t == 0.0) ? 1.0 : 0.0;
+                } else {
+                    sinc = Math.sin(Math.PI * x) / (Math.PI * x);
+                }
+                double r = t / span;
+                double window = (Math.abs(r) >= 1.0) ? 0.0 :
+                                    besselI0(beta * Math.sqrt(1.0 - r * r)) / norm;
+                phases[p][j] = sinc * window;
+                sum += phases[p][j];
+            }
+            for (int j = 0; j < taps; j++) {
+                phases[p][j] /= sum;
+            }
+        }
+        this.history = new double[2 * taps];
+        reset();
+    }
+    /**
+     * Computes the modified Bessel function of the first kind of order 0, for
+     * the Kaiser window, from its power series
+     * @param x the input value
+     * @return I0(x)
+     */
+    private static double besselI0( double x ) {
+        double sum = 1.0;
+        double term = 1.0;
+        double half = x / 2.0;
+        for (int k = 1; k < 500; k++) {
+            term *= (half / k) * (half / k);
+            sum += term;
+            if (term < sum * 1.0e-17) {
+                break;
+            }
+        }
+        return sum;
+    }
+    /**
+     * Clears the history, to start a new record
+     */
+    public final void reset() {
+        Arrays.fill(history, 0.0);
+        position = 0;
+        received = 0;
+    }
+    /**
+     * Resamples the next chunk of the input record.  The output for each input
+     * sample from halflength samples back is written, factor samples each, so
+     * the output array needs room for count*factor values.
+     * @param input the array holding the chunk
+     * @param offset the index of the start of the chunk in the input array
+     * @param count the number of input samples in the chunk
+     * @param output the array for the output samples
+     * @param outoffset the index in the output array for the first output
+     * @return the number of output samples written
+     */
+    public int process( double[] input, int offset, int count, double[] output,
+                                                                int outoffset ) {
+        int written = 0;
+        for (int i = 0; i < count; i++) {
+            written += push(input[offset + i], output, outoffset + written);
+        }
+        return written;
+    }
+    /**
+     * Runs the last halflength input samples out of the filter, with zeros past
+     * the end of the record, and resets the resampler for the next record
+     * @param output the array for the output samples, with room for
+     * halflength*factor values
+     * @param outoffset the index in the output array for the first output
+     * @return the number of output samples written
+     */
+    public int flush( double[] output, int outoffset ) {
+        int written = 0;
+        if (received > 0) {
+            for (int i = 0; i < halflength; i++) {
+                written += push(0.0, output, outoffset + written);
+            }
+        }
+        reset();
+        return written;
+    }
+    /**
+     * Adds one input sample to the history and writes the output samples for
+     * the input sample halflength samples back, once it has all the samples
+     * after it.  The history is kept twice, so that the window of the last
+     * 2*halflength samples is always in one run of the array.
+     * @param value the input sample
+     * @param output the array for the output samples
+     * @param outoffset the index in the output array for the first output
+     * @return the number of output samples written, either 0 or factor
+     */
+    private int push( double value, double[] output, int outoffset ) {
+        history[position] = value;
+        history[position + taps] = value;
+        position = (position + 1) % taps;
+        received++;
+        if (received <= halflength) {
+            return 0;
+        }
+        //the window runs from the oldest sample at position to the newest
+        for (int p = 0; p < factor; p++) {
+            double[] weights = phases[p];
+            double sum = 0.0;
+            for (int j = 0; j < taps; j++) {
+                sum += weights[j] * history[position + j];
+            }
+            output[outoffset + p] = sum;
+        }
+        return factor;
+    }
+    /**
+     * Resamples a whole record, streaming it through the filter in chunks and
+     * writing straight into the output array
+     * @param array the input record
+     * @param chunk the number of input samples in each chunk
+     * @return the resampled record, of length array.length*factor
+     */
+    public double[] resampleArray( double[] array, int chunk ) {
+        reset();
+        double[] output = new double[array.length * factor];
+        int written = 0;
+        int size = Math.max(chunk, 1);
+        for (int start = 0; start < array.length; start += size) {
+            int count = Math.min(size, array.length - start);
+            written += process(array, start, count, output, written);
+        }
+        flush(output, written);
+        return output;
+    }
+    /**
+     * Getter for the factor increase in sampling rate
+     * @return the factor
+     */
+    public int getFactor() { return factor; }
+    /**
+     * Getter for the number of input samples on each side of an output sample,
+     * which is also the delay of the output in input samples
+     * @return the half length of the filter
+     */
+    public int getHalfLength() { return halflength; }
+}
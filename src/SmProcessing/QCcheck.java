@@ -18,6 +18,7 @@ import static SmConstants.VFileConstants.DEFAULT_QA_INITIAL_VELOCITY;
 import static SmConstants.VFileConstants.DEFAULT_QA_RESIDUAL_DISPLACE;
 import static SmConstants.VFileConstants.DEFAULT_QA_RESIDUAL_VELOCITY;
 import SmUtilities.ConfigReader;
+import SmUtilities.ProcessingContext;
 import static SmUtilities.SmConfigConstants.QC_INITIAL_VELOCITY;
 import static SmUtilities.SmConfigConstants.QC_RESIDUAL_DISPLACE;
 import static SmUtilities.SmConfigConstants.QC_RESIDUAL_VELOCITY;
@@ -39,10 +40,20 @@ public class QCcheck {
     private double velstart;
     private double velend;
     private double disend;
+    private final ProcessingContext context;
     /**
-     * Default constructor
+     * Default constructor, using the shared configuration parameters
      */
     public QCcheck() {
+        this(ProcessingContext.DEFAULT);
+    }
+    /**
+     * Constructor using the configuration parameters of the processing context
+     * for this record
+     * @param context the processing context for this record
+     */
+    public QCcheck(ProcessingContext context) {
+        this.context = context;
     }
     /**
      * Retrieves the QC limits from the configuration file.  If no configuration
@@ -53,7 +64,7 @@ public class QCcheck {
      * extract them from the configuration file.
      */
     public boolean validateQCvalues() {
-        ConfigReader config = ConfigReader.INSTANCE;
+        ConfigReader config = context.getConfig();
         try {
             String qainitvel = config.getConfigValue(QC_INITIAL_VELOCITY);
             this.qcvelinit = (qainitvel == null) ? DEFAULT_QA_INITIAL_VELOCITY : 
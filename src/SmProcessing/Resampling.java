@@ -13,15 +13,21 @@
  ******************************************************************************/
 package SmProcessing;
 
+import static SmConstants.VFileConstants.RESAMPLE_CHUNK_SIZE;
 import static SmConstants.VFileConstants.SAMPLING_LIMIT;
 import SmException.SmException;
-import java.util.Arrays;
-import org.apache.commons.math3.complex.Complex;
 
 /**
  * The Resampling class re-samples records to a higher sampling rate as needed.
  * If performs the resampling in the frequency domain, using the fft of the
- * input array to increase the frequency of the samples.
+ * input array to increase the frequency of the samples.  Since the arrays are
+ * real, the transforms work with the half spectrum, the bins from 0 up to the
+ * Nyquist frequency.  Alternatively, the records can be resampled in the time
+ * domain with the PolyphaseResampler, which streams through the record in
+ * chunks with a cost proportional to its length.  The FFT method pads the
+ * spectrum to a power of 2 length, so it only gives the right time scale
+ * when the factor is a power of 2, and records with any other factor are
+ * resampled with the PolyphaseResampler even when the FFT method is selected.
  * @author jmjones
  */
 public class Resampling {
@@ -30,22 +36,37 @@ public class Resampling {
     private int padlen;
     private int factor;
     private int newrate;
+    private final boolean polyphase;
+    private boolean polyphaseused;
     private final FFourierTransform fft;
     /**
-     * The resampling constructor simply initializes variables
+     * The resampling constructor simply initializes variables, for resampling
+     * with the FFT
      */
     public Resampling() {
+        this(false);
+    }
+    /**
+     * The resampling constructor simply initializes variables
+     * @param polyphase true to resample with the PolyphaseResampler, false to
+     * resample with the FFT
+     */
+    public Resampling( boolean polyphase ) {
         this.ylen = 0;
         this.zlen = 0;
         this.factor = 0;
         this.padlen = 0;
+        this.polyphase = polyphase;
+        this.polyphaseused = false;
         this.fft = new FFourierTransform();
     }
     /**
      * Performs the actual re-sampling by taking the fft of the input array and
      * padding the complex arrray with zeros in the middle to increase the frequency.
      * The inverse fft is then calculated and the new values are retrieved from
-     * the real components of the ifft.
+     * the real components of the ifft.  With the polyphase method, or with a
+     * factor that is not a power of 2, the array is instead run through the
+     * PolyphaseResampler in chunks.
      * @param yarray the input array to be re-sampled
      * @param sps the initial sampling rate
      * @return the re-sampled array
@@ -64,9 +85,14 @@ public class Resampling {
         zlen = (int)Math.ceil((double)( fftpadlen + 1 ) / 2.0 );
         calcNewSamplingRate( sps );
         factor = getFactor();
-        if (factor < 0) {
+        if (factor < 1) {
             throw new SmException("Invalid sampling rate of " + sps);
         }
+        polyphaseused = polyphase || ((factor & (factor - 1)) != 0);
+        if (polyphaseused) {
+            PolyphaseResampler resampler = new PolyphaseResampler( factor );
+            return resampler.resampleArray(yarray, RESAMPLE_CHUNK_SIZE);
+        }
         //this is the new length of the resampled output array
         int newlen = ylen * factor;
         
@@ -75,43 +101,27 @@ public class Resampling {
 //        System.out.println("factor: " + factor);
 //        System.out.println("newlen: " + newlen);
         
-        //calculate the number of padding zeroes and fill the zero array
+        //calculate the number of padding zeroes and the padded spectrum length
         padlen = ylen * (factor-1);
         int complexlen = fft.findPower2Length( padlen + fftpadlen);
-        int padlenpower2 = complexlen - fftpadlen;
-        Complex[] zeroes = new Complex[padlenpower2];
-        Arrays.fill( zeroes, Complex.ZERO );
 
-        //compute fft
-        Complex[] zarray = fft.calculateFFTComplex( yarray );
-//        System.out.println("length of zarray: " + zarray.length);
-//        System.out.println("zlen: " + zlen);
-//        System.out.println("padlen: " + padlen);
-//        System.out.println("complexlen: " + complexlen);
-//        System.out.println("padlen_power2: " + padlenpower2);
-//        System.out.println("z array");
-//        for (Complex each : zarray) {
-//            System.out.println(each.toString());
-//        }
+        //compute fft, the half spectrum up to the Nyquist bin at zlen-1
+        double[] zarray = fft.calculateFFTComplex( yarray );
         
-        //construct a new Fourier spectrum by centering zeroes
-        Complex[] zp = new Complex[complexlen];
-//        System.out.println("length of zp: " + zp.length);
-        System.arraycopy(zarray, 0, zp, 0, zlen);
-        System.arraycopy(zeroes, 0, zp, zlen, padlenpower2);
-        System.arraycopy(zarray, zlen, zp, (zlen+padlenpower2), fftpadlen-zlen);
-//        System.out.println("zp before Nyquist");
-//        for (Complex each : zp) {
-//            System.out.println(each.toString());
-//        }
+        //construct the half spectrum of a new Fourier spectrum by centering
+        //zeroes.  Below the Nyquist bin the new spectrum is the same as the
+        //old one, and the zeroes take up the rest of the bins.
+        double[] zp = new double[complexlen + 2];
+        System.arraycopy(zarray, 0, zp, 0, 2*(zlen-1));
         
-        //correct for Nyquist (number of data in input signal is always even)
-        zp[zlen-1] = zp[zlen-1].divide(2.0);
-        zp[zlen-1+padlen] = zp[zlen-1];
-//        System.out.println("zp after Nyquist");
-//        for (Complex each : zp) {
-//            System.out.println(each.toString());
-//        }
+        //correct for Nyquist (number of data in input signal is always even).
+        //The Nyquist value is halved at its bin and copied to the bin padlen
+        //past it.  The real part of the inverse comes from the average of each
+        //bin and the conjugate of its mirror bin, so each half goes into the
+        //half spectrum at its bin or at its mirror.
+        double nyquist = zarray[2*(zlen-1)] / 2.0;
+        addHalfBin(zp, zlen-1, nyquist, complexlen);
+        addHalfBin(zp, zlen-1+padlen, nyquist, complexlen);
         
         //compute inverse FFT
         double[] yp = new double[newlen];
@@ -131,6 +141,19 @@ public class Resampling {
 //        }
         return yp;
     }
+    /**
+     * Adds half of a real value at one bin of the full spectrum into the half
+     * spectrum, at the bin itself if it is in the first half, or else at its
+     * mirror bin.  The middle bin is its own mirror, so it gets both halves.
+     * @param zp the interleaved complex half spectrum
+     * @param bin the bin in the full spectrum
+     * @param value the real value at the bin
+     * @param complexlen the length of the full spectrum
+     */
+    private void addHalfBin( double[] zp, int bin, double value, int complexlen ) {
+        int index = (bin <= complexlen / 2) ? bin : complexlen - bin;
+        zp[2*index] += (2*bin == complexlen) ? value : value / 2.0;
+    }
     /**
      * Tests the input sampling rate against a sampling limit.
      * @param sps the input sampling rate
@@ -168,4 +191,11 @@ public class Resampling {
      * @return the new sampling rate
      */
     public int getNewSamplingRate() { return newrate; }
+    /**
+     * Getter for the method used for the last re-sampled array
+     * @return true if the array was re-sampled with the PolyphaseResampler,
+     * either because it was selected or because the factor is not a power of
+     * 2, false if it was re-sampled with the FFT
+     */
+    public boolean getPolyphaseUsed() { return polyphaseused; }
 }
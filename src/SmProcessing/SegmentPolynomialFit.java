@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Name: Java class SegmentPolynomialFit.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package SmProcessing;
+
+import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
+
+/**
+ * <p>
+ * The SegmentPolynomialFit class finds the least-squares polynomial fits to
+ * the end segments of an array, where each segment runs from a start index
+ * to the end of the array.  This is the fit for the 3rd segment in adaptive
+ * baseline correction, where the start index walks through the array in
+ * steps of a moving window.  The fit to the whole array is the segment that
+ * starts at index 0, which is used by ArrayOps.findPolynomialTrend.
+ * </p>
+ * <p>
+ * Here the fit is updated one sample at a time, walking back from the end
+ * of the array, and the state of the fit is saved at each start index in the
+ * steps.  Each step then only costs the samples in the window.  The state is
+ * the triangular factor R and the transformed values Q'y of the QR
+ * factorization of the least-squares problem, which are updated with Givens
+ * rotations as each sample is added.  The polynomial is in the scaled time
+ * u = (i - (n-1)) / (n-1), so u runs from -1 at the start of the array to 0
+ * at the end, which keeps the factorization well conditioned.  Since the
+ * columns of the problem are 1, u, u^2, ..., the leading rows and columns of R
+ * are the factor for each lower degree, so one factorization serves every
+ * degree up to the maximum.
+ * </p>
+ * <p>
+ * The coefficients are returned for the time from the start of the segment.
+ * This is the direct solution of the least-squares problem, which the
+ * commons math PolynomialCurveFitter finds iteratively, so the two differ by
+ * its convergence tolerance.  The fitted values agree to within TOLERANCE of
+ * the largest segment value.
+ * </p>
+ * @author jmjones
+ */
+public class SegmentPolynomialFit {
+    /**
+     * Tolerance for the fitted values, relative to the largest absolute value
+     * in the segment, compared to the fit from the commons math
+     * PolynomialCurveFitter
+     */
+    public static final double TOLERANCE = 1.0e-10;
+    private static final double EPSILON = 0.00001;
+    private final double[] array;
+    private final double timestep;
+    private final int maxdegree;
+    private final double scale;
+    private final int first;
+    private final int step;
+    private final double[][][] factors;
+    private final double[][] values;
+    /**
+     * Constructor for the fits to the end segments of the input array.  The
+     * fits are prepared for the start indices first, first + step, and so on,
+     * up to the end of the array.  Fits for other start indices are found by
+     * passing over the segment.
+     * @param array the input array to fit
+     * @param timestep the sample interval in seconds
+     * @param maxdegree the highest polynomial degree to fit
+     * @param first the first start index to prepare
+     * @param step the step between the start indices to prepare
+     */
+    public SegmentPolynomialFit( double[] array, double timestep, int maxdegree,
+                                                        int first, int step ) {
+        this.array = array;
+        this.timestep = timestep;
+        this.maxdegree = maxdegree;
+        this.scale = Math.max(array.length - 1, 1);
+        this.first = Math.max(first, 0);
+        this.step = Math.max(step, 1);
+        int count = (array.length > this.first) ?
+                            (array.length - 1 - this.first) / this.step + 1 : 0;
+        factors = new double[count][][];
+        values = new double[count][];
+        double[][] r = new double[maxdegree + 1][maxdegree + 1];
+        double[] qty = new double[maxdegree + 1];
+        double[] row = new double[maxdegree + 1];
+        for (int i = array.length - 1; i >= this.first; i--) {
+            addSample(r, qty, row, i);
+            if ((i - this.first) % this.step == 0) {
+                int k = (i - this.first) / this.step;
+                factors[k] = new double[maxdegree + 1][];
+                for (int j = 0; j <= maxdegree; j++) {
+                    factors[k][j] = r[j].clone();
+                }
+                values[k] = qty.clone();
+            }
+        }
+    }
+    /**
+     * Adds one sample of the array to the QR factorization with Givens
+     * rotations
+     * @param r the triangular factor, updated with the sample
+     * @param qty the transformed values, updated with the sample
+     * @param row work array for the row of the sample
+     * @param index the index of the sample in the array
+     */
+    private void addSample( double[][] r, double[] qty, double[] row, int index ) {
+        int ncols = maxdegree + 1;
+        double u = (index - (array.length - 1)) / scale;
+        row[0] = 1.0;
+        for (int j = 1; j < ncols; j++) {
+            row[j] = row[j-1] * u;
+        }
+        double y = array[index];
+        for (int k = 0; k < ncols; k++) {
+            if (row[k] == 0.0) {
+                continue;
+            }
+            double h = Math.sqrt(r[k][k] * r[k][k] + row[k] * row[k]);
+            double c = r[k][k] / h;
+            double s = row[k] / h;
+            r[k][k] = h;
+            for (int j = k + 1; j < ncols; j++) {
+                double t = r[k][j];
+                r[k][j] = c * t + s * row[j];
+                row[j] = c * row[j] - s * t;
+            }
+            double t = qty[k];
+            qty[k] = c * t + s * y;
+            y = c * y - s * t;
+        }
+    }
+    /**
+     * Finds the polynomial coefficients of the least-squares fit to the
+     * segment from the start index to the end of the array.  The coefficients
+     * are for the time in seconds from the start of the segment, lowest order
+     * first.
+     * @param start the index of the start of the segment
+     * @param degree the polynomial degree, from 1 to the maximum degree
+     * @return array of coefficients, or an array of 0 length if the input
+     * parameters are invalid
+     */
+    public double[] findCoefficients( int start, int degree ) {
+        if ((start < 0) || (start >= array.length) || (degree < 1) ||
+                        (degree > maxdegree) || (Math.abs(timestep) < EPSILON)) {
+            return new double[0];
+        }
+        double[][] r;
+        double[] qty;
+        if ((start >= first) && ((start - first) % step == 0)) {
+            r = factors[(start - first) / step];
+            qty = values[(start - first) / step];
+        } else {
+            r = new double[maxdegree + 1][maxdegree + 1];
+            qty = new double[maxdegree + 1];
+            double[] row = new double[maxdegree + 1];
+            for (int i = array.length - 1; i >= start; i--) {
+                addSample(r, qty, row, i);
+            }
+        }
+        //back substitution with the leading rows and columns for the degree.
+        //With fewer samples than coefficients, the rows past the number of
+        //samples are empty and their coefficients are left at 0.
+        double[] a = new double[degree + 1];
+        for (int k = degree; k >= 0; k--) {
+            if (r[k][k] == 0.0) {
+                continue;
+            }
+            double sum = qty[k];
+            for (int j = k + 1; j <= degree; j++) {
+                sum -= r[k][j] * a[j];
+            }
+            a[k] = sum / r[k][k];
+        }
+        //change variables from u = alpha + beta*t to the time t
+        double alpha = (start - (array.length - 1)) / scale;
+        double beta = 1.0 / (scale * timestep);
+        double[] coefs = new double[degree + 1];
+        double betapow = 1.0;
+        for (int m = 0; m <= degree; m++) {
+            double sum = 0.0;
+            double binom = 1.0;
+            double alphapow = 1.0;
+            for (int k = m; k <= degree; k++) {
+                sum += a[k] * binom * alphapow;
+                binom = binom * (k + 1) / (k + 1 - m);
+                alphapow *= alpha;
+            }
+            coefs[m] = sum * betapow;
+            betapow *= beta;
+        }
+        return coefs;
+    }
+    /**
+     * Finds the values of the least-squares polynomial fit to the segment
+     * from the start index to the end of the array, at each sample of the
+     * segment
+     * @param start the index of the start of the segment
+     * @param degree the polynomial degree, from 1 to the maximum degree
+     * @return the fitted values, or an array of 0 length if the input
+     * parameters are invalid
+     */
+    public double[] findFit( int start, int degree ) {
+        double[] coefs = findCoefficients(start, degree);
+        if (coefs.length == 0) {
+            return coefs;
+        }
+        int len = array.length - start;
+        double[] result = new double[len];
+        double[] time = ArrayOps.makeTimeArray(timestep, len);
+        PolynomialFunction poly = new PolynomialFunction( coefs );
+        for (int i = 0; i < len; i++) {
+            result[i] = poly.value(time[i]);
+        }
+        return result;
+    }
+}
@@ -24,15 +24,26 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * This class provides access to the coefficient tables for the different sampling
  * rates and damping values, as well as the file of periods, used during
- * processing of response spectra.
+ * processing of response spectra.  The tables are read in once and shared by
+ * all instances, so they stay loaded for the life of the program when running
+ * as a daemon on the input folder.  Each table is parsed into doubles the first
+ * time it is requested and the parsed table is kept, so later records with the
+ * same sampling rate and damping value share it without parsing the text again.
+ * The periods are parsed once in the same way.  For a sampling rate or damping
+ * value that has no table, the coefficients are computed by
+ * OscillatorCoefficients and cached for each sampling interval and damping
+ * value.
  * @author jmjones
  */
 public class SpectraResources {
-    private boolean initialized = false;
+    private static boolean initialized = false;
     private static final double EPSILON = 0.000001;
     private static final String periodFileName = "spectra/T_periods.txt";
     private static final String[] spectraFileNames = 
@@ -56,8 +67,13 @@ public class SpectraResources {
                                                 "spectra/CoefTable_500_0.05.txt",
                                                 "spectra/CoefTable_500_0.1.txt",
                                                 "spectra/CoefTable_500_0.2.txt" };
-    private String[] T_periods;
-    private String[][] coefs;
+    private static String[] T_periods;
+    private static String[][] coefs;
+    private static volatile double[] periodvals;
+    private static final AtomicReferenceArray<double[][]> parsed =
+                    new AtomicReferenceArray<>(spectraFileNames.length);
+    private static final ConcurrentHashMap<coefkey, double[][]> computed =
+                                                    new ConcurrentHashMap<>();
     /**
      * The constructor checks to see if the files have been read in already.  If 
      * so, it simply exits.  If not, it reads in the files and stores the contents
@@ -65,14 +81,24 @@ public class SpectraResources {
      * @throws IOException if unable to read in a file
      */
     public SpectraResources() throws IOException {
-        //Note that this is not considered thread-safe
+        loadResources();
+    }
+    /**
+     * Reads in the period and coefficient files the first time it is called.
+     * The method is synchronized so that records processed at the same time
+     * read the files only once.
+     * @throws IOException if unable to read in a file
+     */
+    private static synchronized void loadResources() throws IOException {
         if (!initialized) {
-            coefs = new String[spectraFileNames.length][NUM_T_PERIODS];
+            String[][] tables = new String[spectraFileNames.length][NUM_T_PERIODS];
             //Read in resource tables with periods and coefficients
-            T_periods = readInResource(periodFileName);
+            String[] periods = readInResource(periodFileName);
             for (int i = 0; i < spectraFileNames.length; i++) {
-                coefs[i] = readInResource( spectraFileNames[i]);
+                tables[i] = readInResource( spectraFileNames[i]);
             }
+            T_periods = periods;
+            coefs = tables;
             initialized = true;
         }
     }
@@ -82,7 +108,7 @@ public class SpectraResources {
      * @return data from the file as an array of strings
      * @throws IOException if unable to read a file
      */
-    private String[] readInResource( String inName ) throws IOException {
+    private static String[] readInResource( String inName ) throws IOException {
         InputStream stream = SpectraResources.class.getResourceAsStream(inName);
         String nextLine;
         
@@ -98,25 +124,35 @@ public class SpectraResources {
         return outarray;
     }
     /**
-     * Getter for the periods at which spectra are computed.
+     * Getter for the periods at which spectra are computed.  The periods file
+     * is parsed the first time this is called, and each call returns a copy
+     * of the parsed values.
      * @return the 91 period values
      * @throws FormatException if unable to parse the periods file
      */
     public final double[] getTperiods() throws FormatException {
-        int len = T_periods.length;
-        double[] tout = new double[len];
-        try {
-            for (int i = 0; i < len; i++) {
-                tout[i] = Double.parseDouble(T_periods[i]);
+        double[] tvals = periodvals;
+        if (tvals == null) {
+            int len = T_periods.length;
+            tvals = new double[len];
+            try {
+                for (int i = 0; i < len; i++) {
+                    tvals[i] = Double.parseDouble(T_periods[i]);
+                }
+            } catch (NumberFormatException err) {
+                throw new FormatException("Unable to parse spectra periods file");
             }
-        } catch (NumberFormatException err) {
-            throw new FormatException("Unable to parse spectra periods file");
+            periodvals = tvals;
         }
-        return tout;
+        return tvals.clone();
     }
     /**
      * Getter for the coefficient array identified by sample rate and damping
-     * value
+     * value.  The coefficients come from the table for the sample rate and
+     * damping value if there is one, otherwise they are computed for the
+     * sampling interval.  A table is parsed the first time it is requested,
+     * and the parsed table is returned on later calls.  The returned array is
+     * shared, so it should not be changed.
      * @param samplerate the sample rate
      * @param damping the damping value
      * @return the array of coefficients
@@ -125,8 +161,8 @@ public class SpectraResources {
     public final double[][] getCoefArray( double samplerate, double damping) 
                                                         throws FormatException {
         int index;
-        int samp = 0;
-        int damp = 0;
+        int samp = -1;
+        int damp = -1;
         int len = V3_DAMPING_VALUES.length;
         for (int i = 0; i < V3_SAMPLING_RATES.length; i++) {
             if (Math.abs(samplerate-V3_SAMPLING_RATES[i]) < EPSILON) {
@@ -138,8 +174,75 @@ public class SpectraResources {
                 damp = i;
             }
         }
+        if ((samp < 0) || (damp < 0)) {
+            return getComputedCoefArray(1.0 / samplerate, damping);
+        }
         index = (samp*len) + damp;
-        return reformatCoefArray(coefs[index],NUM_COEF_VALS);
+        double[][] array = parsed.get(index);
+        if (array == null) {
+            array = reformatCoefArray(coefs[index],NUM_COEF_VALS);
+            if (!parsed.compareAndSet(index, null, array)) {
+                array = parsed.get(index);
+            }
+        }
+        return array;
+    }
+    /**
+     * Getter for the coefficient array for a sample rate and damping value at
+     * the given periods.  If the periods are the standard periods, this is the
+     * same array as from getCoefArray.  Otherwise each period that is one of
+     * the standard periods takes its row from the standard array, and the
+     * coefficients for any other period are computed for the sampling interval.
+     * @param samplerate the sample rate
+     * @param damping the damping value
+     * @param periods the periods at which spectra are computed
+     * @return the array of coefficients, [period][6]
+     * @throws FormatException if unable to parse the coefficients or periods file
+     */
+    public final double[][] getCoefArray( double samplerate, double damping,
+                                    double[] periods ) throws FormatException {
+        double[][] standard = getCoefArray(samplerate, damping);
+        double[] tvals = getTperiods();
+        if (Arrays.equals(tvals, periods)) {
+            return standard;
+        }
+        double[][] array = new double[periods.length][];
+        for (int p = 0; p < periods.length; p++) {
+            for (int i = 0; i < tvals.length; i++) {
+                if (Math.abs(periods[p] - tvals[i]) < EPSILON) {
+                    array[p] = standard[i];
+                    break;
+                }
+            }
+            if (array[p] == null) {
+                array[p] = OscillatorCoefficients.calculateCoefs(1.0 / samplerate,
+                                                        damping, periods[p]);
+            }
+        }
+        return array;
+    }
+    /**
+     * Getter for the coefficient array computed for the sampling interval and
+     * damping value at each of the periods.  The array is computed the first
+     * time it is requested and then kept for later records with the same
+     * sampling interval and damping value.  The returned array is shared, so
+     * it should not be changed.
+     * @param dtime the sampling interval in seconds
+     * @param damping the damping value
+     * @return the array of coefficients, [period][6]
+     * @throws FormatException if unable to parse the periods file
+     */
+    public final double[][] getComputedCoefArray( double dtime, double damping )
+                                                        throws FormatException {
+        coefkey key = new coefkey(dtime, damping);
+        double[][] array = computed.get(key);
+        if (array == null) {
+            array = OscillatorCoefficients.calculateCoefArray(dtime, damping,
+                                                                getTperiods());
+            double[][] current = computed.putIfAbsent(key, array);
+            array = (current == null) ? array : current;
+        }
+        return array;
     }
     /**
      * This private method actually handles the conversion of the array from
@@ -179,4 +282,32 @@ public class SpectraResources {
     public final String[][] getCoefsText() {
         return coefs;
     }
+    /**
+     * This private class is the key for the computed coefficient arrays, made
+     * up of the sampling interval and the damping value.
+     */
+    private static final class coefkey {
+        private final double dtime;
+        private final double damping;
+
+        public coefkey( double dtime, double damping ) {
+            this.dtime = dtime;
+            this.damping = damping;
+        }
+        @Override
+        public boolean equals( Object other ) {
+            if (!(other instanceof coefkey)) {
+                return false;
+            }
+            coefkey key = (coefkey)other;
+            return (Double.compare(dtime, key.dtime) == 0) &&
+                                    (Double.compare(damping, key.damping) == 0);
+        }
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(dtime) * 31 + 
+                                            Double.doubleToLongBits(damping);
+            return (int)(bits ^ (bits >>> 32));
+        }
+    }
 }
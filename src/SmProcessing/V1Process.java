@@ -18,6 +18,7 @@ import COSMOSformat.V0Component;
 import static SmConstants.VFileConstants.*;
 import SmException.SmException;
 import SmUtilities.ConfigReader;
+import SmUtilities.ProcessingContext;
 import static SmUtilities.SmConfigConstants.*;
 
 /**
@@ -56,11 +57,23 @@ public class V1Process {
      * parameters
      */
     public V1Process(final V0Component v0rec) throws SmException {
+        this(v0rec, ProcessingContext.DEFAULT);
+    }
+    /**
+     * The constructor for V1Process using the configuration parameters of the
+     * processing context for this record.
+     * @param v0rec the reference to the parent V0 record
+     * @param context the processing context for this record
+     * @throws SmException if unable to acquire needed real header or configuration
+     * parameters
+     */
+    public V1Process(final V0Component v0rec, ProcessingContext context) 
+                                                        throws SmException {
         double epsilon = 0.0001;
         double nodata = v0rec.getNoRealVal();
         this.inV0 = v0rec;
         this.meanToZero = 0.0;
-        ConfigReader config = ConfigReader.INSTANCE;
+        ConfigReader config = context.getConfig();
         
         //extract needed values from the V0 record and check if defined
         this.lsb = v0rec.getRealHeaderValue(RECORER_LSB);
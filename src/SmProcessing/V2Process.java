@@ -22,8 +22,8 @@ import SmConstants.VFileConstants.V2DataType;
 import SmException.SmException;
 import SmUtilities.ConfigReader;
 import SmUtilities.ProcessStepsRecorder2;
+import SmUtilities.ProcessingContext;
 import static SmUtilities.SmConfigConstants.*;
-import SmUtilities.SmDebugLogger;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -97,7 +97,9 @@ public class V2Process {
     private ArrayList<String> errorlog;
     private boolean writeDebug;
     private boolean writeBaseline;
-    private SmDebugLogger elog;
+    private boolean resampleLowRates;
+    private boolean polyphaseResampling;
+    private final ProcessingContext context;
     private String[] logstart;
     private final File V0name;
     private final String channel;
@@ -132,11 +134,26 @@ public class V2Process {
      */
     public V2Process(final V1Component v1rec, File inName, String logtime) 
                                                             throws SmException {
+        this(v1rec, inName, logtime, ProcessingContext.DEFAULT);
+    }
+    /**
+     * Constructor using the configuration parameters, steps recorder, and logs
+     * of the processing context for this record.
+     * @param v1rec the V1 component object holding the uncorrected acceleration
+     * @param inName the name of the V0 input file
+     * @param logtime the processing time
+     * @param context the processing context for this record
+     * @throws SmException if unable to access valid header or configuration file
+     * parameters
+     */
+    public V2Process(final V1Component v1rec, File inName, String logtime,
+                                ProcessingContext context) throws SmException {
         double epsilon = 0.000001;
         this.inV1 = v1rec;
+        this.context = context;
         this.lowcutadj = 0.0;
         this.highcutadj = 0.0;
-        stepRec = ProcessStepsRecorder2.INSTANCE;
+        stepRec = context.getStepsRecorder();
         this.V0name = inName;
         this.channel = inV1.getChannel();
         this.eventID = inV1.getEventID();
@@ -184,18 +201,14 @@ public class V2Process {
             throw new SmException("Real header #62, delta t, is invalid: " + 
                                                                         delta_t);
         }
-        boolean match = false;
-        dtime = delta_t * MSEC_TO_SEC;    
-        samplerate = 1.0 / dtime;
-        for (double each : V3_SAMPLING_RATES) {
-            if (Math.abs(each - samplerate) < epsilon) {
-                match = true;
-            }
-        }
-        if (!match) {
+        //any sampling rate can be processed, the spectra coefficients are
+        //computed for rates without a coefficient table
+        if (delta_t < epsilon) {
             throw new SmException("Real header #62, delta t value, " + 
                                         delta_t + " is out of expected range");
         }
+        dtime = delta_t * MSEC_TO_SEC;    
+        samplerate = 1.0 / dtime;
         //Get the earthquake magnitude from the real header array.
         this.mmag = inV1.getRealHeaderValue(MOMENT_MAGNITUDE);
         this.lmag = inV1.getRealHeaderValue(LOCAL_MAGNITUDE);
@@ -242,7 +255,7 @@ public class V2Process {
         //perform first QA check on velocity copy, check first and last sections of
         //velocity array - should be close to 0.0 with tolerances.  If not,
         //perform adaptive baseline correction.
-        qcchecker = new QCcheck();
+        qcchecker = new QCcheck(context);
         if (!qcchecker.validateQCvalues()){
             throw new SmException("Error extracting numeric values from configuration file");
         }
@@ -325,10 +338,11 @@ public class V2Process {
      */
     private void initializeForProcessing() throws SmException {
         this.errorlog = new ArrayList<>();
-        this.elog = SmDebugLogger.INSTANCE;
-        ConfigReader config = ConfigReader.INSTANCE;
+        ConfigReader config = context.getConfig();
         this.writeDebug = false;
         this.writeBaseline = false;
+        this.resampleLowRates = true;
+        this.polyphaseResampling = false;
         this.QCvelinitial = 0.0;
         this.QCvelresidual = 0.0;
         this.QCdisresidual = 0.0;
@@ -390,6 +404,13 @@ public class V2Process {
         this.writeBaseline = (baselineon == null) ? false : 
                                     baselineon.equalsIgnoreCase(BASELINE_WRITE_ON);
         
+        String resampleon = config.getConfigValue(RESAMPLE_LOW_RATES);
+        this.resampleLowRates = (resampleon == null) ? true : 
+                                !resampleon.equalsIgnoreCase(RESAMPLE_LOW_RATES_OFF);
+        String resamplemethod = config.getConfigValue(RESAMPLE_METHOD);
+        this.polyphaseResampling = (resamplemethod != null) &&
+                        resamplemethod.equalsIgnoreCase(RESAMPLE_METHOD_POLYPHASE);
+        
         updateThresholds();
     }
     /**
@@ -436,12 +457,21 @@ public class V2Process {
             throw new SmException("V1 file units are unsupported for processing");
         }
         //check if the sample rate is below the threshold and if it is, resample
-        //to at least 200 sps
-        Resampling resamp = new Resampling();
-        needresampling = resamp.needsResampling((int)samplerate);
+        //to at least 200 sps, unless turned off in the configuration file
+        Resampling resamp = new Resampling(polyphaseResampling);
+        int sps = (int)Math.round(samplerate);
+        needresampling = resampleLowRates && resamp.needsResampling(sps);
         if (needresampling) {
-            double[] accresamp = resamp.resampleArray(accraw, (int)samplerate);
-            samplerate = resamp.getNewSamplingRate();
+            double[] accresamp = resamp.resampleArray(accraw, sps);
+            if (resamp.getPolyphaseUsed() && !polyphaseResampling) {
+                errorlog.add(String.format("Resampling factor %d is not a power of 2, "
+                        + "resampled with the polyphase filter instead of the FFT",
+                        resamp.getFactor()));
+            }
+            //the factor comes from the rounded rate, but the new rate is the
+            //true rate times the factor, so rates that are not whole numbers
+            //keep the time per sample of the resampled data
+            samplerate = samplerate * resamp.getFactor();
             dtime = 1.0 / samplerate;
             stepRec.addResampling(samplerate);
             inArrayLength = accresamp.length;
@@ -467,10 +497,10 @@ public class V2Process {
      * @throws IOException if unable to write to file
      */
     private void writeOutErrorDebug() throws IOException {
-        elog.writeToLog(logstart, LogType.DEBUG);
+        context.writeToLog(logstart, LogType.DEBUG);
         String[] errorout = new String[errorlog.size()];
         errorout = errorlog.toArray(errorout);
-        elog.writeToLog(errorout, LogType.DEBUG);
+        context.writeToLog(errorout, LogType.DEBUG);
         errorlog.clear();
     }
     /**
@@ -529,8 +559,8 @@ public class V2Process {
         }
         errorlog.add(String.format("Best fit trend of order %d removed from acceleration", trendRemovalOrder));
         if (writeBaseline) {
-            elog.writeOutArray(velocity, V0name.getName() + "_" + channel + "_VelAfterTrendRemovedFromAcc.txt");
-            elog.writeOutArray(accel, V0name.getName() + "_" + channel + "_BestFitTrendRemovedAcc.txt");                
+            context.writeOutArray(velocity, V0name.getName() + "_" + channel + "_VelAfterTrendRemovedFromAcc.txt");
+            context.writeOutArray(accel, V0name.getName() + "_" + channel + "_BestFitTrendRemovedAcc.txt");                
         }
     }
     /**
@@ -554,8 +584,8 @@ public class V2Process {
      */
     private void LogFilterResults() {
         if (writeDebug) {
-           elog.writeOutArray(accel, V0name.getName() + "_" + channel + "_accelAfterFiltering.txt");
-           elog.writeOutArray(paddedaccel, V0name.getName() + "_" + channel + "_paddedAccelAfterFiltering.txt");
+           context.writeOutArray(accel, V0name.getName() + "_" + channel + "_accelAfterFiltering.txt");
+           context.writeOutArray(paddedaccel, V0name.getName() + "_" + channel + "_paddedAccelAfterFiltering.txt");
         }
         if (writeDebug) {
             errorlog.add("Acceleration integrated to velocity integrated to displacement");
@@ -590,7 +620,7 @@ public class V2Process {
      */
     private double[] adaptiveCorrection() throws SmException {
         ABC2 adapt = new ABC2(dtime,velocity,accel, lowcutadj,highcutadj,numroll,
-                                                        startIndex,taperlength);
+                                                startIndex,taperlength,context);
         procStatus = adapt.findFit();
         basetype = BaselineType.ABC;
         int solution = adapt.getSolution();
@@ -609,8 +639,8 @@ public class V2Process {
         initialVel = velocity[0];
         initialDis = displace[0];
         if (writeBaseline) { 
-            elog.writeOutArray(baseline, (V0name.getName() + "_" + channel + "_baseline.txt"));
-            elog.writeOutArray(derivbaseline, (V0name.getName() + "_" + channel + "_derivbaseline.txt"));
+            context.writeOutArray(baseline, (V0name.getName() + "_" + channel + "_baseline.txt"));
+            context.writeOutArray(derivbaseline, (V0name.getName() + "_" + channel + "_derivbaseline.txt"));
         } 
         return goodrun;
     }
@@ -734,7 +764,7 @@ public class V2Process {
                 data.add(String.format("%d",ABCwinrank));
             }
         }
-        elog.writeToCSV(data, headerline, "ParameterLog.csv");
+        context.writeToCSV(data, headerline, "ParameterLog.csv");
         data.clear();
     }
     /**
@@ -19,18 +19,25 @@ import COSMOSformat.V2Component;
 import static SmConstants.VFileConstants.CMSQSECT;
 import static SmConstants.VFileConstants.DELTA_T;
 import static SmConstants.VFileConstants.MSEC_TO_SEC;
-import static SmConstants.VFileConstants.NUM_T_PERIODS;
+import static SmConstants.VFileConstants.SPECTRA_ENGINE_LANEGROUP;
+import SmConstants.VFileConstants.SpectraEngine;
+import static SmConstants.VFileConstants.MAX_V3_DAMPINGS;
 import static SmConstants.VFileConstants.V3_DAMPING_VALUES;
 import SmException.FormatException;
 import SmException.SmException;
-import SmUtilities.SmDebugLogger;
+import SmUtilities.ProcessingContext;
+import static SmUtilities.SmConfigConstants.SPECTRA_ENGINE;
+import static SmUtilities.SmConfigConstants.V3_SPECTRA_DAMPINGS;
+import static SmUtilities.SmConfigConstants.V3_SPECTRA_PERIODS;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 /**
  * The V3Process class executes the steps necessary to generate a V3 product file
  * from a V2 component object. It calculates the FFT of the corrected acceleration
  * and extracts the values at the periods of interest, and calculates the spectra
- * at each damping value.
+ * at each damping value.  The periods and damping values are the standard ones
+ * unless other lists are given in the configuration file.
  * @author jmjones
  */
 public class V3Process {
@@ -38,6 +45,8 @@ public class V3Process {
     private ArrayList<double[]> V3Data;
     private double[][][] spectra;
     private double[] T_periods;
+    private double[] dampings;
+    private boolean standardPeriods;
     private double dtime;
     private double samplerate;
     private final double noRealVal;
@@ -46,7 +55,7 @@ public class V3Process {
     private double peakIndex;
     private double peakTime;
     private SpectraResources spec;
-    private SmDebugLogger elog;
+    private final ProcessingContext context;
     private boolean writeArrays;
     private double Sa_0p2;
     private double Sa_0p3;
@@ -54,6 +63,7 @@ public class V3Process {
     private double Sa_3p0;
     private boolean strongMotion;
     private double housnerIntensity;
+    private SpectraEngine engine;
     /**
      * The constructor reads in the coefficient files and the period file and
      * stores them for use during the calculations.
@@ -65,20 +75,42 @@ public class V3Process {
      */
     public V3Process(final V2Component v2acc, V2Process v2val) throws IOException, SmException, 
                                                                 FormatException {
-
-        this.elog = SmDebugLogger.INSTANCE;
+        this(v2acc, v2val, ProcessingContext.DEFAULT);
+    }
+    /**
+     * The constructor for V3Process using the processing context for this
+     * record for any debug output.
+     * @param v2acc the V2 component with corrected acceleration
+     * @param v2val the V2 process object holding the padded acceleration array
+     * @param context the processing context for this record
+     * @throws IOException if unable to read in the coefficient files
+     * @throws SmException if the sampling interval in the real header is invalid
+     * @throws FormatException if unable to parse the values in the coefficient files
+     */
+    public V3Process(final V2Component v2acc, V2Process v2val, ProcessingContext context) 
+                                    throws IOException, SmException, FormatException {
+        this.context = context;
         writeArrays = false;
         this.paccel = v2val.getPaddedAccel();
         this.strongMotion = v2val.getStrongMotion();
-        this.housnerIntensity = 0.0;
-        this.peakVal = 0.0;
-        this.peakIndex = 0;
-        this.Sa_0p2 = 0.0;
-        this.Sa_0p3 = 0.0;
-        this.Sa_1p0 = 0.0;
-        this.Sa_3p0 = 0.0;
-        this.V3Data = new ArrayList<>();
         this.noRealVal = v2acc.getNoRealVal();
+        //The peak Sa values and the Housner intensity come from the 5% damping
+        //spectra, and stay at the no-data value if 0.05 is not in the damping
+        //list.  The Sa values stay at the no-data value if their periods are
+        //not in the period list.
+        this.housnerIntensity = noRealVal;
+        this.peakVal = noRealVal;
+        this.peakIndex = noRealVal;
+        this.peakTime = noRealVal;
+        this.Sa_0p2 = noRealVal;
+        this.Sa_0p3 = noRealVal;
+        this.Sa_1p0 = noRealVal;
+        this.Sa_3p0 = noRealVal;
+        this.V3Data = new ArrayList<>();
+        String engineName = context.getConfig().getConfigValue(SPECTRA_ENGINE);
+        this.engine = ((engineName != null) && 
+                    engineName.equalsIgnoreCase(SPECTRA_ENGINE_LANEGROUP)) ?
+                            SpectraEngine.LANEGROUP : SpectraEngine.SCALAR;
         double delta_t = v2acc.getRealHeaderValue(DELTA_T);
         if ((Math.abs(delta_t - noRealVal) < EPSILON) || (delta_t < 0.0)){
             throw new SmException("Real header #62, delta t, is invalid: " + 
@@ -88,18 +120,66 @@ public class V3Process {
         //sampling interval.
         dtime = delta_t * MSEC_TO_SEC;  
         samplerate = 1.0 / dtime;
-        spectra = new double[V3_DAMPING_VALUES.length][][];
         spec = new SpectraResources();
-        T_periods = spec.getTperiods();
-        for (int i = 0; i < V3_DAMPING_VALUES.length; i++) {
-            spectra[i] = spec.getCoefArray(samplerate, V3_DAMPING_VALUES[i]);
+        double[] standard = spec.getTperiods();
+        String periodlist = context.getConfig().getConfigValue(V3_SPECTRA_PERIODS);
+        T_periods = (periodlist == null) ? standard : parseValueList(periodlist);
+        //The fft extraction steps through the periods in order
+        Arrays.sort(T_periods);
+        standardPeriods = Arrays.equals(T_periods, standard);
+        String damplist = context.getConfig().getConfigValue(V3_SPECTRA_DAMPINGS);
+        dampings = (damplist == null) ? V3_DAMPING_VALUES.clone() : 
+                                                    parseValueList(damplist);
+        checkDampingValues(dampings);
+        spectra = new double[dampings.length][][];
+        for (int i = 0; i < dampings.length; i++) {
+            spectra[i] = spec.getCoefArray(samplerate, dampings[i], T_periods);
         }
         //Add the T-periods to the V3 data list
         V3Data.add(T_periods);
     }
+    /**
+     * Parses a list of period or damping values from the configuration file,
+     * separated by spaces
+     * @param list the list of values as text
+     * @return the values
+     * @throws FormatException if the list is empty or a value is not a number
+     */
+    private static double[] parseValueList( String list ) throws FormatException {
+        String[] vals = list.trim().split("\\s+");
+        double[] outvals = new double[vals.length];
+        try {
+            for (int i = 0; i < vals.length; i++) {
+                outvals[i] = Double.parseDouble(vals[i]);
+            }
+        } catch (NumberFormatException err) {
+            throw new FormatException("Unable to parse V3 spectra values in configuration file: " 
+                                                                        + list);
+        }
+        return outvals;
+    }
+    /**
+     * Checks that the damping values fit on the V3 damping values line, which
+     * holds at most MAX_V3_DAMPINGS values with 2 decimal places each
+     * @param values the damping values
+     * @throws FormatException if there are too many values or a value has
+     * more than 2 decimal places
+     */
+    private void checkDampingValues( double[] values ) throws FormatException {
+        if (values.length > MAX_V3_DAMPINGS) {
+            throw new FormatException("Too many V3 spectra damping values in "
+                    + "configuration file, the limit is " + MAX_V3_DAMPINGS);
+        }
+        for (double each : values) {
+            if (Math.abs(each * 100.0 - Math.rint(each * 100.0)) > EPSILON) {
+                throw new FormatException("V3 spectra damping value in "
+                    + "configuration file has more than 2 decimal places: " + each);
+            }
+        }
+    }
     /**
      * Performs the V3 data processing of calculating the fft, extracting the
-     * values at the 91 periods, and calculating the spectra for each damping value
+     * values at the periods, and calculating the spectra for each damping value
      * and data type.
      */
     public void processV3Data() {        
@@ -121,7 +201,7 @@ public class V3Process {
             accnorm[i] = accspec[i] * dtime;
         }
         if (writeArrays) {
-            elog.writeOutArray(accnorm, "V3accelFFTnorm.txt");
+            context.writeOutArray(accnorm, "V3accelFFTnorm.txt");
         } 
         //Now use 3-point smoothing to smooth out the frequency response
         double[] accsmooth = ArrayOps.perform3PtSmoothing(accnorm);
@@ -132,12 +212,13 @@ public class V3Process {
         accsmooth[acclen-1] = 0.5 * accsmooth[acclen-1] + 0.5 * accsmooth[acclen-2];
         
         if (writeArrays) {
-            elog.writeOutArray(accsmooth, "V3accsmoothFFT.txt");
+            context.writeOutArray(accsmooth, "V3accsmoothFFT.txt");
         } 
         //Select magnitudes for the given T values only.  (freq = 1/T)
-        double[] accfftvals = new double[NUM_T_PERIODS];
+        int numperiods = T_periods.length;
+        double[] accfftvals = new double[numperiods];
         int ctr = 0;
-        for (int f = NUM_T_PERIODS-1; f >=0; f--) {
+        for (int f = numperiods-1; f >=0; f--) {
             for (int arr = ctr; arr < acclen; arr++) {
                 if ((arr*delta_f > (1.0/T_periods[f])) || 
                         (Math.abs(arr*delta_f - (1.0/T_periods[f])) < EPSILON)) {
@@ -160,51 +241,35 @@ public class V3Process {
         }
         V3Data.add(accfftvals);
         
-        //Calculate the spectra for each damping value
-        double omega;
-        int len = paccel.length;
+        //Calculate the spectra for each damping value.  The peak relative
+        //displacement (cm) for each period is found without keeping the
+        //displacement history.  The periods are computed in parallel if the
+        //record is being processed on a fork-join pool.  The engine from the
+        //configuration file runs either one period or a lane group of periods
+        //at a time.
+        double[][] sdall = new double[dampings.length][numperiods];
+        double[][] svall = new double[dampings.length][numperiods];
+        double[][] saall = new double[dampings.length][numperiods];
+        ResponseSpectrum.computeSpectra(paccel, spectra, T_periods, sdall, svall,
+                                            saall, context.getPool(), engine);
         double[] sd;
         double[] sv;
         double[] sa;
-        double coef_a; double coef_b;
-        double coef_c; double coef_d;
-        double coef_e; double coef_f;
         
-        for (int d = 0; d < V3_DAMPING_VALUES.length; d++) {
-            sd = new double[NUM_T_PERIODS];
-            sv = new double[NUM_T_PERIODS];
-            sa = new double[NUM_T_PERIODS];
-
-            for (int p = 0; p < T_periods.length; p++) {
-                coef_a = spectra[d][p][0];
-                coef_b = spectra[d][p][1];
-                coef_c = spectra[d][p][2];
-                coef_d = spectra[d][p][3];
-                coef_e = spectra[d][p][4];
-                coef_f = spectra[d][p][5];
-                omega = (2.0 * Math.PI) / T_periods[p];
-                double[][] y = new double[2][len];
-                y[0][0] = 0.0;
-                y[1][0] = 0.0;
-                
-                for(int k = 1; k < len; k++) {
-                    y[0][k] = coef_a * y[0][k-1] + coef_b * y[1][k-1] + 
-                                                              coef_e * paccel[k];
-                    y[1][k] = coef_c * y[0][k-1] + coef_d * y[1][k-1] + 
-                                                              coef_f * paccel[k];
-                }
-                //Get the relative displacement (cm)
-                double[] disp = y[0];
-                ArrayStats stat = new ArrayStats(disp);
-                sd[p] = Math.abs(stat.getPeakVal());
-                sv[p] = sd[p] * omega;
-                sa[p] = sv[p] * omega;
-            }
+        for (int d = 0; d < dampings.length; d++) {
+            sd = sdall[d];
+            sv = svall[d];
+            sa = saall[d];
             //get the max value for 5% damping
-            if (Math.abs(V3_DAMPING_VALUES[d] - 0.05) < EPSILON) {
-                if (strongMotion) {
-                    ComputedParams hi = new ComputedParams();
-                    housnerIntensity = hi.calculateHousnerIntensity(sv, T_periods);
+            if (Math.abs(dampings[d] - 0.05) < EPSILON) {
+                //the Housner intensity integrates over the standard periods,
+                //so it stays at the no-data value for any other period list
+                if (standardPeriods) {
+                    housnerIntensity = 0.0;
+                    if (strongMotion) {
+                        ComputedParams hi = new ComputedParams();
+                        housnerIntensity = hi.calculateHousnerIntensity(sv, T_periods);
+                    }
                 }
                 ArrayStats stat = new ArrayStats( sa );
                 peakVal = stat.getPeakVal();
@@ -230,8 +295,15 @@ public class V3Process {
         }
     }
     /**
-     * Getter for one of the calculated arrays, the order of the list: the fft array,
-     * the 91 periods, sd, sv, sa repeated for each of the 5 damping values. 
+     * Getter for the damping values at which the spectra are computed
+     * @return the damping values
+     */
+    public double[] getDampingValues() {
+        return dampings;
+    }
+    /**
+     * Getter for one of the calculated arrays, the order of the list: the periods,
+     * the fft array, sd, sv, sa repeated for each damping value. 
      * @param arrnum the number of the array to retrieve
      * @return the V3 array
      */
@@ -247,21 +319,21 @@ public class V3Process {
     }
     /**
      * Getter for the maximum value of the Sa spectrum (real header #74)
-     * @return the max value
+     * @return the max value, or the no-data value without 5% damping spectra
      */
     public double getPeakVal() {
         return peakVal;
     }
     /**
      * Getter for the period at which maximum Sa occurs (real header #75)
-     * @return the max period
+     * @return the max period, or the no-data value without 5% damping spectra
      */
     public double getPeakPeriod() {
         return peakIndex;
     }
     /**
      * Getter for the time in the record at which the maximum occurs (real header #76)
-     * @return the peak time
+     * @return the peak time, or the no-data value without 5% damping spectra
      */
     public double getPeakTime() {
         return peakTime;
@@ -311,7 +383,8 @@ public class V3Process {
     }
     /**
      * Getter for the Housner Intensity value for the real header
-     * @return the Housner Intensity
+     * @return the Housner Intensity, or the no-data value without 5% damping
+     * spectra or with a period list other than the standard periods
      */
     public double getHousnerIntensity() {
         return housnerIntensity;
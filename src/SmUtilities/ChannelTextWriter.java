@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Name: Java class ChannelTextWriter.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package SmUtilities;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class writes text out to a file through a file channel, one line at a
+ * time, so that a product file can be written out as it is formatted instead
+ * of being built up in memory first.  The text is collected in a fixed-size
+ * character buffer and encoded in UTF-8 into a byte buffer that is written to
+ * the channel each time it fills up.  The file contents are the same as from
+ * TextFileWriter.writeOutToFile, with the system line separator after each
+ * line.  The writer should be closed to write out the last of the text,
+ * normally with a try-with-resources block.
+ * @author jmjones
+ */
+public class ChannelTextWriter implements Closeable {
+    private static final int BUFFER_SIZE = 65536;
+    private final FileChannel channel;
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars;
+    private final ByteBuffer bytes;
+    private final String newline;
+    private boolean closed;
+    /**
+     * Constructor opens the file for writing, creating it if it does not
+     * exist and replacing any current contents
+     * @param outfilename the output full path filename
+     * @throws IOException if unable to open the file
+     */
+    public ChannelTextWriter( Path outfilename ) throws IOException {
+        this.channel = FileChannel.open(outfilename, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.encoder = StandardCharsets.UTF_8.newEncoder();
+        this.chars = CharBuffer.allocate(BUFFER_SIZE);
+        this.bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        this.newline = System.lineSeparator();
+        this.closed = false;
+    }
+    /**
+     * Writes out a line of text followed by the line separator
+     * @param line the text to write
+     * @throws IOException if unable to write to the file
+     */
+    public void writeLine( String line ) throws IOException {
+        write(line);
+        write(newline);
+    }
+    /**
+     * Writes out each line of text in the array, each followed by the line
+     * separator
+     * @param lines the text lines to write
+     * @throws IOException if unable to write to the file
+     */
+    public void writeLines( String[] lines ) throws IOException {
+        for (String line : lines) {
+            writeLine(line);
+        }
+    }
+    /**
+     * Writes out a line of text held in a character array, followed by the
+     * line separator
+     * @param text the character array holding the line
+     * @param offset the index of the first char of the line
+     * @param length the number of chars in the line
+     * @throws IOException if unable to write to the file
+     */
+    public void writeLine( char[] text, int offset, int length ) throws IOException {
+        int next = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            int count = Math.min(remaining, chars.remaining());
+            chars.put(text, next, count);
+            next += count;
+            remaining -= count;
+            if (!chars.hasRemaining()) {
+                encodeChars(false);
+            }
+        }
+        write(newline);
+    }
+    /**
+     * Adds the text to the character buffer, encoding the buffer each time
+     * it fills up
+     * @param text the text to add
+     * @throws IOException if unable to write to the file
+     */
+    private void write( String text ) throws IOException {
+        int next = 0;
+        int length = text.length();
+        while (next < length) {
+            int count = Math.min(length - next, chars.remaining());
+            chars.put(text, next, next + count);
+            next += count;
+            if (!chars.hasRemaining()) {
+                encodeChars(false);
+            }
+        }
+    }
+    /**
+     * Encodes the characters in the buffer into bytes, writing the byte buffer
+     * out to the channel whenever it is full.  A high surrogate at the end of
+     * the buffer is kept until its pair is added.
+     * @param endOfInput true if no more text will be added
+     * @throws IOException if unable to write to the file or to encode the text
+     */
+    private void encodeChars( boolean endOfInput ) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                writeBytes();
+            } else {
+                if (result.isError()) {
+                    result.throwException();
+                }
+                break;
+            }
+        }
+        chars.compact();
+    }
+    /**
+     * Writes the contents of the byte buffer out to the channel
+     * @throws IOException if unable to write to the file
+     */
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+    /**
+     * Writes out any text left in the buffers and closes the file
+     * @throws IOException if unable to write to the file
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            encodeChars(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                writeBytes();
+            }
+            writeBytes();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -14,6 +14,7 @@
 
 package SmUtilities;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -37,6 +38,24 @@ public class ConfigReader {
     private ConfigReader() {
         contents = new HashMap<>();
     }
+/**
+ * Constructor for a read-only copy of another configuration reader, used to
+ * create a snapshot of the configuration parameters.
+ * @param source the configuration reader to copy
+ */
+    private ConfigReader(ConfigReader source) {
+        contents = Collections.unmodifiableMap(new HashMap<>(source.contents));
+    }
+/**
+ * Creates a read-only snapshot of the current key-value pairs.  The snapshot
+ * is not affected by later changes to this reader, and can be shared by records
+ * being processed at the same time.  Calling setConfigValue on the snapshot
+ * throws an UnsupportedOperationException.
+ * @return a read-only copy of this configuration reader
+ */
+    public ConfigReader getSnapshot() {
+        return new ConfigReader(this);
+    }
 /**
  * Getter for the value stored for the given key.
  * @param key The key associated with the key-value pair
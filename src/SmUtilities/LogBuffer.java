@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Name: Java class LogBuffer.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package SmUtilities;
+
+import SmConstants.VFileConstants.LogType;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * This class holds the log entries made while processing one input file or one
+ * record, so that they can be written out together once the file or record has
+ * been completed.  It is used by the batch driver when several input files are
+ * processed at the same time, and by the processing context for each record.
+ * A buffer is attached to the thread processing the file, and while
+ * it is attached the PrismLogger and SmDebugLogger add their entries to the
+ * buffer instead of writing to the log files.  The entries are then written
+ * out in the order they were made with the writeToLogs method.
+ * @author jmjones
+ */
+public class LogBuffer {
+    private static final ThreadLocal<LogBuffer> current = new ThreadLocal<>();
+    private final ArrayList<logentry> entries;
+    /**
+     * Constructor for the log buffer creates an empty list of entries.
+     */
+    public LogBuffer() {
+        this.entries = new ArrayList<>();
+    }
+    /**
+     * Getter for the log buffer attached to the current thread
+     * @return the attached log buffer, or null if no buffer is attached
+     */
+    public static LogBuffer getCurrent() {
+        return current.get();
+    }
+    /**
+     * Attaches this buffer to the current thread, so all log entries made
+     * on this thread are held in the buffer.
+     */
+    public void attach() {
+        current.set(this);
+    }
+    /**
+     * Removes the buffer from the current thread, so log entries are again
+     * written directly to the log files.
+     */
+    public void detach() {
+        current.remove();
+    }
+    /**
+     * Adds a list of messages for the prism log to the buffer
+     * @param msg the list of messages for the log
+     */
+    public void addPrismLog( String[] msg ) {
+        entries.add(new logentry(null, msg, null, null));
+    }
+    /**
+     * Adds a list of messages for the debug or trouble log to the buffer
+     * @param msg the list of messages for the log
+     * @param logger the type of log file, either debug or trouble
+     */
+    public void addDebugLog( String[] msg, LogType logger ) {
+        entries.add(new logentry(logger, msg, null, null));
+    }
+    /**
+     * Adds a line of values for a CSV log file to the buffer
+     * @param msg a list of the parameters for one record
+     * @param headerline the column names to write out the first time
+     * @param name the name of the file
+     */
+    public void addCSV( ArrayList<String> msg, String[] headerline, String name ) {
+        String[] values = new String[msg.size()];
+        entries.add(new logentry(null, msg.toArray(values), headerline, name));
+    }
+    /**
+     * Writes out all the entries held in the buffer to their log files, in the
+     * order they were added.  If this method is called from a thread that has
+     * a different buffer attached, the entries are added to that buffer.
+     * @throws IOException if unable to write to a log file
+     */
+    public void writeToLogs() throws IOException {
+        PrismLogger log = PrismLogger.INSTANCE;
+        SmDebugLogger elog = SmDebugLogger.INSTANCE;
+        ArrayList<String> csvline;
+        for (logentry each : entries) {
+            if (each.csvname != null) {
+                csvline = new ArrayList<>();
+                for (String val : each.msg) {
+                    csvline.add(val);
+                }
+                elog.writeToCSV(csvline, each.headerline, each.csvname);
+            } else if (each.logger != null) {
+                elog.writeToLog(each.msg, each.logger);
+            } else {
+                log.writeToLog(each.msg);
+            }
+        }
+        entries.clear();
+    }
+    /**
+     * This private class holds one buffered log entry.  The log it belongs to
+     * is identified by the log type for the debug and trouble logs, by the
+     * file name for CSV logs, and is the prism log if neither is set.
+     */
+    private class logentry {
+        private final LogType logger;
+        private final String[] msg;
+        private final String[] headerline;
+        private final String csvname;
+
+        public logentry( LogType logger, String[] msg, String[] headerline,
+                                                            String csvname) {
+            this.logger = logger;
+            this.msg = msg;
+            this.headerline = headerline;
+            this.csvname = csvname;
+        }
+    }
+}
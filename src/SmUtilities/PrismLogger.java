@@ -61,12 +61,16 @@ public class PrismLogger {
     }
     /**
      * Writes the array of text messages out to the log file, appending to the
-     * end of the current file.
+     * end of the current file.  If a log buffer is attached to the current
+     * thread, the messages are added to the buffer instead.
      * @param msg the list of messages to be written out
      * @throws IOException if unable to write to the file
      */
     public void writeToLog( String[] msg ) throws IOException {
-        if (logReady) {
+        LogBuffer buffer = LogBuffer.getCurrent();
+        if (buffer != null) {
+            buffer.addPrismLog(msg);
+        } else if (logReady) {
             TextFileWriter textfile = new TextFileWriter( logfile, msg);
             textfile.appendToFile();
         }
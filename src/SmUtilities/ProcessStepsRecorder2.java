@@ -25,9 +25,12 @@ import java.util.ArrayList;
  * comments section of the product files. In addition to event onset time, 
  * resampling rate (if any) and pre-
  * event mean, this also records the baseline correction functions applied to
- * the trace, identifying them by start time, stop time, and function.  This class
- * is a singleton with a private constructor and is instantiated with
+ * the trace, identifying them by start time, stop time, and function.  The
+ * shared recorder is accessed with
  * ProcessStepsRecorder stepRec = ProcessStepsRecorder.INSTANCE.
+ * Records processed at the same time each use their own recorder, which is
+ * created with the public constructor and held in the ProcessingContext for
+ * the record.
  * @author jmjones
  */
 public class ProcessStepsRecorder2 {
@@ -38,9 +41,9 @@ public class ProcessStepsRecorder2 {
     private ArrayList<blcorrect> blist;
     public final static ProcessStepsRecorder2 INSTANCE = new ProcessStepsRecorder2();
     /**
-     * Private constructor for the singleton class.
+     * Constructor for a new recorder with no steps recorded.
      */
-    private ProcessStepsRecorder2(){
+    public ProcessStepsRecorder2(){
         this.eventOnsetTime = 0.0;
         this.ctype = CorrectionType.AUTO;
         this.needsResampling = false;
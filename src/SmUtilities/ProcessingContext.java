@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Name: Java class ProcessingContext.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package SmUtilities;
+
+import SmConstants.VFileConstants.LogType;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class holds the state used while processing a single record: the
+ * configuration parameters, the recorder for the V2 processing steps, and a
+ * buffer for the debug log entries.  Each record processed by the queue gets
+ * its own context with a read-only snapshot of the configuration, its own steps
+ * recorder and its own log buffer, so records can be processed at the same time
+ * in one program run.  The log buffer is written out to the log files with
+ * writeLogs once the record is complete.  A record context can also carry the
+ * fork-join pool the record is processed on, so that the response spectra of
+ * the record can be computed in parallel on the same pool.
+ * <p>
+ * The DEFAULT context uses the shared ConfigReader and ProcessStepsRecorder2
+ * instances, writes directly to the debug logger, and has no pool.  It is used by the
+ * processing classes when they are created without a context.
+ * @author jmjones
+ */
+public class ProcessingContext {
+    private final ConfigReader config;
+    private final ProcessStepsRecorder2 stepRec;
+    private final LogBuffer logBuffer;
+    private final ForkJoinPool pool;
+    public final static ProcessingContext DEFAULT = new ProcessingContext(
+            ConfigReader.INSTANCE, ProcessStepsRecorder2.INSTANCE, null, null);
+    /**
+     * Constructor for a record context, with a new steps recorder and log buffer.
+     * @param config the configuration parameters for the record, normally a
+     * snapshot taken with ConfigReader.getSnapshot
+     */
+    public ProcessingContext( ConfigReader config ) {
+        this(config, new ProcessStepsRecorder2(), new LogBuffer(), null);
+    }
+    /**
+     * Constructor for a record context, with a new steps recorder and log
+     * buffer, and the fork-join pool for parallel work within the record.
+     * @param config the configuration parameters for the record, normally a
+     * snapshot taken with ConfigReader.getSnapshot
+     * @param pool the fork-join pool for the record, or null to do all the
+     * processing of the record on the calling thread
+     */
+    public ProcessingContext( ConfigReader config, ForkJoinPool pool ) {
+        this(config, new ProcessStepsRecorder2(), new LogBuffer(), pool);
+    }
+    /**
+     * Private constructor that sets each of the fields
+     * @param config the configuration parameters
+     * @param stepRec the processing steps recorder
+     * @param logBuffer the log buffer, or null to write directly to the logs
+     * @param pool the fork-join pool, or null
+     */
+    private ProcessingContext( ConfigReader config, ProcessStepsRecorder2 stepRec,
+                                        LogBuffer logBuffer, ForkJoinPool pool ) {
+        this.config = config;
+        this.stepRec = stepRec;
+        this.logBuffer = logBuffer;
+        this.pool = pool;
+    }
+    /**
+     * Getter for the configuration parameters
+     * @return the configuration reader for this context
+     */
+    public ConfigReader getConfig() {
+        return this.config;
+    }
+    /**
+     * Getter for the processing steps recorder
+     * @return the steps recorder for this context
+     */
+    public ProcessStepsRecorder2 getStepsRecorder() {
+        return this.stepRec;
+    }
+    /**
+     * Getter for the fork-join pool for parallel work within the record
+     * @return the fork-join pool, or null if the record is processed on the
+     * calling thread only
+     */
+    public ForkJoinPool getPool() {
+        return this.pool;
+    }
+    /**
+     * Adds the array of text messages to the debug or trouble log.  For a
+     * record context the messages are held in the log buffer until writeLogs
+     * is called.
+     * @param msg the list of messages to be written to the log
+     * @param logger the type of log file, either debug or trouble
+     * @throws IOException if unable to write to the file
+     */
+    public void writeToLog( String[] msg, LogType logger ) throws IOException {
+        if (logBuffer != null) {
+            logBuffer.addDebugLog(msg, logger);
+        } else {
+            SmDebugLogger.INSTANCE.writeToLog(msg, logger);
+        }
+    }
+    /**
+     * Adds a line of values to a CSV log file.  For a record context the values
+     * are held in the log buffer until writeLogs is called.
+     * @param msg a list of the parameters for one record
+     * @param headerline the column names to write out the first time
+     * @param name the name of the file
+     * @throws IOException if unable to write to the file
+     */
+    public void writeToCSV( ArrayList<String> msg, String[] headerline,
+                                            String name ) throws IOException {
+        if (logBuffer != null) {
+            logBuffer.addCSV(msg, headerline, name);
+        } else {
+            SmDebugLogger.INSTANCE.writeToCSV(msg, headerline, name);
+        }
+    }
+    /**
+     * Writes out a data array as a text file for debugging.  Each array goes
+     * to its own file, so this is not held in the log buffer.
+     * @param array the data array to be written out
+     * @param name file name to be used for the file
+     */
+    public void writeOutArray( double[] array, String name ) {
+        SmDebugLogger.INSTANCE.writeOutArray(array, name);
+    }
+    /**
+     * Writes out any log entries held in the log buffer for this context.
+     * @throws IOException if unable to write to a log file
+     */
+    public void writeLogs() throws IOException {
+        if (logBuffer != null) {
+            logBuffer.writeToLogs();
+        }
+    }
+}
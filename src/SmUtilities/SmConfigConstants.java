@@ -55,6 +55,17 @@ public class SmConfigConstants {
     public static final String FIRST_POLY_ORDER_UPPER  = "PRISM/AdaptiveBaselineCorrection/FirstPolyOrder/UpperLimit";
     public static final String THIRD_POLY_ORDER_LOWER = "PRISM/AdaptiveBaselineCorrection/ThirdPolyOrder/LowerLimit";
     public static final String THIRD_POLY_ORDER_UPPER = "PRISM/AdaptiveBaselineCorrection/ThirdPolyOrder/UpperLimit";
+    public static final String ABC_CANDIDATE_SEARCH = "PRISM/AdaptiveBaselineCorrection/CandidateSearch";
     
     public static final String DIFFERENTIATION_ORDER = "PRISM/DifferentiationOrder";
+
+    public static final String PROCESSING_THREADS = "PRISM/ProcessingThreads";
+    public static final String WATCH_INPUT_FOLDER = "PRISM/WatchInputFolder";
+    public static final String PIPELINE_QUEUE_SIZE = "PRISM/PipelineQueueSize";
+    public static final String BINARY_SIDECAR = "PRISM/BinarySidecarOutput";
+    public static final String SPECTRA_ENGINE = "PRISM/SpectraEngine";
+    public static final String RESAMPLE_LOW_RATES = "PRISM/ResampleLowSampleRates";
+    public static final String RESAMPLE_METHOD = "PRISM/ResampleMethod";
+    public static final String V3_SPECTRA_PERIODS = "PRISM/V3SpectraParameters/SpectraPeriods";
+    public static final String V3_SPECTRA_DAMPINGS = "PRISM/V3SpectraParameters/SpectraDampingValues";
 }
@@ -75,13 +75,17 @@ public class SmDebugLogger {
     }
     /**
      * Writes the array of text messages out to the log file, appending to the
-     * end of the current file.
+     * end of the current file.  If a log buffer is attached to the current
+     * thread, the messages are added to the buffer instead.
      * @param msg the list of messages to be written to the log
      * @param logger the type of log file, either debug or trouble
      * @throws IOException if unable to write to the file
      */
     public void writeToLog( String[] msg, LogType logger ) throws IOException {
-        if (logReady) {
+        LogBuffer buffer = LogBuffer.getCurrent();
+        if (buffer != null) {
+            buffer.addDebugLog(msg, logger);
+        } else if (logReady) {
             if (logger == LogType.DEBUG) {
                 TextFileWriter textfile = new TextFileWriter( logfile, msg);
                 textfile.appendToFile();
@@ -110,7 +114,8 @@ public class SmDebugLogger {
     }
     /**
      * Writes the list of V2 processing parameters out as a CSV file, with the
-     * first line containing the column names
+     * first line containing the column names.  If a log buffer is attached to
+     * the current thread, the parameters are added to the buffer instead.
      * @param msg a list of the parameters for one record
      * @param headerline the column names to write out the first time
      * @param name the name of the file
@@ -118,6 +123,11 @@ public class SmDebugLogger {
      */
     public void writeToCSV( ArrayList<String> msg, String[] headerline, 
                                             String name ) throws IOException {
+        LogBuffer buffer = LogBuffer.getCurrent();
+        if (buffer != null) {
+            buffer.addCSV(msg, headerline, name);
+            return;
+        }
         String[] values;
         StringBuilder sbheader = new StringBuilder();
         StringBuilder sbname = new StringBuilder();
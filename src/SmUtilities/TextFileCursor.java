@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Name: Java class TextFileCursor.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package SmUtilities;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * This class holds the contents of a text file in a single character buffer,
+ * with the start and end of each line recorded as offsets into the buffer.  It
+ * is used in place of an array of strings when reading in large COSMOS files,
+ * so that no string is created for a line until one is asked for.  The header
+ * and comment lines are picked up as strings with getLine, and the numeric
+ * sections are read directly from the buffer using the line offsets.  Lines
+ * are split in the same way as BufferedReader.readLine, at a line feed, a
+ * carriage return, or a carriage return followed by a line feed.
+ * @author jmjones
+ */
+public class TextFileCursor {
+    private final int READ_BLOCK = 65536;  //number of chars read at a time
+    private char[] text;  // the file contents
+    private int textLength;  // number of chars used in the buffer
+    private int[] lineStart;  // buffer offset of the first char of each line
+    private int[] lineEnd;  // buffer offset after the last char of each line
+    private int numLines;  // number of lines in the file
+    /**
+     * Constructor reads in the contents of the file and finds the lines.
+     * @param filename the file name to read
+     * @throws IOException if unable to read the file or the file is empty
+     */
+    public TextFileCursor( File filename ) throws IOException {
+        if (!Files.isReadable(filename.toPath())) {
+            throw new IOException("Unable to read file " + filename);
+        }
+        //the file length in bytes is enough to hold the decoded chars, and the
+        //extra char lets the end of the file be read without growing the buffer
+        long size = filename.length();
+        this.text = new char[(int)Math.min(size + 1, Integer.MAX_VALUE - 8)];
+        this.textLength = 0;
+        try (Reader reader = new InputStreamReader(new FileInputStream(filename),
+                                                    Charset.defaultCharset())) {
+            int count;
+            while ((count = reader.read(text, textLength,
+                    Math.min(READ_BLOCK, text.length - textLength))) != -1) {
+                textLength += count;
+                if (textLength == text.length) {
+                    text = Arrays.copyOf(text, text.length + READ_BLOCK);
+                }
+            }
+        }
+        findLines();
+        if (numLines == 0) {
+            throw new IOException("Empty file: " + filename);
+        }
+    }
+    /**
+     * Constructor for text that has already been split into lines, such as
+     * the contents read in with TextFileReader.  The lines are copied into
+     * the buffer with a line feed after each one.
+     * @param lines the text lines
+     */
+    public TextFileCursor( String[] lines ) {
+        int total = 0;
+        for (String each : lines) {
+            total += each.length() + 1;
+        }
+        this.text = new char[total];
+        this.textLength = 0;
+        this.lineStart = new int[lines.length];
+        this.lineEnd = new int[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            int len = lines[i].length();
+            lines[i].getChars(0, len, text, textLength);
+            lineStart[i] = textLength;
+            lineEnd[i] = textLength + len;
+            textLength += len;
+            text[textLength++] = '\n';
+        }
+        this.numLines = lines.length;
+    }
+    /**
+     * This private method scans the buffer for line terminators and records
+     * the start and end offsets of each line.
+     */
+    private void findLines() {
+        int capacity = Math.max(16, textLength / 64);
+        lineStart = new int[capacity];
+        lineEnd = new int[capacity];
+        numLines = 0;
+        int start = 0;
+        int i = 0;
+        while (i < textLength) {
+            char c = text[i];
+            if ((c == '\n') || (c == '\r')) {
+                addLine(start, i);
+                i++;
+                if ((c == '\r') && (i < textLength) && (text[i] == '\n')) {
+                    i++;
+                }
+                start = i;
+            } else {
+                i++;
+            }
+        }
+        if (start < textLength) {
+            addLine(start, textLength);
+        }
+    }
+    /**
+     * Records the offsets for the next line, growing the offset arrays as needed
+     * @param start the buffer offset of the first char of the line
+     * @param end the buffer offset after the last char of the line
+     */
+    private void addLine( int start, int end ) {
+        if (numLines == lineStart.length) {
+            lineStart = Arrays.copyOf(lineStart, numLines * 2);
+            lineEnd = Arrays.copyOf(lineEnd, numLines * 2);
+        }
+        lineStart[numLines] = start;
+        lineEnd[numLines] = end;
+        numLines++;
+    }
+    /**
+     * Checks that the line number is in the file
+     * @param line the line number
+     * @throws IndexOutOfBoundsException if the line number is not in the file
+     */
+    private void checkLine( int line ) {
+        if ((line < 0) || (line >= numLines)) {
+            throw new IndexOutOfBoundsException("Line number: " + line);
+        }
+    }
+    /**
+     * Getter for the number of lines in the file
+     * @return the number of lines
+     */
+    public int getNumLines() {
+        return this.numLines;
+    }
+    /**
+     * Getter for a line of the file as a string
+     * @param line the line number, starting at 0
+     * @return the text of the line, without the line terminator
+     * @throws IndexOutOfBoundsException if the line number is not in the file
+     */
+    public String getLine( int line ) {
+        checkLine(line);
+        return new String(text, lineStart[line], lineEnd[line] - lineStart[line]);
+    }
+    /**
+     * Getter for a range of lines as an array of strings, in the same manner
+     * as Arrays.copyOfRange on an array of lines
+     * @param from the first line number, inclusive
+     * @param to the last line number, exclusive
+     * @return the text lines in the range
+     * @throws IndexOutOfBoundsException if a line number is not in the file
+     */
+    public String[] getLines( int from, int to ) {
+        String[] lines = new String[to - from];
+        for (int i = from; i < to; i++) {
+            lines[i - from] = getLine(i);
+        }
+        return lines;
+    }
+    /**
+     * Getter for the buffer offset of the first char of a line
+     * @param line the line number
+     * @return the offset into the buffer returned by getText
+     * @throws IndexOutOfBoundsException if the line number is not in the file
+     */
+    public int getLineStart( int line ) {
+        checkLine(line);
+        return lineStart[line];
+    }
+    /**
+     * Getter for the number of chars in a line, without the line terminator
+     * @param line the line number
+     * @return the line length
+     * @throws IndexOutOfBoundsException if the line number is not in the file
+     */
+    public int getLineLength( int line ) {
+        checkLine(line);
+        return lineEnd[line] - lineStart[line];
+    }
+    /**
+     * Getter for the character buffer holding the file contents.  The buffer
+     * is not copied, so it should not be changed.
+     * @return reference to the character buffer
+     */
+    public char[] getText() {
+        return this.text;
+    }
+}
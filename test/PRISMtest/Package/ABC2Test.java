@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Name: Java class ABC2Test.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package PRISMtest.Package;
+
+import static SmConstants.VFileConstants.ABC_SEARCH_FULL;
+import static SmConstants.VFileConstants.ABC_SEARCH_RANKED;
+import SmConstants.VFileConstants.V2Status;
+import SmException.SmException;
+import SmProcessing.ABC2;
+import SmProcessing.ArrayOps;
+import SmUtilities.ConfigReader;
+import SmUtilities.ProcessingContext;
+import static SmUtilities.SmConfigConstants.*;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test for ABC2, checks that the ranked candidate search selects the
+ * same iteration as the full search.  The velocity record drifts before the
+ * event onset and is zero from TAIL on, so the 3rd segment fits of each order
+ * are the same at each 2nd break point and the iterations tie in groups of 3.
+ * The acceleration is the derivative of the baseline function of the
+ * iteration with the lowest rms, so that iteration and its ties filter to
+ * zeros and get the penalty for an initial acceleration step.  The searches
+ * run on fork-join pools of different sizes are checked against the searches
+ * run on one thread.
+ * @author jmjones
+ */
+public class ABC2Test {
+    static final int LENGTH = 8000;
+    static final int ONSET = 1000;
+    static final int TAIL = 2000;
+    static final double DT = 0.01;
+    static final double LOWCUT = 0.1;
+    static final double HIGHCUT = 20.0;
+    static final int NUMROLL = 2;
+    static final double TAPER = 2.0;
+    static final double PENALTY = 1000.0;
+    //the QC limits for initial velocity, residual velocity and residual
+    //displacement: all passing, the first iterations failing the residual
+    //displacement, and all failing.  The penalized iterations have zero QC
+    //values, so the limits below zero are needed for all to fail.
+    static final String[] EASY_QC = {"10.0", "10.0", "10.0"};
+    static final String[] GOOD_QC = {"0.1", "0.1", "0.000075"};
+    static final String[] FAIL_QC = {"-1.0", "-1.0", "-1.0"};
+    static final String[] KEYS = {QC_INITIAL_VELOCITY, QC_RESIDUAL_VELOCITY,
+                    QC_RESIDUAL_DISPLACE, ABC_CANDIDATE_SEARCH, DIFFERENTIATION_ORDER,
+                    FIRST_POLY_ORDER_LOWER, FIRST_POLY_ORDER_UPPER,
+                    THIRD_POLY_ORDER_LOWER, THIRD_POLY_ORDER_UPPER};
+    ConfigReader config = ConfigReader.INSTANCE;
+    String[] saved;
+    double[] vel;
+    double[] acc;
+
+    public ABC2Test() {
+        double[] motion = new double[LENGTH];
+        for (int i = ONSET; i < LENGTH; i++) {
+            double t = (i - ONSET) * DT;
+            motion[i] = 50.0 * Math.sin(2.0 * Math.PI * 1.5 * t) * Math.exp(-t / 4.0)
+                                            + (((t > 5.0) && (t < 6.0)) ? 0.5 : 0.0);
+        }
+        vel = ArrayOps.integrate(motion, DT, 0.0);
+        for (int i = 0; i <= ONSET; i++) {
+            vel[i] += 0.05 * i * DT;
+        }
+        for (int i = TAIL; i < LENGTH; i++) {
+            vel[i] = 0.0;
+        }
+    }
+    @Before
+    public void setUp() throws SmException {
+        saved = new String[KEYS.length];
+        for (int i = 0; i < KEYS.length; i++) {
+            saved[i] = config.getConfigValue(KEYS[i]);
+        }
+        config.setConfigValue(DIFFERENTIATION_ORDER, null);
+        config.setConfigValue(FIRST_POLY_ORDER_LOWER, "1");
+        config.setConfigValue(FIRST_POLY_ORDER_UPPER, "2");
+        config.setConfigValue(THIRD_POLY_ORDER_LOWER, "1");
+        config.setConfigValue(THIRD_POLY_ORDER_UPPER, "3");
+        setQC(EASY_QC);
+        acc = new double[LENGTH];
+        ABC2 best = makeABC(ABC_SEARCH_FULL);
+        assertEquals(V2Status.GOOD, best.findFit());
+        acc = best.getBaselineDerivativeFunction().clone();
+    }
+    @After
+    public void tearDown() {
+        for (int i = 0; i < KEYS.length; i++) {
+            config.setConfigValue(KEYS[i], saved[i]);
+        }
+    }
+    private void setQC( String[] limits ) {
+        config.setConfigValue(QC_INITIAL_VELOCITY, limits[0]);
+        config.setConfigValue(QC_RESIDUAL_VELOCITY, limits[1]);
+        config.setConfigValue(QC_RESIDUAL_DISPLACE, limits[2]);
+    }
+    private ABC2 makeABC( String search ) throws SmException {
+        return makeABC(search, null);
+    }
+    private ABC2 makeABC( String search, ForkJoinPool pool ) throws SmException {
+        config.setConfigValue(ABC_CANDIDATE_SEARCH, search);
+        return new ABC2(DT, vel, acc, LOWCUT, HIGHCUT, NUMROLL, ONSET, TAPER,
+                                new ProcessingContext(config.getSnapshot(), pool));
+    }
+    //runs the search on one thread and on pools of 2 to 4 threads, which take
+    //the ranked iterations in batches of the pool size, and checks that the
+    //results are the same
+    private void checkParallel( String search, V2Status expected ) throws SmException {
+        ABC2 serial = makeABC(search);
+        assertEquals(expected, serial.findFit());
+        for (int threads = 2; threads <= 4; threads++) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                ABC2 parallel = makeABC(search, pool);
+                assertEquals(expected, parallel.findFit());
+                assertEquals(serial.getSolution(), parallel.getSolution());
+                assertArrayEquals(serial.getRanking(), parallel.getRanking());
+                ArrayList<double[]> serialparms = serial.getParameters();
+                ArrayList<double[]> parallelparms = parallel.getParameters();
+                assertEquals(serialparms.size(), parallelparms.size());
+                for (int i = 0; i < serialparms.size(); i++) {
+                    assertArrayEquals(serialparms.get(i), parallelparms.get(i), 0.0);
+                }
+                assertArrayEquals(serial.getRMSvalues(), parallel.getRMSvalues(), 0.0);
+                assertArrayEquals(serial.getBaselineFunction(),
+                                        parallel.getBaselineFunction(), 0.0);
+                assertArrayEquals(serial.getABCacceleration(),
+                                        parallel.getABCacceleration(), 0.0);
+                assertArrayEquals(serial.getABCvelocity(),
+                                        parallel.getABCvelocity(), 0.0);
+                assertArrayEquals(serial.getABCdisplacement(),
+                                        parallel.getABCdisplacement(), 0.0);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+    private boolean passes( double[] parms, String[] limits ) {
+        return (parms[0] < PENALTY) && (parms[1] >= 0.0) &&
+                    (parms[1] <= Double.parseDouble(limits[2])) &&
+                    (parms[2] <= Double.parseDouble(limits[0])) &&
+                    (parms[3] <= Double.parseDouble(limits[1]));
+    }
+    //the first iteration in ranked order that was QC checked, is not
+    //penalized and passes, or -1 if there is none
+    private int firstPassing( ABC2 abc, String[] limits ) {
+        for (int idx : abc.getRanking()) {
+            if (passes(abc.getSolutionParms(idx), limits)) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+    @Test
+    public void checkRankedGood() throws SmException {
+        setQC(GOOD_QC);
+        ABC2 full = makeABC(ABC_SEARCH_FULL);
+        V2Status fullstatus = full.findFit();
+        ABC2 ranked = makeABC(ABC_SEARCH_RANKED);
+        V2Status rankedstatus = ranked.findFit();
+        assertEquals(V2Status.GOOD, fullstatus);
+        assertEquals(fullstatus, rankedstatus);
+        int solution = full.getSolution();
+        assertEquals(solution, ranked.getSolution());
+        assertArrayEquals(full.getSolutionParms(solution),
+                                    ranked.getSolutionParms(solution), 0.0);
+        assertEquals(solution, firstPassing(full, GOOD_QC));
+        assertEquals(solution, firstPassing(ranked, GOOD_QC));
+        assertArrayEquals(full.getABCvelocity(), ranked.getABCvelocity(), 0.0);
+        assertArrayEquals(full.getABCdisplacement(), ranked.getABCdisplacement(), 0.0);
+        assertArrayEquals(full.getRMSvalues(), ranked.getRMSvalues(), 0.0);
+
+        //the lowest rms iteration is penalized, the next group of ties failed
+        //QC, and only the first of the group was checked
+        int[] order = ranked.getRanking();
+        assertEquals(PENALTY, ranked.getSolutionParms(order[0])[0], 0.0);
+        double[] lead = ranked.getSolutionParms(order[3]);
+        double[] tie = ranked.getSolutionParms(order[4]);
+        assertEquals(lead[0], tie[0], 0.0);
+        assertFalse(passes(lead, GOOD_QC));
+        assertEquals(-1.0, tie[1], 0.0);
+        assertTrue(solution != order[3]);
+    }
+    @Test
+    public void checkRankedFailQC() throws SmException {
+        setQC(FAIL_QC);
+        ABC2 full = makeABC(ABC_SEARCH_FULL);
+        V2Status fullstatus = full.findFit();
+        ABC2 ranked = makeABC(ABC_SEARCH_RANKED);
+        V2Status rankedstatus = ranked.findFit();
+        assertEquals(V2Status.FAILQC, fullstatus);
+        assertEquals(fullstatus, rankedstatus);
+        assertEquals(full.getSolution(), ranked.getSolution());
+        assertArrayEquals(full.getRanking(), ranked.getRanking());
+        ArrayList<double[]> fullparms = full.getParameters();
+        ArrayList<double[]> rankedparms = ranked.getParameters();
+        assertEquals(fullparms.size(), rankedparms.size());
+        for (int i = 0; i < fullparms.size(); i++) {
+            assertArrayEquals(fullparms.get(i), rankedparms.get(i), 0.0);
+        }
+        assertEquals(PENALTY, fullparms.get(full.getRanking()[
+                                    full.getRanking().length - 1])[0], 0.0);
+        assertArrayEquals(full.getABCvelocity(), ranked.getABCvelocity(), 0.0);
+        assertArrayEquals(full.getABCdisplacement(), ranked.getABCdisplacement(), 0.0);
+    }
+    @Test
+    public void checkParallelGood() throws SmException {
+        setQC(GOOD_QC);
+        checkParallel(ABC_SEARCH_RANKED, V2Status.GOOD);
+        checkParallel(ABC_SEARCH_FULL, V2Status.GOOD);
+    }
+    @Test
+    public void checkParallelFailQC() throws SmException {
+        setQC(FAIL_QC);
+        checkParallel(ABC_SEARCH_RANKED, V2Status.FAILQC);
+        checkParallel(ABC_SEARCH_FULL, V2Status.FAILQC);
+    }
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Name: Java class BinarySidecarTest.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package PRISMtest.Package;
+
+import COSMOSformat.BinarySidecar;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit test for BinarySidecar, writes out sidecar files and reads them back in
+ * @author jmjones
+ */
+public class BinarySidecarTest {
+    int[] intHeader = {1, 2, 3, -999, 200, 3284, 7};
+    double[] realHeader = {33.9753, -117.4865, -999.0, 0.005, 1.0e-7};
+    double[][] data = {{0.1, -0.269, 0.387, 1.0e-12, -3.5e4},
+                        {}, {2.5, -2.5, 0.125}};
+    Path sidecar;
+
+    public BinarySidecarTest() {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        sidecar = Files.createTempFile("sidecar", ".bin");
+    }
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(sidecar);
+    }
+    //writes a valid sidecar file and then replaces one int of its file header
+    private void writeCorrupt( int index, int value ) throws IOException {
+        BinarySidecar.write(sidecar, intHeader, realHeader, data, BinarySidecar.FLOAT64_SIZE);
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(sidecar));
+        bytes.order(ByteOrder.LITTLE_ENDIAN).putInt(4 * index, value);
+        Files.write(sidecar, bytes.array());
+    }
+    @Test
+    public void testFloat64() throws IOException {
+        BinarySidecar.write(sidecar, intHeader, realHeader, data, BinarySidecar.FLOAT64_SIZE);
+        org.junit.Assert.assertEquals(0, Files.size(sidecar) % 8);
+        BinarySidecar reader = new BinarySidecar(sidecar);
+        org.junit.Assert.assertEquals(BinarySidecar.FLOAT64_SIZE, reader.getValueSize());
+        org.junit.Assert.assertArrayEquals(intHeader, reader.getIntHeader());
+        org.junit.Assert.assertArrayEquals(realHeader, reader.getRealHeader(), 0.0);
+        org.junit.Assert.assertEquals(data.length, reader.getNumArrays());
+        for (int i = 0; i < data.length; i++) {
+            org.junit.Assert.assertEquals(data[i].length, reader.getArrayLength(i));
+            org.junit.Assert.assertArrayEquals(data[i], reader.getDataArray(i), 0.0);
+        }
+        DoubleBuffer view = reader.getDoubleView(2);
+        org.junit.Assert.assertEquals(3, view.remaining());
+        org.junit.Assert.assertEquals(-2.5, view.get(1), 0.0);
+    }
+    @Test
+    public void testFloat32() throws IOException {
+        BinarySidecar.write(sidecar, intHeader, realHeader, data, BinarySidecar.FLOAT32_SIZE);
+        BinarySidecar reader = new BinarySidecar(sidecar);
+        org.junit.Assert.assertEquals(BinarySidecar.FLOAT32_SIZE, reader.getValueSize());
+        org.junit.Assert.assertArrayEquals(intHeader, reader.getIntHeader());
+        org.junit.Assert.assertArrayEquals(realHeader, reader.getRealHeader(), 0.0);
+        for (int i = 0; i < data.length; i++) {
+            double[] vals = reader.getDataArray(i);
+            org.junit.Assert.assertEquals(data[i].length, vals.length);
+            for (int j = 0; j < vals.length; j++) {
+                org.junit.Assert.assertEquals((float)data[i][j], (float)vals[j], 0.0f);
+            }
+        }
+        org.junit.Assert.assertEquals(0.387f, reader.getFloatView(0).get(2), 0.0f);
+    }
+    @Test
+    public void testLargeArray() throws IOException {
+        //larger than the write buffer
+        double[][] big = {new double[20001]};
+        for (int i = 0; i < big[0].length; i++) {
+            big[0][i] = Math.sin(i * 0.01);
+        }
+        BinarySidecar.write(sidecar, intHeader, realHeader, big, BinarySidecar.FLOAT64_SIZE);
+        BinarySidecar reader = new BinarySidecar(sidecar);
+        org.junit.Assert.assertArrayEquals(big[0], reader.getDataArray(0), 0.0);
+    }
+    @Test(expected=IOException.class)
+    public void testNotSidecar() throws IOException {
+        Files.write(sidecar, "not a sidecar file".getBytes("UTF-8"));
+        new BinarySidecar(sidecar);
+    }
+    @Test(expected=IOException.class)
+    public void testNegativeCount() throws IOException {
+        //number of integer header values
+        writeCorrupt(3, -1);
+        new BinarySidecar(sidecar);
+    }
+    @Test(expected=IOException.class)
+    public void testHugeCount() throws IOException {
+        //number of data arrays
+        writeCorrupt(5, Integer.MAX_VALUE);
+        new BinarySidecar(sidecar);
+    }
+    @Test(expected=IOException.class)
+    public void testOverflowArrayLength() throws IOException {
+        //8 bytes times this length overflows an int offset back into the file
+        writeCorrupt(6, 0x20000001);
+        new BinarySidecar(sidecar);
+    }
+    @Test(expected=IOException.class)
+    public void testNegativeArrayLength() throws IOException {
+        writeCorrupt(8, -3);
+        new BinarySidecar(sidecar);
+    }
+}
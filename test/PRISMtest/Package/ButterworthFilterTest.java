@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Name: Java class ButterworthFilterTest.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package PRISMtest.Package;
+
+import SmProcessing.ButterworthFilter;
+import SmProcessing.FilterPlan;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * JUnit test for ButterworthFilter, checks the filtered array against one
+ * filtered a full pass at a time for each section
+ * @author jmjones
+ */
+public class ButterworthFilterTest {
+    static final double DT = 0.01;
+    static final double LOWCUT = 0.1;
+    static final double HIGHCUT = 20.0;
+    static final double TAPER = 2.0;
+    static final int ONSET = 500;
+
+    private double[] makeRecord( int length ) {
+        Random rand = new Random(20150201L);
+        double[] accel = new double[length];
+        for (int i = 0; i < length; i++) {
+            accel[i] = Math.sin(i * 0.07) * 50.0 + rand.nextGaussian() * 3.0;
+        }
+        return accel;
+    }
+    private void passSections( double[] s, ButterworthFilter filter,
+                                                int nroll, boolean reverse ) {
+        double[] fact = filter.getFact();
+        double[] b1 = filter.getB1();
+        double[] b2 = filter.getB2();
+        int np2 = s.length;
+        for (int k = 0; k < 2*nroll; k++) {
+            double x1 = 0.0;
+            double x2 = 0.0;
+            double y1 = 0.0;
+            double y2 = 0.0;
+            for (int j = 0; j < np2; j++) {
+                int idx = (reverse) ? np2 - j - 1 : j;
+                double xp = s[idx];
+                double yp = fact[k] * (xp - x2) - (b1[k] * y1) - (b2[k] * y2);
+                s[idx] = yp;
+                y2 = y1;
+                y1 = yp;
+                x2 = x1;
+                x1 = xp;
+            }
+        }
+    }
+    private void checkFilter( int length, int nroll, boolean acausal ) {
+        ButterworthFilter filter = new ButterworthFilter();
+        org.junit.Assert.assertTrue(filter.calculateCoefficients(LOWCUT, HIGHCUT,
+                                                        DT, nroll, acausal));
+        double[] accel = makeRecord(length);
+        double[] padded = filter.applyFilter(accel, TAPER, ONSET);
+
+        //taper and pad a copy the same way, then filter a section at a time
+        double[] expected = makeRecord(length);
+        double[] work;
+        int pad = filter.getPadLength();
+        if (acausal) {
+            int count = (int)Math.round(filter.getTaperlength() / DT);
+            int endcount = (int)Math.round(filter.getEndTaperlength() / DT);
+            filter.applyCosineTaper(expected, count, endcount);
+            work = new double[padded.length];
+            System.arraycopy(expected, 0, work, pad, length);
+        } else {
+            work = expected.clone();
+        }
+        passSections(work, filter, nroll, false);
+        if (acausal) {
+            passSections(work, filter, nroll, true);
+        }
+        org.junit.Assert.assertArrayEquals(work, padded, 0.0);
+        System.arraycopy(work, pad, expected, 0, length);
+        org.junit.Assert.assertArrayEquals(expected, accel, 0.0);
+    }
+    @Test
+    public void checkAcausal() {
+        checkFilter(10000, 4, true);
+        checkFilter(2048, 2, true);
+        checkFilter(777, 8, true);
+    }
+    @Test
+    public void checkSharedPlan() {
+        ButterworthFilter first = new ButterworthFilter();
+        first.calculateCoefficients(LOWCUT, HIGHCUT, DT, 4, true);
+        ButterworthFilter second = new ButterworthFilter();
+        second.calculateCoefficients(LOWCUT, HIGHCUT, DT, 4, false);
+        org.junit.Assert.assertSame(first.getFact(), second.getFact());
+        org.junit.Assert.assertSame(first.getB1(), second.getB1());
+        org.junit.Assert.assertSame(first.getB2(), second.getB2());
+        second.calculateCoefficients(LOWCUT * 2.0, HIGHCUT, DT, 4, true);
+        org.junit.Assert.assertNotSame(first.getFact(), second.getFact());
+
+        FilterPlan plan = FilterPlan.getPlan(LOWCUT, HIGHCUT, DT, 4);
+        org.junit.Assert.assertSame(first.getFact(), plan.getFact());
+        double[] taper = plan.getTaper(401);
+        org.junit.Assert.assertEquals(200, taper.length);
+        org.junit.Assert.assertSame(taper, plan.getTaper(401));
+        org.junit.Assert.assertArrayEquals(FilterPlan.makeTaper(401), taper, 0.0);
+    }
+    @Test
+    public void checkCausal() {
+        checkFilter(10000, 4, false);
+        checkFilter(4096, 1, false);
+    }
+}
@@ -64,4 +64,17 @@ public class ConfigReaderTest {
         con1.setConfigValue("a", "1");
         org.junit.Assert.assertEquals("1", con2.getConfigValue("a"));
     }
+    @Test
+    public void TestSnapshot() {
+        config.setConfigValue("e", "5");
+        ConfigReader snap = config.getSnapshot();
+        config.setConfigValue("e", "6");
+        org.junit.Assert.assertEquals("5", snap.getConfigValue("e"));
+        org.junit.Assert.assertEquals("6", config.getConfigValue("e"));
+    }
+    @Test(expected = UnsupportedOperationException.class)
+    public void TestSnapshotReadOnly() {
+        ConfigReader snap = config.getSnapshot();
+        snap.setConfigValue("f", "7");
+    }
 }
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Name: Java class FFTPlanTest.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package PRISMtest.Package;
+
+import SmProcessing.FFTPlan;
+import java.util.Random;
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+import org.junit.Test;
+
+/**
+ * JUnit test for FFTPlan, checks the transforms against those from the
+ * commons math FastFourierTransformer
+ * @author jmjones
+ */
+public class FFTPlanTest {
+    static final double EPSILON = 1.0e-12;
+    static final int[] LENGTHS = {2, 4, 8, 64, 1024, 8192};
+    FastFourierTransformer fft = new FastFourierTransformer( DftNormalization.STANDARD);
+
+    private double[] makeArray( int length, long seed ) {
+        Random rand = new Random(seed);
+        double[] array = new double[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = Math.sin(i * 0.05) * 20.0 + rand.nextGaussian();
+        }
+        return array;
+    }
+    private void checkBins( Complex[] expected, double[] result, int bins ) {
+        double peak = 0.0;
+        for (int k = 0; k < bins; k++) {
+            peak = Math.max(peak, expected[k].abs());
+        }
+        for (int k = 0; k < bins; k++) {
+            org.junit.Assert.assertEquals(expected[k].getReal(), result[2*k],
+                                                                EPSILON * peak);
+            org.junit.Assert.assertEquals(expected[k].getImaginary(),
+                                                result[2*k+1], EPSILON * peak);
+        }
+    }
+    @Test
+    public void checkComplex() {
+        for (int length : LENGTHS) {
+            double[] re = makeArray(length, length);
+            double[] im = makeArray(length, length + 1);
+            Complex[] values = new Complex[length];
+            double[] data = new double[2 * length];
+            for (int i = 0; i < length; i++) {
+                values[i] = new Complex(re[i], im[i]);
+                data[2*i] = re[i];
+                data[2*i+1] = im[i];
+            }
+            FFTPlan plan = FFTPlan.getPlan(length);
+            plan.transform(data, false);
+            checkBins(fft.transform(values, TransformType.FORWARD), data, length);
+            Complex[] spectrum = fft.transform(values, TransformType.FORWARD);
+            plan.transform(data, true);
+            checkBins(fft.transform(spectrum, TransformType.INVERSE), data, length);
+        }
+    }
+    @Test
+    public void checkReal() {
+        for (int length : LENGTHS) {
+            double[] array = makeArray(length, length);
+            double[] copy = array.clone();
+            double[] spectrum = new double[length + 2];
+            FFTPlan plan = FFTPlan.getPlan(length);
+            plan.realForward(array, spectrum);
+            org.junit.Assert.assertArrayEquals(copy, array, 0.0);
+            checkBins(fft.transform(array, TransformType.FORWARD), spectrum,
+                                                            length / 2 + 1);
+            double[] result = new double[length];
+            plan.realInverse(spectrum, result);
+            org.junit.Assert.assertArrayEquals(array, result, EPSILON * 100.0);
+
+            //in place, with the array in the spectrum
+            double[] inplace = new double[length + 2];
+            System.arraycopy(array, 0, inplace, 0, length);
+            plan.realForward(inplace, inplace);
+            org.junit.Assert.assertArrayEquals(spectrum, inplace, 0.0);
+        }
+    }
+    @Test
+    public void checkSharedPlan() {
+        FFTPlan plan = FFTPlan.getPlan(4096);
+        org.junit.Assert.assertEquals(4096, plan.getLength());
+        org.junit.Assert.assertSame(plan, FFTPlan.getPlan(4096));
+    }
+    @Test(expected = IllegalArgumentException.class)
+    public void checkInvalidLength() {
+        FFTPlan.getPlan(1000);
+    }
+}
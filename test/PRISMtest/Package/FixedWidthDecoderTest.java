@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Name: Java class FixedWidthDecoderTest.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package PRISMtest.Package;
+
+import COSMOSformat.FixedWidthDecoder;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * JUnit test for FixedWidthDecoder, checks that the values match those from
+ * Integer.parseInt and Double.parseDouble
+ * @author jmjones
+ */
+public class FixedWidthDecoderTest {
+    String[] intText = {"0", "-0", "+7", "3284", "-999", "13921", "999999999",
+                        "-999999999", "2147483647", "-2147483648", "0000012"};
+    String[] realText = {"0.0", "-0.0", "0.", ".5", "-.5", "1", "+2.5",
+                        "-999.0", "0.000100", "3.141593", "-0.123456E+02",
+                        "1.23456E-05", "9.99999e+20", "1.0E-300", "1.7E308",
+                        "123456789012345678", "0.1234567890123456789",
+                        "4.9E-324", "1e22", "1e23", "12345.678901234"};
+    String[] badText = {"", "-", "+", ".", "abcd", "12a4", "1.2.3", "1e",
+                        "1e+", "--1", "1 2"};
+
+    public FixedWidthDecoderTest() {
+    }
+
+    private double decodeReal(String val) {
+        String field = "  " + val + "  ";
+        return FixedWidthDecoder.parseDouble(field.toCharArray(), 2, 2 + val.length());
+    }
+    private int decodeInt(String val) {
+        String field = "  " + val + "  ";
+        return FixedWidthDecoder.parseInt(field.toCharArray(), 2, 2 + val.length());
+    }
+    @Test
+    public void testParseInt() {
+        for (String each : intText) {
+            org.junit.Assert.assertEquals(Integer.parseInt(each), decodeInt(each));
+        }
+    }
+    @Test
+    public void testParseDouble() {
+        for (String each : realText) {
+            org.junit.Assert.assertEquals(Double.doubleToRawLongBits(Double.parseDouble(each)),
+                            Double.doubleToRawLongBits(decodeReal(each)));
+        }
+    }
+    @Test
+    public void testParseDoubleFormatted() {
+        Random rand = new Random(20150201L);
+        String[] formats = {"%10.6f", "%13.5e", "%15.6E", "%10.3f", "%20.12f"};
+        for (int i = 0; i < 20000; i++) {
+            double val = (rand.nextDouble() - 0.5) * Math.pow(10.0, rand.nextInt(12) - 6);
+            String each = String.format(formats[i % formats.length], val).trim();
+            org.junit.Assert.assertEquals(each,
+                            Double.doubleToRawLongBits(Double.parseDouble(each)),
+                            Double.doubleToRawLongBits(decodeReal(each)));
+        }
+    }
+    @Test
+    public void testBadValues() {
+        for (String each : badText) {
+            try {
+                decodeInt(each);
+                org.junit.Assert.fail("Expected NumberFormatException for " + each);
+            } catch (NumberFormatException err) {
+            }
+            try {
+                decodeReal(each);
+                org.junit.Assert.fail("Expected NumberFormatException for " + each);
+            } catch (NumberFormatException err) {
+            }
+        }
+    }
+    @Test(expected=NumberFormatException.class)
+    public void testIntOverflow() {
+        decodeInt("2147483648");
+    }
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Name: Java class FixedWidthFormatterTest.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package PRISMtest.Package;
+
+import COSMOSformat.FixedWidthFormatter;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * JUnit test for FixedWidthFormatter, checks the formatted text against the
+ * text from String.format
+ * @author jmjones
+ */
+public class FixedWidthFormatterTest {
+    int[] intVals = {0, 1, -1, 9, -10, 3284, -999, 13921, 12345678, -12345678,
+                    123456789, Integer.MAX_VALUE, Integer.MIN_VALUE};
+    int[] intWidths = {1, 4, 8, 12};
+    double[] realVals = {0.0, -0.0, 1.0, -1.0, 0.5, 0.125, 0.15, 0.25, 2.5,
+                    -2.5, 0.0005, -0.0005, 1.0e-7, -1.0e-7, 9.9999996,
+                    99999.99999999, 0.299999999999, 33.9753, -117.4865,
+                    -999.0, 1.0e-300, 4.9e-324, 1.0e14, 1.0e15, 1.0e22,
+                    1.0e23, 1.7976931348623157e308, 123456789.123456789,
+                    Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+    int[][] realFormats = {{10, 3}, {13, 6}, {15, 6}, {13, 5}, {8, 0},
+                    {20, 12}, {25, 14}, {12, 16}};
+
+    public FixedWidthFormatterTest() {
+    }
+
+    private String formatInt(int val, int width) {
+        FixedWidthFormatter out = new FixedWidthFormatter(1);
+        out.appendInt(val, width);
+        return out.toString();
+    }
+    private String formatFixed(double val, int width, int precision) {
+        FixedWidthFormatter out = new FixedWidthFormatter(1);
+        out.appendFixed(val, width, precision);
+        return out.toString();
+    }
+    private String formatExponent(double val, int width, int precision) {
+        FixedWidthFormatter out = new FixedWidthFormatter(1);
+        out.appendExponent(val, width, precision);
+        return out.toString();
+    }
+    private void checkReal(double val, int width, int precision) {
+        org.junit.Assert.assertEquals(String.format("%" + width + "." + precision + "f", val),
+                            formatFixed(val, width, precision));
+        org.junit.Assert.assertEquals(String.format("%" + width + "." + precision + "e", val),
+                            formatExponent(val, width, precision));
+    }
+    @Test
+    public void testIntGolden() {
+        org.junit.Assert.assertEquals("    3284", formatInt(3284, 8));
+        org.junit.Assert.assertEquals("    -999", formatInt(-999, 8));
+        org.junit.Assert.assertEquals("-12345678", formatInt(-12345678, 8));
+        for (int val : intVals) {
+            for (int width : intWidths) {
+                org.junit.Assert.assertEquals(String.format("%" + width + "d", val),
+                                                        formatInt(val, width));
+            }
+        }
+    }
+    @Test
+    public void testRealGolden() {
+        org.junit.Assert.assertEquals("    -0.269", formatFixed(-0.269, 10, 3));
+        org.junit.Assert.assertEquals("  -117.486500", formatFixed(-117.4865, 13, 6));
+        org.junit.Assert.assertEquals("     0.2", formatFixed(0.15, 8, 1));
+        org.junit.Assert.assertEquals("  -0.000", formatFixed(-0.0001, 8, 3));
+        org.junit.Assert.assertEquals("  1.23457e+05", formatExponent(123456.5, 13, 5));
+        org.junit.Assert.assertEquals(" -1.00000e-300", formatExponent(-1.0e-300, 14, 5));
+        for (double val : realVals) {
+            for (int[] format : realFormats) {
+                checkReal(val, format[0], format[1]);
+            }
+        }
+    }
+    @Test
+    public void testRealRandom() {
+        Random rand = new Random(20150201L);
+        for (int i = 0; i < 50000; i++) {
+            double val = (rand.nextDouble() - 0.5) * Math.pow(10.0, rand.nextInt(24) - 12);
+            int[] format = realFormats[i % realFormats.length];
+            checkReal(val, format[0], format[1]);
+        }
+    }
+    @Test
+    public void testRealNearHalf() {
+        //values on or next to the half-way point at each precision
+        Random rand = new Random(20150202L);
+        for (int i = 0; i < 20000; i++) {
+            int precision = rand.nextInt(8);
+            double val = (rand.nextInt(2000000) - 1000000 + 0.5) / Math.pow(10.0, precision);
+            double[] near = {val, Math.nextUp(val), Math.nextAfter(val, 0.0)};
+            for (double each : near) {
+                checkReal(each, 10, precision);
+                checkReal(each, 13, Math.max(precision - 1, 0));
+            }
+        }
+    }
+    @Test
+    public void testLineBuffer() {
+        FixedWidthFormatter out = new FixedWidthFormatter(4);
+        out.appendFixed(-0.269, 10, 3);
+        out.appendFixed(0.387, 10, 3);
+        out.appendInt(3284, 8);
+        org.junit.Assert.assertEquals("    -0.269     0.387    3284", out.toString());
+        org.junit.Assert.assertEquals(28, out.length());
+        out.reset();
+        out.appendExponent(2.5, 13, 5);
+        org.junit.Assert.assertEquals("  2.50000e+00", out.toString());
+    }
+}
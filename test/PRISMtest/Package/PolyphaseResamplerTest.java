@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Name: Java class PolyphaseResamplerTest.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package PRISMtest.Package;
+
+import SmException.SmException;
+import SmProcessing.PolyphaseResampler;
+import SmProcessing.Resampling;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * JUnit test for PolyphaseResampler, checks the resampled arrays against the
+ * FFT method in Resampling and checks that streaming in chunks gives the
+ * same result as one pass
+ * @author jmjones
+ */
+public class PolyphaseResamplerTest {
+    static final int LENGTH = 20000;
+
+    //a sinusoid with a half-cosine taper over the whole record, so that the
+    //ends of the record do not disturb the FFT method
+    private double[] makeTaperedSine( double fraction ) {
+        double omega = Math.PI * fraction;
+        double[] array = new double[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            double taper = 0.5 * (1.0 - Math.cos(2.0 * Math.PI * i / (LENGTH - 1)));
+            array[i] = taper * Math.sin(omega * i + 0.3);
+        }
+        return array;
+    }
+    private void checkPassband( int sps ) throws SmException {
+        for (double fraction = 0.05; fraction <= PolyphaseResampler.PASSBAND_EDGE;
+                                                            fraction += 0.05) {
+            double[] array = makeTaperedSine(fraction);
+            double[] expected = new Resampling(false).resampleArray(array, sps);
+            Resampling resamp = new Resampling(true);
+            double[] result = resamp.resampleArray(array, sps);
+            org.junit.Assert.assertEquals(array.length * resamp.getFactor(),
+                                                                result.length);
+            org.junit.Assert.assertArrayEquals(expected, result,
+                                            PolyphaseResampler.PASSBAND_ERROR);
+        }
+    }
+    @Test
+    public void checkPassbandFactor2() throws SmException {
+        checkPassband(100);
+    }
+    @Test
+    public void checkPassbandFactor4() throws SmException {
+        checkPassband(50);
+    }
+    @Test
+    public void checkFFTNotPowerOf2() throws SmException {
+        //40 sps needs a factor of 5, which the FFT method cannot do, so it
+        //goes through the polyphase filter and keeps the time scale
+        double fraction = 0.3;
+        double[] array = makeTaperedSine(fraction);
+        Resampling resamp = new Resampling(false);
+        double[] result = resamp.resampleArray(array, 40);
+        org.junit.Assert.assertEquals(5, resamp.getFactor());
+        org.junit.Assert.assertTrue(resamp.getPolyphaseUsed());
+        org.junit.Assert.assertArrayEquals(new Resampling(true).resampleArray(array, 40),
+                                                                    result, 0.0);
+        double omega = Math.PI * fraction / 5.0;
+        for (int i = LENGTH; i < 4 * LENGTH; i++) {
+            double taper = 0.5 * (1.0 - Math.cos(2.0 * Math.PI * (i / 5.0) / (LENGTH - 1)));
+            org.junit.Assert.assertEquals(taper * Math.sin(omega * i + 0.3), result[i],
+                                            PolyphaseResampler.PASSBAND_ERROR);
+        }
+        resamp.resampleArray(array, 100);
+        org.junit.Assert.assertFalse(resamp.getPolyphaseUsed());
+    }
+    @Test
+    public void checkInputSamplesKept() {
+        Random rand = new Random(20150201L);
+        double[] array = new double[5000];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = rand.nextGaussian();
+        }
+        PolyphaseResampler resampler = new PolyphaseResampler(5);
+        double[] result = resampler.resampleArray(array, 1000);
+        for (int i = 0; i < array.length; i++) {
+            org.junit.Assert.assertEquals(array[i], result[5 * i], 0.0);
+        }
+    }
+    @Test
+    public void checkChunks() {
+        Random rand = new Random(20150201L);
+        double[] array = new double[3001];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = rand.nextGaussian();
+        }
+        PolyphaseResampler resampler = new PolyphaseResampler(3);
+        double[] expected = resampler.resampleArray(array, array.length);
+        org.junit.Assert.assertArrayEquals(expected,
+                                    resampler.resampleArray(array, 1), 0.0);
+        org.junit.Assert.assertArrayEquals(expected,
+                                    resampler.resampleArray(array, 97), 0.0);
+
+        //streaming by hand, the output lags by the half length
+        double[] result = new double[expected.length];
+        int written = resampler.process(array, 0, 10, result, 0);
+        org.junit.Assert.assertEquals(0, written);
+        written += resampler.process(array, 10, array.length - 10, result, written);
+        org.junit.Assert.assertEquals(3 * (array.length -
+                                    resampler.getHalfLength()), written);
+        written += resampler.flush(result, written);
+        org.junit.Assert.assertEquals(expected.length, written);
+        org.junit.Assert.assertArrayEquals(expected, result, 0.0);
+    }
+    @Test
+    public void checkShortRecord() {
+        double[] array = {1.0, 1.0, 1.0};
+        double[] result = new PolyphaseResampler(2).resampleArray(array, 2);
+        org.junit.Assert.assertEquals(6, result.length);
+        org.junit.Assert.assertEquals(1.0, result[0], 0.0);
+        org.junit.Assert.assertEquals(1.0, result[4], 0.0);
+        org.junit.Assert.assertEquals(0,
+                new PolyphaseResampler(2).resampleArray(new double[0], 2).length);
+    }
+    @Test(expected = IllegalArgumentException.class)
+    public void checkInvalidFactor() {
+        new PolyphaseResampler(0);
+    }
+}
@@ -66,6 +66,19 @@ public class PrismXMLReaderTest {
         org.junit.Assert.assertEquals("2", config.getConfigValue("PRISM/AdaptiveBaselineCorrection/FirstPolyOrder/UpperLimit"));
         org.junit.Assert.assertEquals("1", config.getConfigValue("PRISM/AdaptiveBaselineCorrection/ThirdPolyOrder/LowerLimit"));
         org.junit.Assert.assertEquals("3", config.getConfigValue("PRISM/AdaptiveBaselineCorrection/ThirdPolyOrder/UpperLimit"));    
+        org.junit.Assert.assertEquals("1", config.getConfigValue("PRISM/ProcessingThreads"));
+        org.junit.Assert.assertEquals("Off", config.getConfigValue("PRISM/WatchInputFolder"));
+        org.junit.Assert.assertEquals("4", config.getConfigValue("PRISM/PipelineQueueSize"));
+        org.junit.Assert.assertEquals("Off", config.getConfigValue("PRISM/BinarySidecarOutput"));
+        org.junit.Assert.assertEquals("Scalar", config.getConfigValue("PRISM/SpectraEngine"));
+        org.junit.Assert.assertEquals("On", config.getConfigValue("PRISM/ResampleLowSampleRates"));
+        org.junit.Assert.assertEquals("FFT", config.getConfigValue("PRISM/ResampleMethod"));
+        org.junit.Assert.assertEquals("Ranked", 
+                config.getConfigValue("PRISM/AdaptiveBaselineCorrection/CandidateSearch"));
+        org.junit.Assert.assertEquals("0.00 0.02 0.05 0.10 0.20", 
+                config.getConfigValue("PRISM/V3SpectraParameters/SpectraDampingValues"));
+        org.junit.Assert.assertEquals(null, 
+                config.getConfigValue("PRISM/V3SpectraParameters/SpectraPeriods"));
     }
     
     @Rule public ExpectedException expectedEx = ExpectedException.none();
@@ -113,4 +113,28 @@ public class ProcessStepsRecorderTest {
         result = stepRec.formatSteps().toArray(result);
         org.junit.Assert.assertArrayEquals(testresamp,result);
     }
+    @Test
+    public void testRecorderPerRecord() {
+        ProcessStepsRecorder2 stepRec = new ProcessStepsRecorder2();
+        ProcessStepsRecorder2 other = new ProcessStepsRecorder2();
+        stepRec.addCorrectionType(VFileConstants.CorrectionType.AUTO);
+        stepRec.addEventOnset(15.32);
+        stepRec.addResampling(200.00);
+        other.addCorrectionType(VFileConstants.CorrectionType.MANUAL);
+        other.addEventOnset(31.98);
+        other.addBaselineStep(0.0, 31.98,0.0, 132.00, 
+                                VFileConstants.V2DataType.ACC, 
+                                VFileConstants.BaselineType.BESTFIT, 
+                                VFileConstants.CorrectionOrder.MEAN, 0);
+        other.addBaselineStep(0.0, 132.00, 0.0, 132.00,
+                                VFileConstants.V2DataType.VEL,
+                                VFileConstants.BaselineType.BESTFIT,
+                                VFileConstants.CorrectionOrder.ORDER2, 0);
+        String[] result = new String[4];
+        result = other.formatSteps().toArray(result);
+        org.junit.Assert.assertArrayEquals(test1,result);
+        result = new String[3];
+        result = stepRec.formatSteps().toArray(result);
+        org.junit.Assert.assertArrayEquals(testresamp,result);
+    }
 }
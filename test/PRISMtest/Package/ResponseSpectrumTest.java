@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Name: Java class ResponseSpectrumTest.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package PRISMtest.Package;
+
+import static SmConstants.VFileConstants.V3_DAMPING_VALUES;
+import SmConstants.VFileConstants.SpectraEngine;
+import SmException.FormatException;
+import SmProcessing.ArrayStats;
+import SmProcessing.ResponseSpectrum;
+import SmProcessing.SpectraResources;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+/**
+ * JUnit test for ResponseSpectrum, checks the spectra against those from the
+ * full displacement history and ArrayStats, bit for bit
+ * @author jmjones
+ */
+public class ResponseSpectrumTest {
+    SpectraResources spec;
+    double[] accel;
+
+    public ResponseSpectrumTest() throws IOException {
+        spec = new SpectraResources();
+        Random rand = new Random(20150201L);
+        accel = new double[4000];
+        for (int i = 0; i < accel.length; i++) {
+            accel[i] = Math.sin(i * 0.05) * Math.exp(-i * 0.001) * 200.0
+                                            + rand.nextGaussian() * 5.0;
+        }
+    }
+    private double historyPeak(double[] acc, double[] c) {
+        int len = acc.length;
+        double[][] y = new double[2][len];
+        for (int k = 1; k < len; k++) {
+            y[0][k] = c[0] * y[0][k-1] + c[1] * y[1][k-1] + c[4] * acc[k];
+            y[1][k] = c[2] * y[0][k-1] + c[3] * y[1][k-1] + c[5] * acc[k];
+        }
+        ArrayStats stat = new ArrayStats(y[0]);
+        return Math.abs(stat.getPeakVal());
+    }
+    @Test
+    public void testPeakDisplacement() throws FormatException {
+        double[] periods = spec.getTperiods();
+        for (double rate : new double[] {50.0, 200.0}) {
+            for (double damping : V3_DAMPING_VALUES) {
+                double[][] coefs = spec.getCoefArray(rate, damping);
+                for (int p = 0; p < periods.length; p++) {
+                    org.junit.Assert.assertEquals(
+                        Double.doubleToRawLongBits(historyPeak(accel, coefs[p])),
+                        Double.doubleToRawLongBits(ResponseSpectrum.peakDisplacement(accel, coefs[p])));
+                }
+            }
+        }
+    }
+    @Test
+    public void testComputeSpectra() throws FormatException {
+        double[] periods = spec.getTperiods();
+        double[][] coefs = spec.getCoefArray(100.0, 0.05);
+        double[] sd = new double[periods.length];
+        double[] sv = new double[periods.length];
+        double[] sa = new double[periods.length];
+        ResponseSpectrum.computeSpectra(accel, coefs, periods, sd, sv, sa);
+        for (int p = 0; p < periods.length; p++) {
+            double omega = (2.0 * Math.PI) / periods[p];
+            double expect = historyPeak(accel, coefs[p]);
+            org.junit.Assert.assertEquals(expect, sd[p], 0.0);
+            org.junit.Assert.assertEquals(expect * omega, sv[p], 0.0);
+            org.junit.Assert.assertEquals(expect * omega * omega, sa[p], 0.0);
+        }
+    }
+    @Test
+    public void testParallel() throws FormatException {
+        double[] periods = spec.getTperiods();
+        int numdamp = V3_DAMPING_VALUES.length;
+        double[][][] coefs = new double[numdamp][][];
+        for (int d = 0; d < numdamp; d++) {
+            coefs[d] = spec.getCoefArray(100.0, V3_DAMPING_VALUES[d]);
+        }
+        double[][] sd = new double[numdamp][periods.length];
+        double[][] sv = new double[numdamp][periods.length];
+        double[][] sa = new double[numdamp][periods.length];
+        double[][] psd = new double[numdamp][periods.length];
+        double[][] psv = new double[numdamp][periods.length];
+        double[][] psa = new double[numdamp][periods.length];
+        ResponseSpectrum.computeSpectra(accel, coefs, periods, sd, sv, sa, null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ResponseSpectrum.computeSpectra(accel, coefs, periods, psd, psv, psa, pool);
+        } finally {
+            pool.shutdown();
+        }
+        for (int d = 0; d < numdamp; d++) {
+            org.junit.Assert.assertArrayEquals(sd[d], psd[d], 0.0);
+            org.junit.Assert.assertArrayEquals(sv[d], psv[d], 0.0);
+            org.junit.Assert.assertArrayEquals(sa[d], psa[d], 0.0);
+        }
+    }
+    @Test
+    public void testLaneGroup() throws FormatException {
+        double[] periods = spec.getTperiods();
+        for (double damping : V3_DAMPING_VALUES) {
+            double[][] coefs = spec.getCoefArray(200.0, damping);
+            //every group size, including the partial group at the end
+            for (int count = 1; count <= ResponseSpectrum.LANES; count++) {
+                double[] peaks = new double[periods.length];
+                int first = periods.length - count;
+                ResponseSpectrum.peakDisplacements(accel, coefs, first, count, peaks);
+                for (int p = first; p < periods.length; p++) {
+                    org.junit.Assert.assertEquals(
+                        Double.doubleToRawLongBits(ResponseSpectrum.peakDisplacement(accel, coefs[p])),
+                        Double.doubleToRawLongBits(peaks[p]));
+                }
+            }
+        }
+    }
+    @Test
+    public void testEngines() throws FormatException {
+        double[] periods = spec.getTperiods();
+        int numdamp = V3_DAMPING_VALUES.length;
+        double[][][] coefs = new double[numdamp][][];
+        for (int d = 0; d < numdamp; d++) {
+            coefs[d] = spec.getCoefArray(50.0, V3_DAMPING_VALUES[d]);
+        }
+        double[][] sd = new double[numdamp][periods.length];
+        double[][] sv = new double[numdamp][periods.length];
+        double[][] sa = new double[numdamp][periods.length];
+        double[][] lsd = new double[numdamp][periods.length];
+        double[][] lsv = new double[numdamp][periods.length];
+        double[][] lsa = new double[numdamp][periods.length];
+        ResponseSpectrum.computeSpectra(accel, coefs, periods, sd, sv, sa, null,
+                                                        SpectraEngine.SCALAR);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            ResponseSpectrum.computeSpectra(accel, coefs, periods, lsd, lsv, lsa,
+                                                pool, SpectraEngine.LANEGROUP);
+        } finally {
+            pool.shutdown();
+        }
+        for (int d = 0; d < numdamp; d++) {
+            org.junit.Assert.assertArrayEquals(sd[d], lsd[d], 0.0);
+            org.junit.Assert.assertArrayEquals(sv[d], lsv[d], 0.0);
+            org.junit.Assert.assertArrayEquals(sa[d], lsa[d], 0.0);
+        }
+    }
+    @Test
+    public void testQuietRecord() throws FormatException {
+        //all-zero and all-negative responses pick the peak as ArrayStats does
+        double[][] coefs = spec.getCoefArray(100.0, 0.05);
+        double[] zeros = new double[100];
+        double[] neg = new double[100];
+        Arrays.fill(neg, -1.0);
+        for (double[] c : coefs) {
+            org.junit.Assert.assertEquals(historyPeak(zeros, c),
+                                ResponseSpectrum.peakDisplacement(zeros, c), 0.0);
+            org.junit.Assert.assertEquals(historyPeak(neg, c),
+                                ResponseSpectrum.peakDisplacement(neg, c), 0.0);
+        }
+    }
+}
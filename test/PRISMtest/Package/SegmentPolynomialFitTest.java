@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Name: Java class SegmentPolynomialFitTest.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package PRISMtest.Package;
+
+import SmProcessing.ArrayOps;
+import SmProcessing.SegmentPolynomialFit;
+import java.util.ArrayList;
+import java.util.Random;
+import org.apache.commons.math3.fitting.PolynomialCurveFitter;
+import org.apache.commons.math3.fitting.WeightedObservedPoint;
+import org.junit.Test;
+
+/**
+ * JUnit test for SegmentPolynomialFit, checks the fits against those from
+ * the commons math PolynomialCurveFitter
+ * @author jmjones
+ */
+public class SegmentPolynomialFitTest {
+    static final int LENGTH = 4000;
+    static final int FIRST = 600;
+    static final int STEP = 200;
+    static final double DT = 0.005;
+    double[] vel;
+
+    public SegmentPolynomialFitTest() {
+        //a velocity record with a drifting baseline
+        Random rand = new Random(20150201L);
+        vel = new double[LENGTH];
+        double drift = 0.0;
+        for (int i = 0; i < LENGTH; i++) {
+            double t = i * DT;
+            drift += rand.nextGaussian() * 0.01;
+            vel[i] = Math.sin(t * 7.0) * Math.exp(-t * 0.2) * 30.0 + drift
+                                                    + 0.3 * t - 0.02 * t * t;
+        }
+    }
+    private double[] curveFit( double[] segment, int degree ) {
+        double[] time = ArrayOps.makeTimeArray(DT, segment.length);
+        ArrayList<WeightedObservedPoint> points = new ArrayList<>();
+        for (int i = 0; i < segment.length; i++ ){
+            points.add(new WeightedObservedPoint( 1.0, time[i], segment[i]));
+        }
+        return PolynomialCurveFitter.create(degree).fit(points);
+    }
+    private void checkSegment( SegmentPolynomialFit fit, int start, int degree ) {
+        double[] segment = new double[LENGTH - start];
+        System.arraycopy(vel, start, segment, 0, segment.length);
+        double[] coefs = curveFit(segment, degree);
+        double[] expected = segment.clone();
+        ArrayOps.removePolynomialTrend(expected, coefs, DT);
+        double peak = 0.0;
+        for (int i = 0; i < segment.length; i++) {
+            expected[i] = segment[i] - expected[i];
+            peak = Math.max(peak, Math.abs(segment[i]));
+        }
+        double[] result = fit.findFit(start, degree);
+        org.junit.Assert.assertArrayEquals(expected, result,
+                                    SegmentPolynomialFit.TOLERANCE * peak);
+    }
+    @Test
+    public void checkPreparedSegments() {
+        SegmentPolynomialFit fit = new SegmentPolynomialFit(vel, DT, 3, FIRST, STEP);
+        for (int degree = 1; degree <= 3; degree++) {
+            for (int start = FIRST; start < LENGTH - STEP; start += STEP) {
+                checkSegment(fit, start, degree);
+            }
+        }
+    }
+    @Test
+    public void checkOtherSegments() {
+        SegmentPolynomialFit fit = new SegmentPolynomialFit(vel, DT, 3, FIRST, STEP);
+        checkSegment(fit, 0, 2);
+        checkSegment(fit, FIRST + 17, 3);
+        checkSegment(fit, LENGTH - 3, 1);
+    }
+    @Test
+    public void checkExactPolynomial() {
+        double[] poly = new double[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            double t = (i - FIRST) * DT;
+            poly[i] = 2.0 - 0.5 * t + 0.25 * t * t - 0.01 * t * t * t;
+        }
+        SegmentPolynomialFit fit = new SegmentPolynomialFit(poly, DT, 3, FIRST, STEP);
+        double[] coefs = fit.findCoefficients(FIRST, 3);
+        org.junit.Assert.assertEquals(2.0, coefs[0], 1.0e-9);
+        org.junit.Assert.assertEquals(-0.5, coefs[1], 1.0e-9);
+        org.junit.Assert.assertEquals(0.25, coefs[2], 1.0e-9);
+        org.junit.Assert.assertEquals(-0.01, coefs[3], 1.0e-9);
+        //too few samples for the degree gives the interpolating polynomial
+        coefs = fit.findCoefficients(LENGTH - 2, 3);
+        org.junit.Assert.assertEquals(poly[LENGTH - 2], coefs[0], 1.0e-9);
+        org.junit.Assert.assertEquals((poly[LENGTH - 1] - poly[LENGTH - 2]) / DT,
+                                                            coefs[1], 1.0e-6);
+        org.junit.Assert.assertEquals(0.0, coefs[3], 0.0);
+    }
+    @Test
+    public void checkSharedBestFit() {
+        double[] coefs = ArrayOps.findTrendWithBestFit(vel, DT);
+        double[] expected = curveFit(vel, 2);
+        org.junit.Assert.assertEquals(3, coefs.length);
+        for (int k = 0; k < coefs.length; k++) {
+            org.junit.Assert.assertEquals(expected[k], coefs[k],
+                    Math.abs(expected[k]) * SegmentPolynomialFit.TOLERANCE);
+        }
+    }
+    @Test
+    public void checkInvalidInput() {
+        SegmentPolynomialFit fit = new SegmentPolynomialFit(vel, DT, 2, FIRST, STEP);
+        org.junit.Assert.assertEquals(0, fit.findCoefficients(FIRST, 3).length);
+        org.junit.Assert.assertEquals(0, fit.findCoefficients(FIRST, 0).length);
+        org.junit.Assert.assertEquals(0, fit.findCoefficients(LENGTH, 1).length);
+        fit = new SegmentPolynomialFit(vel, 0.0, 2, FIRST, STEP);
+        org.junit.Assert.assertEquals(0, fit.findFit(FIRST, 1).length);
+    }
+}
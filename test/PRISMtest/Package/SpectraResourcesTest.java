@@ -19,6 +19,7 @@ import static SmConstants.VFileConstants.NUM_T_PERIODS;
 import static SmConstants.VFileConstants.V3_DAMPING_VALUES;
 import static SmConstants.VFileConstants.V3_SAMPLING_RATES;
 import SmException.FormatException;
+import SmProcessing.OscillatorCoefficients;
 import SmProcessing.SpectraResources;
 import SmUtilities.TextFileReader;
 import java.io.File;
@@ -136,6 +137,76 @@ public class SpectraResourcesTest {
         }
     }
     @Test
+    public void checkParsedOnce() throws IOException, FormatException {
+        double[][] cvals = spec.getCoefArray(100.0, 0.05);
+        org.junit.Assert.assertSame(cvals, spec.getCoefArray(100.0, 0.05));
+        org.junit.Assert.assertSame(cvals, new SpectraResources().getCoefArray(100.0, 0.05));
+        org.junit.Assert.assertNotSame(cvals, spec.getCoefArray(200.0, 0.05));
+        double[] tvals = spec.getTperiods();
+        tvals[0] = -1.0;
+        org.junit.Assert.assertEquals(Double.parseDouble(PeriodsText[0]),
+                                            spec.getTperiods()[0], EPSILON);
+    }
+    @Test
+    public void checkComputedCoefs() throws FormatException {
+        double[] tvals = spec.getTperiods();
+        double[][] cvals;
+        double[] calc;
+        for (int i = 0; i < V3_SAMPLING_RATES.length; i++) {
+            for (int j = 0; j < V3_DAMPING_VALUES.length; j++) {
+                cvals = spec.getCoefArray(V3_SAMPLING_RATES[i], V3_DAMPING_VALUES[j]);
+                for (int k = 0; k < NUM_T_PERIODS; k++) {
+                    //the table row for 8.5 seconds was not computed at 8.5
+                    if (Math.abs(tvals[k] - 8.5) < EPSILON) {
+                        continue;
+                    }
+                    calc = OscillatorCoefficients.calculateCoefs(
+                        1.0 / V3_SAMPLING_RATES[i], V3_DAMPING_VALUES[j], tvals[k]);
+                    for (int each = 0; each < NUM_COEF_VALS; each++) {
+                        org.junit.Assert.assertEquals(cvals[k][each], calc[each],
+                            Math.max(Math.abs(cvals[k][each]) * 1.0e-8, 1.0e-9));
+                    }
+                }
+            }
+        }
+    }
+    @Test
+    public void checkUntabledRate() throws FormatException {
+        double[] tvals = spec.getTperiods();
+        double[][] cvals = spec.getCoefArray(250.0, 0.05);
+        org.junit.Assert.assertEquals(NUM_T_PERIODS, cvals.length);
+        for (int k = 0; k < NUM_T_PERIODS; k++) {
+            org.junit.Assert.assertArrayEquals(
+                OscillatorCoefficients.calculateCoefs(0.004, 0.05, tvals[k]),
+                cvals[k], 0.0);
+        }
+        org.junit.Assert.assertSame(cvals, spec.getCoefArray(250.0, 0.05));
+        org.junit.Assert.assertNotSame(cvals, spec.getCoefArray(250.0, 0.02));
+    }
+    @Test
+    public void checkPeriodSubset() throws FormatException {
+        double[] tvals = spec.getTperiods();
+        double[][] cvals = spec.getCoefArray(200.0, 0.05);
+        org.junit.Assert.assertSame(cvals, spec.getCoefArray(200.0, 0.05, tvals));
+        double[] periods = {0.2, 0.3, 0.33, 1.0, 3.0};
+        double[][] subset = spec.getCoefArray(200.0, 0.05, periods);
+        org.junit.Assert.assertEquals(periods.length, subset.length);
+        for (int p = 0; p < periods.length; p++) {
+            int index = -1;
+            for (int k = 0; k < tvals.length; k++) {
+                if (Math.abs(tvals[k] - periods[p]) < EPSILON) {
+                    index = k;
+                }
+            }
+            if (index < 0) {
+                org.junit.Assert.assertArrayEquals(OscillatorCoefficients.calculateCoefs(
+                                    0.005, 0.05, periods[p]), subset[p], 0.0);
+            } else {
+                org.junit.Assert.assertArrayEquals(cvals[index], subset[p], 0.0);
+            }
+        }
+    }
+    @Test
     public void checkV3Logic() throws IOException, FormatException {
         double[][][] spectra;
         double[] T_periods;
@@ -25,7 +25,13 @@ import static SmConstants.VFileConstants.UNCORACC;
 import static SmConstants.VFileConstants.VELOCITY;
 import SmException.FormatException;
 import SmException.SmException;
+import SmUtilities.ChannelTextWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -325,4 +331,19 @@ public class V0ComponentTest {
         org.junit.Assert.assertEquals(infile[0], textout[0]);
         org.junit.Assert.assertEquals(infile[47], textout[47]);
     }
+    @Test
+    public void testWriteRecord() throws FormatException, SmException, IOException {
+        v0.loadComponent(0, infile);
+        Path outfile = Files.createTempFile("V0ComponentTest", ".V0c");
+        try {
+            try (ChannelTextWriter out = new ChannelTextWriter(outfile)) {
+                v0.writeRecord(out);
+            }
+            List<String> textout = Files.readAllLines(outfile, StandardCharsets.UTF_8);
+            org.junit.Assert.assertArrayEquals(v0.VrecToText(), 
+                                    textout.toArray(new String[textout.size()]));
+        } finally {
+            Files.delete(outfile);
+        }
+    }
 }
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Name: Java class V2ProcessTest.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package PRISMtest.Package;
+
+import COSMOSformat.V1Component;
+import static SmConstants.VFileConstants.UNCORACC;
+import SmConstants.VFileConstants.V2DataType;
+import SmException.FormatException;
+import SmException.SmException;
+import SmProcessing.V2Process;
+import SmUtilities.PrismXMLReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import javax.xml.parsers.ParserConfigurationException;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+/**
+ * JUnit test for V2Process, checks the sampling rate of records resampled
+ * from below 200 samples per second.  The record is a decaying sine wave
+ * after 10 seconds of low level noise.
+ * @author jmjones
+ */
+public class V2ProcessTest {
+    static final int LENGTH = 4000;
+    static final double ONSET = 10.0;
+    static final String[] HEADER = {
+        "Uncorrected acceleration   (Format v01.20 with 13 text lines) Src: 15481673",
+        "Record of Earthquake of Sat Mar 29 04:09:42 2014",
+        "Hypocenter: To be determined    H=   km       ML=     Mw= ",
+        "Origin: To be determined ",
+        "Statn No: 05- 13921 Code:CE-13921  CGS  Riverside - Limonite & Downey",
+        "Coords: 33.975  -117.487   Site geology:  ",
+        "Recorder: Etna   s/n 1614 ( 3 Chns of   3 at Sta) Sensor: FBA ",
+        "Rcrd start time:03/29/2014, 04:09:48.968 UTC (Q=5)  RcrdID: 15481673.AZ.FRD.HNN",
+        "Sta Chan  2: 360 deg (Rcrdr Chan  N) Location:",
+        "Raw record length = 307.190 sec. Uncor Max = 13643.000 c, at   34.830 sec.",
+        "Processed:2014-09-03 20:39:15 GMT, USGS, Max =    0.837 cm/sec2 at   33.350 sec",
+        "Record not filtered.",
+        "Values used when parameter or data value is unknown/unspecified:   -999, -999.0",
+        " 100 Integer-header values follow on  10 lines, Format= (10I8)",
+        "       1       1       4     120       1    -999    -999       0    -999    -999",
+        "    -999    -999    -999       2    -999       1    -999    -999       3    -999",
+        "    -999    -999       3    -999       6    -999    -999       6    -999    -999",
+        "    -999    -999       3       3      24      24    -999    -999    -999    2014",
+        "      88       3      29       4       9       5       5    -999    -999       2",
+        "       2       0       0     360    -999    -999    -999    -999    -999       0",
+        "    -999    -999    -999    -999    -999    -999    -999    -999    -999    -999",
+        "    -999    -999    -999    -999    -999    -999    -999    -999    -999    -999",
+        "    -999    -999    -999    -999    -999    -999    -999    -999    -99915481673",
+        "    -999    -999    -999    -999    -999    -999    -999    -999    -999    -999",
+        " 100 Real-header values follow on  20 lines, Format= (5E15.6)",
+        "   3.349470e+01  -1.166022e+02   1.164000e+03  -9.990000e+02  -9.990000e+02",
+        "  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02   3.393250e+01",
+        "  -1.179172e+02   4.770000e+00  -9.990000e+02  -9.990000e+02   5.100000e+00",
+        "  -9.990000e+02   1.306240e+02   3.381199e+02  -9.990000e+02  -9.990000e+02",
+        "  -9.990000e+02   2.380000e+00  -9.990000e+02  -9.990000e+02  -9.990000e+02",
+        "  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02   4.896830e+01",
+        "  -9.990000e+02  -9.990000e+02  -9.990000e+02   1.000000e-02   3.071900e+02",
+        "  -1.711632e+00  -9.990000e+02  -9.990000e+02  -9.990000e+02   0.000000e+00",
+        "   0.000000e+00   1.277920e+01   0.000000e+00   0.000000e+00  -9.990000e+02",
+        "  -9.990000e+02   1.000000e+00  -9.990000e+02  -9.990000e+02  -9.990000e+02",
+        "  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02",
+        "  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02",
+        "DELTA_T",
+        "  -4.653877e-14  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02",
+        "  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02",
+        "  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02",
+        "  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02",
+        "  -9.990000e+02  -9.990000e+02   1.826392e-04  -9.990000e+02   5.369411e+00",
+        "  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02",
+        "  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02  -9.990000e+02",
+        "   1 Comment line(s) follow, each starting with a \"|\":",
+        "|"};
+    double EPSILON = 0.000001;
+    
+    @Before
+    public void setUp() {
+        try {
+            String filename = "/PRISMtest/Data/prism_config.xml";
+            InputStream ins = PrismXMLReaderTest.class.getResourceAsStream(filename);
+            PrismXMLReader xml = new PrismXMLReader();
+            xml.readFile(ins);
+        } catch (ParserConfigurationException | SAXException | IOException err) {
+            System.out.println("Unable to parse configuration file ");
+        }
+    }
+    //builds the V1 record with the given time per sample in msec, with the
+    //acceleration in the (6E12.3) format.  Also used by V3ComponentTest.
+    static V1Component makeV1( double deltat ) throws FormatException, SmException {
+        double dt = deltat / 1000.0;
+        ArrayList<String> lines = new ArrayList<>(Arrays.asList(HEADER));
+        lines.set(lines.indexOf("DELTA_T"), String.format(
+                "  -9.990000e+02 %14.6e   3.071900e+02   8.369725e-01   3.335000e+01", deltat));
+        lines.add(String.format("%8d  acceleration pts, approx  %3d secs, "
+                + "units=cm/sec2(04), Format=(6E12.3)", LENGTH, Math.round(LENGTH * dt)));
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < LENGTH; i++) {
+            double t = i * dt;
+            double val = 0.01 * Math.sin(2.0 * Math.PI * 7.3 * t);
+            if (t > ONSET) {
+                val += 20.0 * Math.sin(2.0 * Math.PI * 1.5 * (t - ONSET))
+                                            * Math.exp(-(t - ONSET) / 4.0);
+            }
+            line.append(String.format("%12.3e", val));
+            if ((i % 6 == 5) || (i == LENGTH - 1)) {
+                lines.add(line.toString());
+                line.setLength(0);
+            }
+        }
+        lines.add("End-of-data for Chan  2 acceleration");
+        V1Component v1 = new V1Component(UNCORACC);
+        v1.loadComponent(0, lines.toArray(new String[lines.size()]));
+        return v1;
+    }
+    @Test
+    public void checkResampledRate() throws FormatException, SmException, IOException {
+        V2Process v2p = new V2Process(makeV1(10.0), new File("test.v0"), "");
+        v2p.processV2Data();
+        assertEquals(200.0, v2p.getSampleRate(), EPSILON);
+        assertEquals(2 * LENGTH, v2p.getV2ArrayLength(V2DataType.ACC));
+    }
+    @Test
+    public void checkResampledNonIntegerRate() throws FormatException, SmException, IOException {
+        //15 msec is 66.67 samples per second, which rounds to 67 for the factor
+        //of 3, but the resampled data are at 200 samples per second
+        V2Process v2p = new V2Process(makeV1(15.0), new File("test.v0"), "");
+        v2p.processV2Data();
+        assertEquals(200.0, v2p.getSampleRate(), EPSILON);
+        assertEquals(3 * LENGTH, v2p.getV2ArrayLength(V2DataType.ACC));
+    }
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Name: Java class V3ComponentTest.java
+ * Project: PRISM strong motion record processing using COSMOS data format
+ * Written by: Jeanne Jones, USGS, jmjones@usgs.gov
+ * 
+ * This software is in the public domain because it contains materials that 
+ * originally came from the United States Geological Survey, an agency of the 
+ * United States Department of Interior. For more information, see the official 
+ * USGS copyright policy at 
+ * http://www.usgs.gov/visual-id/credit_usgs.html#copyright
+ * 
+ * Date: first release date Feb. 2015
+ ******************************************************************************/
+
+package PRISMtest.Package;
+
+import COSMOSformat.V1Component;
+import COSMOSformat.V2Component;
+import COSMOSformat.V3Component;
+import static SmConstants.VFileConstants.*;
+import SmException.FormatException;
+import SmException.SmException;
+import SmProcessing.V2Process;
+import SmProcessing.V3Process;
+import SmUtilities.ConfigReader;
+import SmUtilities.PrismXMLReader;
+import static SmUtilities.SmConfigConstants.V3_SPECTRA_DAMPINGS;
+import static SmUtilities.SmConfigConstants.V3_SPECTRA_PERIODS;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.xml.parsers.ParserConfigurationException;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+/**
+ * JUnit test for V3Component, checks the peak Sa values in the headers with
+ * and without the 5% damping spectra.  The record is the synthetic record
+ * from V2ProcessTest.
+ * @author jmjones
+ */
+public class V3ComponentTest {
+    static final double NOVAL = -999.0;
+    ConfigReader config = ConfigReader.INSTANCE;
+    String savedDampings;
+    String savedPeriods;
+    
+    @Before
+    public void setUp() {
+        try {
+            String filename = "/PRISMtest/Data/prism_config.xml";
+            InputStream ins = PrismXMLReaderTest.class.getResourceAsStream(filename);
+            PrismXMLReader xml = new PrismXMLReader();
+            xml.readFile(ins);
+        } catch (ParserConfigurationException | SAXException | IOException err) {
+            System.out.println("Unable to parse configuration file ");
+        }
+        savedDampings = config.getConfigValue(V3_SPECTRA_DAMPINGS);
+        savedPeriods = config.getConfigValue(V3_SPECTRA_PERIODS);
+    }
+    @After
+    public void tearDown() {
+        config.setConfigValue(V3_SPECTRA_DAMPINGS, savedDampings);
+        config.setConfigValue(V3_SPECTRA_PERIODS, savedPeriods);
+    }
+    private V3Component makeV3( String dampings, String periods ) 
+                            throws FormatException, SmException, IOException {
+        config.setConfigValue(V3_SPECTRA_DAMPINGS, dampings);
+        config.setConfigValue(V3_SPECTRA_PERIODS, periods);
+        V1Component v1rec = V2ProcessTest.makeV1(10.0);
+        V2Process v2val = new V2Process(v1rec, new File("test.v0"), "");
+        v2val.processV2Data();
+        V2Component v2acc = new V2Component(CORACC, v1rec);
+        v2acc.buildV2(V2DataType.ACC, v2val, null);
+        V2Component v2vel = new V2Component(VELOCITY, v1rec);
+        v2vel.buildV2(V2DataType.VEL, v2val, null);
+        V2Component v2dis = new V2Component(DISPLACE, v1rec);
+        v2dis.buildV2(V2DataType.DIS, v2val, null);
+        V3Process v3val = new V3Process(v2acc, v2val);
+        v3val.processV3Data();
+        V3Component v3rec = new V3Component(SPECTRA, v2acc, v2vel, v2dis);
+        v3rec.buildV3(v3val);
+        return v3rec;
+    }
+    @Test
+    public void checkPeakWith5PercentDamping() throws FormatException, SmException, IOException {
+        V3Component v3rec = makeV3(null, null);
+        assertTrue(v3rec.getRealHeaderValue(MAX_SA_SPECTRUM) > 0.0);
+        assertTrue(v3rec.getRealHeaderValue(PERIOD_OF_MAX) > 0.0);
+        assertTrue(v3rec.getRealHeaderValue(TIME_OF_MAX) > 0.0);
+        assertTrue(v3rec.getRealHeaderValue(HOUSNER_INTENSITY) >= 0.0);
+        assertTrue(v3rec.getTextHeader()[10].endsWith(" secp, 5%damp"));
+    }
+    @Test
+    public void checkPeakWithout5PercentDamping() throws FormatException, SmException, IOException {
+        V3Component v3rec = makeV3("0.02 0.10", null);
+        assertEquals(NOVAL, v3rec.getRealHeaderValue(MAX_SA_SPECTRUM), 0.0);
+        assertEquals(NOVAL, v3rec.getRealHeaderValue(PERIOD_OF_MAX), 0.0);
+        assertEquals(NOVAL, v3rec.getRealHeaderValue(TIME_OF_MAX), 0.0);
+        assertEquals(NOVAL, v3rec.getRealHeaderValue(HOUSNER_INTENSITY), 0.0);
+        assertEquals(NOVAL, v3rec.getRealHeaderValue(VALUE_SA_0P2), 0.0);
+        assertEquals(NOVAL, v3rec.getRealHeaderValue(VALUE_SA_1P0), 0.0);
+        String text = v3rec.getTextHeader()[10];
+        assertTrue(text.endsWith("SaMax= -999.0, no 5%damp spectra"));
+        assertTrue(text.length() <= 80);
+    }
+    @Test
+    public void checkHousnerWithCustomPeriods() throws FormatException, SmException, IOException {
+        V3Component v3rec = makeV3(null, "0.1 0.2 0.5 1.0 2.0");
+        assertTrue(v3rec.getRealHeaderValue(MAX_SA_SPECTRUM) > 0.0);
+        assertTrue(v3rec.getRealHeaderValue(VALUE_SA_0P2) > 0.0);
+        assertEquals(NOVAL, v3rec.getRealHeaderValue(VALUE_SA_3P0), 0.0);
+        assertEquals(NOVAL, v3rec.getRealHeaderValue(HOUSNER_INTENSITY), 0.0);
+    }
+}
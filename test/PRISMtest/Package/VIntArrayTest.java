@@ -215,4 +215,25 @@ public class VIntArrayTest {
         expectedEx.expectMessage("Unexpected EOF encountered at line 6");        
         di.parseValues(6, data);
     }
+    @Test
+    public void testShortLine() throws FormatException {
+        expectedEx.expect(FormatException.class);
+        expectedEx.expectMessage("Could not extract number from line 2");
+        data[2] = "    33";
+        di.parseValues(0, data);
+    }
+    @Test
+    public void testValueCount() throws FormatException {
+        expectedEx.expect(FormatException.class);
+        expectedEx.expectMessage("Expected 30 values in array but found 29");
+        data[2] = "    3300    3334    3302            3322    3336    3312    3298    3254    3346";
+        di.parseValues(0, data);
+    }
+    @Test
+    public void testCountBeforeBadValue() throws FormatException {
+        expectedEx.expect(FormatException.class);
+        expectedEx.expectMessage("Expected 8 values in array but found 10");
+        badData[0] = "       8 acceleration pts, approx  56 secs, units=counts (50),Format=(10I8)";
+        di.parseValues(0, badData);
+    }
 }